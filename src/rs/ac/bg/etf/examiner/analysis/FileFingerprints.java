@@ -0,0 +1,35 @@
+package rs.ac.bg.etf.examiner.analysis;
+
+import rs.ac.bg.etf.examiner.student.*;
+
+/**
+ * Winnowed fingerprints of one version of a source code file, with starter code
+ * rows of given starter signature left out, in order of appearance. Fingerprint <tt>i</tt> covers rows from <tt>startRows[i]</tt> to
+ * <tt>endRows[i]</tt>, both inclusive.
+ *
+ * @author Marko Milojevic
+ *
+ */
+class FileFingerprints {
+
+    final SourceCodeFile sourceCodeFile;
+    final long contentVersion;
+    final int starterSignature;
+    final int[] hashes;
+    final int[] startRows;
+    final int[] endRows;
+
+    FileFingerprints(SourceCodeFile sourceCodeFile, long contentVersion, int starterSignature, int[] hashes,
+            int[] startRows, int[] endRows) {
+        this.sourceCodeFile = sourceCodeFile;
+        this.contentVersion = contentVersion;
+        this.starterSignature = starterSignature;
+        this.hashes = hashes;
+        this.startRows = startRows;
+        this.endRows = endRows;
+    }
+
+    int size() {
+        return this.hashes.length;
+    }
+}
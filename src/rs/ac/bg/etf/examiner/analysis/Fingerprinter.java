@@ -0,0 +1,167 @@
+package rs.ac.bg.etf.examiner.analysis;
+
+import rs.ac.bg.etf.examiner.student.*;
+
+import java.nio.*;
+import java.util.*;
+
+/**
+ * Computes winnowed k-gram fingerprints of a source code file. Tokens are
+ * taken from <tt>SyntaxTokenizer</tt> and normalized first: comments and
+ * preprocessor lines are dropped, and identifiers and literals are replaced by
+ * their type, so renaming variables or changing constants does not hide a copy.
+ * Of every <tt>window</tt> consecutive k-gram hashes, the rightmost minimal one
+ * is selected, which guarantees that any match of at least
+ * <tt>window + k - 1</tt> tokens shares a fingerprint. Minimum of the sliding
+ * window is kept in a monotonic deque, so winnowing is linear in the number of
+ * k-grams.
+ *
+ * @author Marko Milojevic
+ *
+ */
+class Fingerprinter {
+
+    private static final int HASH_BASE = 31;
+    private static final int HASH_MIX = 0x9E3779B1;
+    private final int k;
+    private final int window;
+
+    Fingerprinter(int k, int window) {
+        this.k = k;
+        this.window = window;
+    }
+
+    FileFingerprints fingerprint(SourceCodeFile sourceCodeFile) {
+        long contentVersion;
+        int starterSignature;
+        int[] tokenHashes;
+        int[] tokenRows;
+        int tokenCount = 0;
+        synchronized (sourceCodeFile) {
+            contentVersion = sourceCodeFile.getContentVersion();
+            TokenizedFile tokenizedFile = SyntaxTokenizer.getInstance().tokenize(sourceCodeFile);
+            StarterCodeMask mask = StarterCodeFilter.getInstance().getMask(sourceCodeFile);
+            starterSignature = mask.getStarterSignature();
+            ByteBuffer content = sourceCodeFile.getContent();
+            int capacity = 0;
+            for (List<Token> tokens : tokenizedFile.getLines()) {
+                capacity += tokens.size();
+            }
+
+            tokenHashes = new int[capacity];
+            tokenRows = new int[capacity];
+            for (int row = 0; row < tokenizedFile.getLineCount(); row++) {
+                if (mask.isStarterCode(row)) {
+                    continue;
+                }
+
+                int lineStart = sourceCodeFile.getRowStartOffset(row);
+                for (Token token : tokenizedFile.getTokens(row)) {
+                    int hash = hash(token, content, lineStart);
+                    if (hash != 0) {
+                        tokenHashes[tokenCount] = hash;
+                        tokenRows[tokenCount] = row;
+                        tokenCount++;
+                    }
+                }
+            }
+        }
+
+        return winnow(sourceCodeFile, contentVersion, starterSignature, tokenHashes, tokenRows, tokenCount);
+    }
+
+    private FileFingerprints winnow(SourceCodeFile sourceCodeFile, long contentVersion, int starterSignature,
+            int[] tokenHashes, int[] tokenRows, int tokenCount) {
+        int gramCount = tokenCount - this.k + 1;
+        if (gramCount <= 0) {
+            return new FileFingerprints(sourceCodeFile, contentVersion, starterSignature, new int[0], new int[0],
+                    new int[0]);
+        }
+
+        int[] grams = new int[gramCount];
+        int power = 1;
+        int hash = 0;
+        for (int i = 0; i < this.k; i++) {
+            hash = hash * HASH_BASE + tokenHashes[i];
+            power = i > 0 ? power * HASH_BASE : power;
+        }
+
+        grams[0] = mix(hash);
+        for (int i = 1; i < gramCount; i++) {
+            hash = (hash - tokenHashes[i - 1] * power) * HASH_BASE + tokenHashes[i + this.k - 1];
+            grams[i] = mix(hash);
+        }
+
+        int capacity = gramCount / Math.max(1, this.window / 2) + 1;
+        int[] hashes = new int[capacity];
+        int[] startRows = new int[capacity];
+        int[] endRows = new int[capacity];
+        int count = 0;
+        int selected = -1;
+        int[] deque = new int[gramCount];
+        int head = 0;
+        int tail = 0;
+        for (int i = 0; i < gramCount; i++) {
+            while (tail > head && grams[deque[tail - 1]] >= grams[i]) {
+                tail--;
+            }
+
+            deque[tail++] = i;
+            int start = i - this.window + 1;
+            if (start < 0 && i < gramCount - 1) {
+                continue;
+            }
+
+            while (deque[head] < start) {
+                head++;
+            }
+
+            int minimum = deque[head];
+            if (minimum != selected) {
+                selected = minimum;
+                if (count == hashes.length) {
+                    hashes = Arrays.copyOf(hashes, count * 2);
+                    startRows = Arrays.copyOf(startRows, count * 2);
+                    endRows = Arrays.copyOf(endRows, count * 2);
+                }
+
+                hashes[count] = grams[minimum];
+                startRows[count] = tokenRows[minimum];
+                endRows[count] = tokenRows[minimum + this.k - 1];
+                count++;
+            }
+        }
+
+        return new FileFingerprints(sourceCodeFile, contentVersion, starterSignature, Arrays.copyOf(hashes, count),
+                Arrays.copyOf(startRows, count), Arrays.copyOf(endRows, count));
+    }
+
+    /**
+     * Returns hash of normalized token, or 0 if token is ignored.
+     */
+    private int hash(Token token, ByteBuffer content, int lineStart) {
+        switch (token.getType()) {
+        case COMMENT:
+        case PREPROCESSOR:
+            return 0;
+        case IDENTIFIER:
+        case NUMBER:
+        case STRING:
+        case CHARACTER:
+            return token.getType().ordinal() + 1;
+        default:
+            int hash = token.getType().ordinal() + 1;
+            int start = lineStart + token.getColumn();
+            for (int i = start; i < start + token.getLength(); i++) {
+                hash = hash * HASH_BASE + content.get(i);
+            }
+
+            return hash != 0 ? hash : 1;
+        }
+    }
+
+    private static int mix(int hash) {
+        hash *= HASH_MIX;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,166 @@
+package rs.ac.bg.etf.examiner.analysis;
+
+import java.nio.*;
+import java.util.*;
+
+/**
+ * Line-oriented lexer for Java and C/C++ source code. The only state carried
+ * from one line to the next is whether the line starts inside a block comment,
+ * which lets <tt>SyntaxTokenizer</tt> retokenize single lines. Bytes above 127
+ * are treated as identifier characters, so UTF-8 identifiers and literals are
+ * tokenized correctly without decoding.
+ *
+ * @author Marko Milojevic
+ *
+ */
+class Lexer {
+
+    static final byte NORMAL = 0;
+    static final byte BLOCK_COMMENT = 1;
+    private static final String OPERATOR_CHARACTERS = "+-*/%=<>!&|^~?:";
+
+    private Lexer() {}
+
+    /**
+     * Tokenizes bytes from <tt>start</tt> to <tt>end</tt> of given content, which
+     * make one line without its terminator, and returns state at the end of the line.
+     */
+    static byte tokenizeLine(ByteBuffer content, int start, int end, byte state, SourceLanguage language,
+            List<Token> tokens) {
+        int i = start;
+        if (state == BLOCK_COMMENT) {
+            int commentEnd = indexOf(content, i, end, '*', '/');
+            if (commentEnd < 0) {
+                addToken(tokens, TokenType.COMMENT, start, i, end);
+                return BLOCK_COMMENT;
+            }
+
+            addToken(tokens, TokenType.COMMENT, start, i, commentEnd + 2);
+            i = commentEnd + 2;
+        }
+
+        boolean lineStart = true;
+        while (i < end) {
+            int c = content.get(i) & 0xFF;
+            int next = i + 1 < end ? content.get(i + 1) & 0xFF : -1;
+            int tokenStart = i;
+            if (c == ' ' || c == '\t' || c == '\f') {
+                i++;
+                continue;
+            } else if (c == '/' && next == '/') {
+                addToken(tokens, TokenType.COMMENT, start, i, end);
+                return NORMAL;
+            } else if (c == '/' && next == '*') {
+                int commentEnd = indexOf(content, i + 2, end, '*', '/');
+                if (commentEnd < 0) {
+                    addToken(tokens, TokenType.COMMENT, start, i, end);
+                    return BLOCK_COMMENT;
+                }
+
+                i = commentEnd + 2;
+                addToken(tokens, TokenType.COMMENT, start, tokenStart, i);
+            } else if (c == '#' && lineStart && language == SourceLanguage.C_CPP) {
+                addToken(tokens, TokenType.PREPROCESSOR, start, i, end);
+                return NORMAL;
+            } else if (c == '"' || c == '\'') {
+                i = skipQuoted(content, i + 1, end, c);
+                addToken(tokens, c == '"' ? TokenType.STRING : TokenType.CHARACTER, start, tokenStart, i);
+            } else if (isDigit(c) || (c == '.' && isDigit(next))) {
+                i++;
+                while (i < end && isNumberPart(content.get(i) & 0xFF)) {
+                    i++;
+                }
+
+                addToken(tokens, TokenType.NUMBER, start, tokenStart, i);
+            } else if (isIdentifierStart(c)) {
+                i = skipIdentifier(content, i + 1, end);
+                String word = decode(content, tokenStart, i);
+                addToken(tokens, language.isKeyword(word) ? TokenType.KEYWORD : TokenType.IDENTIFIER,
+                        start, tokenStart, i);
+            } else if (c == '@' && language == SourceLanguage.JAVA && isIdentifierStart(next)) {
+                i = skipIdentifier(content, i + 2, end);
+                addToken(tokens, TokenType.ANNOTATION, start, tokenStart, i);
+            } else if (OPERATOR_CHARACTERS.indexOf(c) >= 0) {
+                i++;
+                while (i < end && OPERATOR_CHARACTERS.indexOf(content.get(i) & 0xFF) >= 0
+                        && !(content.get(i) == '/' && i + 1 < end
+                        && (content.get(i + 1) == '/' || content.get(i + 1) == '*'))) {
+                    i++;
+                }
+
+                addToken(tokens, TokenType.OPERATOR, start, tokenStart, i);
+            } else {
+                i++;
+                addToken(tokens, TokenType.PUNCTUATION, start, tokenStart, i);
+            }
+
+            lineStart = false;
+        }
+
+        return NORMAL;
+    }
+
+    private static void addToken(List<Token> tokens, TokenType type, int lineStart, int start, int end) {
+        if (end > start) {
+            tokens.add(new Token(type, start - lineStart, end - start));
+        }
+    }
+
+    private static int indexOf(ByteBuffer content, int from, int end, char first, char second) {
+        for (int i = from; i + 1 < end; i++) {
+            if (content.get(i) == first && content.get(i + 1) == second) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private static int skipQuoted(ByteBuffer content, int i, int end, int quote) {
+        while (i < end) {
+            int c = content.get(i) & 0xFF;
+            if (c == '\\') {
+                i += 2;
+            } else if (c == quote) {
+                return i + 1;
+            } else {
+                i++;
+            }
+        }
+
+        return end;
+    }
+
+    private static int skipIdentifier(ByteBuffer content, int i, int end) {
+        while (i < end && isIdentifierPart(content.get(i) & 0xFF)) {
+            i++;
+        }
+
+        return i;
+    }
+
+    private static String decode(ByteBuffer content, int start, int end) {
+        char[] chars = new char[end - start];
+        for (int i = start; i < end; i++) {
+            chars[i - start] = (char) (content.get(i) & 0xFF);
+        }
+
+        return new String(chars);
+    }
+
+    private static boolean isDigit(int c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isNumberPart(int c) {
+        return isIdentifierPart(c) || c == '.';
+    }
+
+    private static boolean isIdentifierStart(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c == '$' || c > 127;
+    }
+
+    private static boolean isIdentifierPart(int c) {
+        return isIdentifierStart(c) || isDigit(c);
+    }
+}
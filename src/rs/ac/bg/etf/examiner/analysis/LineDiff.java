@@ -0,0 +1,141 @@
+package rs.ac.bg.etf.examiner.analysis;
+
+import java.util.*;
+
+/**
+ * Finds lines two files have in common, given as line hashes, using Myers'
+ * O(ND) difference algorithm. Lines whose hash does not appear in the other
+ * file can never be common, so they are removed before the search, together
+ * with the common prefix and suffix. What is left is usually small even when
+ * the files themselves are large.
+ *
+ * @author Marko Milojevic
+ *
+ */
+class LineDiff {
+
+    static final int MAX_EDIT_DISTANCE = 2048;
+
+    private LineDiff() {}
+
+    /**
+     * Returns indices of lines of <tt>a</tt> that belong to a longest common
+     * subsequence of <tt>a</tt> and <tt>b</tt>. If the files differ by more than
+     * {@link #MAX_EDIT_DISTANCE} lines, every line of <tt>a</tt> found anywhere
+     * in <tt>b</tt> is returned instead.
+     */
+    static BitSet commonLines(int[] a, int[] b) {
+        BitSet common = new BitSet(a.length);
+        int[] aIndices = filter(a, b);
+        int[] bIndices = filter(b, a);
+        int n = aIndices.length;
+        int m = bIndices.length;
+        int prefix = 0;
+        while (prefix < n && prefix < m && a[aIndices[prefix]] == b[bIndices[prefix]]) {
+            common.set(aIndices[prefix]);
+            prefix++;
+        }
+
+        int suffix = 0;
+        while (suffix < n - prefix && suffix < m - prefix
+                && a[aIndices[n - 1 - suffix]] == b[bIndices[m - 1 - suffix]]) {
+            common.set(aIndices[n - 1 - suffix]);
+            suffix++;
+        }
+
+        int[] x = new int[n - prefix - suffix];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = a[aIndices[prefix + i]];
+        }
+
+        int[] y = new int[m - prefix - suffix];
+        for (int i = 0; i < y.length; i++) {
+            y[i] = b[bIndices[prefix + i]];
+        }
+
+        BitSet middle = diff(x, y);
+        if (middle == null) {
+            for (int i = 0; i < x.length; i++) {
+                common.set(aIndices[prefix + i]);
+            }
+        } else {
+            for (int i = middle.nextSetBit(0); i >= 0; i = middle.nextSetBit(i + 1)) {
+                common.set(aIndices[prefix + i]);
+            }
+        }
+
+        return common;
+    }
+
+    /**
+     * Returns indices of lines of <tt>a</tt> whose hash appears in <tt>b</tt>.
+     */
+    private static int[] filter(int[] a, int[] b) {
+        int[] sorted = b.clone();
+        Arrays.sort(sorted);
+        int[] indices = new int[a.length];
+        int count = 0;
+        for (int i = 0; i < a.length; i++) {
+            if (Arrays.binarySearch(sorted, a[i]) >= 0) {
+                indices[count++] = i;
+            }
+        }
+
+        return Arrays.copyOf(indices, count);
+    }
+
+    /**
+     * Returns indices of common lines of <tt>x</tt>, or null if edit distance
+     * exceeds {@link #MAX_EDIT_DISTANCE}.
+     */
+    private static BitSet diff(int[] x, int[] y) {
+        int n = x.length;
+        int m = y.length;
+        int max = Math.min(n + m, MAX_EDIT_DISTANCE);
+        int offset = max + 1;
+        int[] v = new int[2 * max + 3];
+        List<int[]> trace = new ArrayList<int[]>();
+        for (int d = 0; d <= max; d++) {
+            trace.add(Arrays.copyOfRange(v, offset - d - 1, offset + d + 2));
+            for (int k = -d; k <= d; k += 2) {
+                int i = k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1]) ?
+                        v[offset + k + 1] : v[offset + k - 1] + 1;
+                int j = i - k;
+                while (i < n && j < m && x[i] == y[j]) {
+                    i++;
+                    j++;
+                }
+
+                v[offset + k] = i;
+                if (i >= n && j >= m) {
+                    return backtrack(trace, d, n, m);
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private static BitSet backtrack(List<int[]> trace, int distance, int n, int m) {
+        BitSet common = new BitSet(n);
+        int i = n;
+        int j = m;
+        for (int d = distance; d >= 0; d--) {
+            int[] v = trace.get(d);
+            int k = i - j;
+            int previousK = k == -d || (k != d && v[k - 1 + d + 1] < v[k + 1 + d + 1]) ? k + 1 : k - 1;
+            int previousI = v[previousK + d + 1];
+            int previousJ = previousI - previousK;
+            while (i > previousI && j > previousJ) {
+                i--;
+                j--;
+                common.set(i);
+            }
+
+            i = previousI;
+            j = previousJ;
+        }
+
+        return common;
+    }
+}
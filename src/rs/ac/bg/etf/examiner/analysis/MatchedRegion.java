@@ -0,0 +1,76 @@
+package rs.ac.bg.etf.examiner.analysis;
+
+import rs.ac.bg.etf.examiner.student.*;
+
+/**
+ * Pair of row ranges, one in each of two source code files, whose normalized
+ * tokens match. Rows are inclusive, as in <tt>FileRemark</tt>.
+ *
+ * @author Marko Milojevic
+ *
+ */
+public class MatchedRegion {
+
+    private final SourceCodeFile firstSourceCodeFile;
+    private final int firstStartRow;
+    private int firstEndRow;
+    private final SourceCodeFile secondSourceCodeFile;
+    private int secondStartRow;
+    private int secondEndRow;
+
+    MatchedRegion(SourceCodeFile firstSourceCodeFile, int firstStartRow, int firstEndRow,
+            SourceCodeFile secondSourceCodeFile, int secondStartRow, int secondEndRow) {
+        this.firstSourceCodeFile = firstSourceCodeFile;
+        this.firstStartRow = firstStartRow;
+        this.firstEndRow = firstEndRow;
+        this.secondSourceCodeFile = secondSourceCodeFile;
+        this.secondStartRow = secondStartRow;
+        this.secondEndRow = secondEndRow;
+    }
+
+    public SourceCodeFile getFirstSourceCodeFile() {
+        return this.firstSourceCodeFile;
+    }
+
+    public int getFirstStartRow() {
+        return this.firstStartRow;
+    }
+
+    public int getFirstEndRow() {
+        return this.firstEndRow;
+    }
+
+    public SourceCodeFile getSecondSourceCodeFile() {
+        return this.secondSourceCodeFile;
+    }
+
+    public int getSecondStartRow() {
+        return this.secondStartRow;
+    }
+
+    public int getSecondEndRow() {
+        return this.secondEndRow;
+    }
+
+    /**
+     * Extends this region by given ranges if they continue it in both files.
+     */
+    boolean merge(SourceCodeFile firstSourceCodeFile, int firstStartRow, int firstEndRow,
+            SourceCodeFile secondSourceCodeFile, int secondStartRow, int secondEndRow) {
+        if (firstSourceCodeFile != this.firstSourceCodeFile || secondSourceCodeFile != this.secondSourceCodeFile
+                || firstStartRow > this.firstEndRow + 1 || secondStartRow > this.secondEndRow + 1
+                || secondEndRow < this.secondStartRow - 1) {
+            return false;
+        }
+
+        this.firstEndRow = Math.max(this.firstEndRow, firstEndRow);
+        this.secondStartRow = Math.min(this.secondStartRow, secondStartRow);
+        this.secondEndRow = Math.max(this.secondEndRow, secondEndRow);
+        return true;
+    }
+
+    public String toString() {
+        return this.firstSourceCodeFile.getName() + " [" + this.firstStartRow + ", " + this.firstEndRow + "] ~ "
+                + this.secondSourceCodeFile.getName() + " [" + this.secondStartRow + ", " + this.secondEndRow + "]";
+    }
+}
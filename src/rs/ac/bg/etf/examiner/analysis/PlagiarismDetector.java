@@ -0,0 +1,448 @@
+package rs.ac.bg.etf.examiner.analysis;
+
+import rs.ac.bg.etf.examiner.errors.*;
+import rs.ac.bg.etf.examiner.labexercise.*;
+import rs.ac.bg.etf.examiner.student.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.apache.logging.log4j.*;
+
+/**
+ * Finds students of a <tt>Cohort</tt> whose implementations of the same task
+ * share code. Every student's files of a task are reduced to winnowed k-gram
+ * fingerprints, which are kept in an inverted index per task, mapping each
+ * fingerprint to the students having it. Fingerprints are computed in
+ * parallel by {@link #build()}, in the common fork join pool unless another
+ * pool is given, and {@link #update(StudentAssignment)} replaces fingerprints
+ * of a single student, recomputing only files whose content or starter code
+ * changed. Registered as a <tt>CohortWatchListener</tt>, the index
+ * follows changes of student directories on its own.
+ *
+ * @author Marko Milojevic
+ *
+ */
+public class PlagiarismDetector implements CohortWatchListener {
+
+    private static final Logger log = LogManager.getLogger(PlagiarismDetector.class.getName());
+    public static final int DEFAULT_K_GRAM_LENGTH = 12;
+    public static final int DEFAULT_WINDOW_SIZE = 8;
+    public static final int DEFAULT_MIN_SHARED_FINGERPRINTS = 4;
+    public static final int DEFAULT_MAX_STUDENT_PERCENTAGE = 50;
+    private Cohort cohort;
+    private Fingerprinter fingerprinter;
+    private ForkJoinPool pool;
+    private int minSharedFingerprints;
+    private int maxStudentPercentage;
+    private Map<String, TaskIndex> taskIndexes;
+
+    {
+        minSharedFingerprints = DEFAULT_MIN_SHARED_FINGERPRINTS;
+        maxStudentPercentage = DEFAULT_MAX_STUDENT_PERCENTAGE;
+        taskIndexes = new HashMap<String, TaskIndex>();
+    }
+
+    public PlagiarismDetector(Cohort cohort) {
+        this(cohort, DEFAULT_K_GRAM_LENGTH, DEFAULT_WINDOW_SIZE);
+    }
+
+    public PlagiarismDetector(Cohort cohort, int kGramLength, int windowSize) {
+        this(cohort, kGramLength, windowSize, ForkJoinPool.commonPool());
+    }
+
+    public PlagiarismDetector(Cohort cohort, int kGramLength, int windowSize, ForkJoinPool pool) {
+        if (cohort == null || pool == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        } else if (kGramLength <= 0 || windowSize <= 0) {
+            log.error(ErrorMessages.NON_POSITIVE_VALUE);
+            throw new IllegalArgumentException(ErrorMessages.NON_POSITIVE_VALUE);
+        }
+
+        this.cohort = cohort;
+        this.fingerprinter = new Fingerprinter(kGramLength, windowSize);
+        this.pool = pool;
+    }
+
+    public Cohort getCohort() {
+        return this.cohort;
+    }
+
+    public ForkJoinPool getPool() {
+        return this.pool;
+    }
+
+    public synchronized int getMinSharedFingerprints() {
+        return this.minSharedFingerprints;
+    }
+
+    public synchronized void setMinSharedFingerprints(int minSharedFingerprints) {
+        if (minSharedFingerprints <= 0) {
+            log.error(ErrorMessages.NON_POSITIVE_VALUE);
+            throw new IllegalArgumentException(ErrorMessages.NON_POSITIVE_VALUE);
+        }
+
+        this.minSharedFingerprints = minSharedFingerprints;
+    }
+
+    public synchronized int getMaxStudentPercentage() {
+        return this.maxStudentPercentage;
+    }
+
+    /**
+     * Sets the largest percentage of students that may share a fingerprint
+     * for it to be taken into account. More common fingerprints come from code
+     * everybody writes, or from code given to students, and are ignored.
+     */
+    public synchronized void setMaxStudentPercentage(int maxStudentPercentage) {
+        if (maxStudentPercentage < 0 || maxStudentPercentage > 100) {
+            log.error(ErrorMessages.INVALID_PERCENTAGE_VALUE);
+            throw new IllegalArgumentException();
+        }
+
+        this.maxStudentPercentage = maxStudentPercentage;
+    }
+
+    /**
+     * Fingerprints all students of the cohort in parallel and rebuilds the index.
+     * Students whose files cannot be read are logged and left out.
+     */
+    public void build() throws InterruptedException {
+        List<StudentAssignment> studentAssignments = this.cohort.getStudentAssignments();
+        int total = studentAssignments.size();
+        List<Future<Map<String, StudentFingerprints>>> futures =
+                new ArrayList<Future<Map<String, StudentFingerprints>>>(total);
+        Map<String, TaskIndex> taskIndexes = new HashMap<String, TaskIndex>();
+        try {
+            for (StudentAssignment studentAssignment : studentAssignments) {
+                futures.add(this.pool.submit(new FingerprintStudentTask(studentAssignment, null)));
+            }
+
+            for (int i = 0; i < total; i++) {
+                try {
+                    add(taskIndexes, studentAssignments.get(i), futures.get(i).get());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof java.lang.Error) {
+                        throw (java.lang.Error) cause;
+                    }
+
+                    log.error("Student " + studentAssignments.get(i).getId() + " could not be fingerprinted.", cause);
+                }
+            }
+        } catch (InterruptedException e) {
+            for (Future<Map<String, StudentFingerprints>> future : futures) {
+                future.cancel(true);
+            }
+
+            throw e;
+        }
+
+        synchronized (this) {
+            this.taskIndexes = taskIndexes;
+        }
+
+        log.info("Fingerprinted " + total + " students of " + this.cohort.getDirectory().getPath());
+    }
+
+    /**
+     * Replaces fingerprints of given student. Only files changed since they were
+     * last fingerprinted are processed again.
+     */
+    public void update(StudentAssignment studentAssignment) {
+        if (studentAssignment == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        }
+
+        Map<String, StudentFingerprints> previous = new HashMap<String, StudentFingerprints>();
+        synchronized (this) {
+            for (Map.Entry<String, TaskIndex> entry : this.taskIndexes.entrySet()) {
+                StudentFingerprints studentFingerprints = entry.getValue().students.get(studentAssignment);
+                if (studentFingerprints != null) {
+                    previous.put(entry.getKey(), studentFingerprints);
+                }
+            }
+        }
+
+        Map<String, StudentFingerprints> fingerprints =
+                new FingerprintStudentTask(studentAssignment, previous).call();
+        synchronized (this) {
+            remove(this.taskIndexes, studentAssignment);
+            add(this.taskIndexes, studentAssignment, fingerprints);
+        }
+    }
+
+    public synchronized boolean remove(StudentAssignment studentAssignment) {
+        if (studentAssignment == null) {
+            return false;
+        }
+
+        return remove(this.taskIndexes, studentAssignment);
+    }
+
+    public void sourceCodeFilesChanged(StudentAssignment studentAssignment, List<SourceCodeFile> added,
+            List<SourceCodeFile> modified, List<SourceCodeFile> removed) {
+        update(studentAssignment);
+    }
+
+    public void fileRemarksRemoved(StudentAssignment studentAssignment, List<FileRemark> remarks) {}
+
+    public List<PlagiarismMatch> getMatches(Task task) {
+        if (task == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        }
+
+        return getMatches(task.getName());
+    }
+
+    /**
+     * Returns pairs of students sharing at least the minimal number of
+     * fingerprints in given task, ordered from the most similar pair.
+     */
+    public synchronized List<PlagiarismMatch> getMatches(String taskName) {
+        List<PlagiarismMatch> matches = new ArrayList<PlagiarismMatch>();
+        TaskIndex taskIndex = this.taskIndexes.get(taskName);
+        if (taskIndex == null) {
+            return matches;
+        }
+
+        List<StudentAssignment> studentAssignments = new ArrayList<StudentAssignment>(taskIndex.students.keySet());
+        Collections.sort(studentAssignments, new Comparator<StudentAssignment>() {
+            public int compare(StudentAssignment s1, StudentAssignment s2) {
+                return s1.getId().compareTo(s2.getId());
+            }
+        });
+
+        int count = studentAssignments.size();
+        Map<StudentAssignment, Integer> positions = new IdentityHashMap<StudentAssignment, Integer>();
+        for (int i = 0; i < count; i++) {
+            positions.put(studentAssignments.get(i), i);
+        }
+
+        int maxStudents = getMaxStudents(count);
+        Map<Long, int[]> sharedCounts = new HashMap<Long, int[]>();
+        for (int i = 0; i < count; i++) {
+            for (int hash : taskIndex.students.get(studentAssignments.get(i)).distinctHashes) {
+                List<StudentAssignment> posting = taskIndex.postings.get(hash);
+                if (posting.size() > maxStudents) {
+                    continue;
+                }
+
+                for (StudentAssignment other : posting) {
+                    int j = positions.get(other);
+                    if (j > i) {
+                        Long key = (long) i * count + j;
+                        int[] sharedCount = sharedCounts.get(key);
+                        if (sharedCount == null) {
+                            sharedCount = new int[1];
+                            sharedCounts.put(key, sharedCount);
+                        }
+
+                        sharedCount[0]++;
+                    }
+                }
+            }
+        }
+
+        for (Map.Entry<Long, int[]> entry : sharedCounts.entrySet()) {
+            int shared = entry.getValue()[0];
+            if (shared < this.minSharedFingerprints) {
+                continue;
+            }
+
+            StudentAssignment first = studentAssignments.get((int) (entry.getKey() / count));
+            StudentAssignment second = studentAssignments.get((int) (entry.getKey() % count));
+            StudentFingerprints firstFingerprints = taskIndex.students.get(first);
+            StudentFingerprints secondFingerprints = taskIndex.students.get(second);
+            double similarity = (double) shared / Math.min(firstFingerprints.distinctHashes.length,
+                    secondFingerprints.distinctHashes.length);
+            matches.add(new PlagiarismMatch(taskName, first, second, shared, similarity,
+                    findMatchedRegions(taskIndex, firstFingerprints, secondFingerprints, maxStudents)));
+        }
+
+        Collections.sort(matches);
+        return matches;
+    }
+
+    private List<MatchedRegion> findMatchedRegions(TaskIndex taskIndex, StudentFingerprints first,
+            StudentFingerprints second, int maxStudents) {
+        Map<Integer, int[]> secondOccurrences = new HashMap<Integer, int[]>();
+        for (int f = 0; f < second.files.size(); f++) {
+            FileFingerprints fileFingerprints = second.files.get(f);
+            for (int i = 0; i < fileFingerprints.size(); i++) {
+                if (!secondOccurrences.containsKey(fileFingerprints.hashes[i])) {
+                    secondOccurrences.put(fileFingerprints.hashes[i], new int[] { f, i });
+                }
+            }
+        }
+
+        List<MatchedRegion> regions = new ArrayList<MatchedRegion>();
+        MatchedRegion last = null;
+        for (FileFingerprints fileFingerprints : first.files) {
+            for (int i = 0; i < fileFingerprints.size(); i++) {
+                int hash = fileFingerprints.hashes[i];
+                int[] occurrence = secondOccurrences.get(hash);
+                if (occurrence == null || taskIndex.postings.get(hash).size() > maxStudents) {
+                    continue;
+                }
+
+                FileFingerprints other = second.files.get(occurrence[0]);
+                int j = occurrence[1];
+                if (last == null || !last.merge(fileFingerprints.sourceCodeFile, fileFingerprints.startRows[i],
+                        fileFingerprints.endRows[i], other.sourceCodeFile, other.startRows[j], other.endRows[j])) {
+                    last = new MatchedRegion(fileFingerprints.sourceCodeFile, fileFingerprints.startRows[i],
+                            fileFingerprints.endRows[i], other.sourceCodeFile, other.startRows[j], other.endRows[j]);
+                    regions.add(last);
+                }
+            }
+        }
+
+        return regions;
+    }
+
+    private int getMaxStudents(int studentCount) {
+        return Math.max(2, studentCount * this.maxStudentPercentage / 100);
+    }
+
+    private static void add(Map<String, TaskIndex> taskIndexes, StudentAssignment studentAssignment,
+            Map<String, StudentFingerprints> fingerprints) {
+        for (Map.Entry<String, StudentFingerprints> entry : fingerprints.entrySet()) {
+            TaskIndex taskIndex = taskIndexes.get(entry.getKey());
+            if (taskIndex == null) {
+                taskIndex = new TaskIndex();
+                taskIndexes.put(entry.getKey(), taskIndex);
+            }
+
+            taskIndex.students.put(studentAssignment, entry.getValue());
+            for (int hash : entry.getValue().distinctHashes) {
+                List<StudentAssignment> posting = taskIndex.postings.get(hash);
+                if (posting == null) {
+                    posting = new ArrayList<StudentAssignment>(2);
+                    taskIndex.postings.put(hash, posting);
+                }
+
+                posting.add(studentAssignment);
+            }
+        }
+    }
+
+    private static boolean remove(Map<String, TaskIndex> taskIndexes, StudentAssignment studentAssignment) {
+        boolean removed = false;
+        for (TaskIndex taskIndex : taskIndexes.values()) {
+            StudentFingerprints studentFingerprints = taskIndex.students.remove(studentAssignment);
+            if (studentFingerprints == null) {
+                continue;
+            }
+
+            for (int hash : studentFingerprints.distinctHashes) {
+                List<StudentAssignment> posting = taskIndex.postings.get(hash);
+                for (Iterator<StudentAssignment> it = posting.iterator(); it.hasNext();) {
+                    if (it.next() == studentAssignment) {
+                        it.remove();
+                    }
+                }
+
+                if (posting.isEmpty()) {
+                    taskIndex.postings.remove(hash);
+                }
+            }
+
+            removed = true;
+        }
+
+        return removed;
+    }
+
+    private static class TaskIndex {
+
+        private Map<StudentAssignment, StudentFingerprints> students =
+                new IdentityHashMap<StudentAssignment, StudentFingerprints>();
+        private Map<Integer, List<StudentAssignment>> postings = new HashMap<Integer, List<StudentAssignment>>();
+    }
+
+    private static class StudentFingerprints {
+
+        private List<FileFingerprints> files;
+        private int[] distinctHashes;
+
+        StudentFingerprints(List<FileFingerprints> files) {
+            this.files = files;
+            int size = 0;
+            for (FileFingerprints fileFingerprints : files) {
+                size += fileFingerprints.size();
+            }
+
+            int[] hashes = new int[size];
+            int position = 0;
+            for (FileFingerprints fileFingerprints : files) {
+                System.arraycopy(fileFingerprints.hashes, 0, hashes, position, fileFingerprints.size());
+                position += fileFingerprints.size();
+            }
+
+            Arrays.sort(hashes);
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                if (i == 0 || hashes[i] != hashes[i - 1]) {
+                    hashes[count++] = hashes[i];
+                }
+            }
+
+            this.distinctHashes = Arrays.copyOf(hashes, count);
+        }
+    }
+
+    private class FingerprintStudentTask implements Callable<Map<String, StudentFingerprints>> {
+
+        private StudentAssignment studentAssignment;
+        private Map<String, StudentFingerprints> previous;
+
+        FingerprintStudentTask(StudentAssignment studentAssignment, Map<String, StudentFingerprints> previous) {
+            this.studentAssignment = studentAssignment;
+            this.previous = previous;
+        }
+
+        public Map<String, StudentFingerprints> call() {
+            Map<String, List<SourceCodeFile>> sourceCodeFiles = new LinkedHashMap<String, List<SourceCodeFile>>();
+            for (StudentTask studentTask : this.studentAssignment.getStudentTasks()) {
+                sourceCodeFiles.put(studentTask.getName(),
+                        new ArrayList<SourceCodeFile>(studentTask.getSourceCodeFiles()));
+            }
+
+            Map<String, StudentFingerprints> fingerprints = new HashMap<String, StudentFingerprints>();
+            for (Map.Entry<String, List<SourceCodeFile>> entry : sourceCodeFiles.entrySet()) {
+                List<FileFingerprints> files = new ArrayList<FileFingerprints>();
+                for (SourceCodeFile sourceCodeFile : entry.getValue()) {
+                    FileFingerprints fileFingerprints = getPrevious(entry.getKey(), sourceCodeFile);
+                    files.add(fileFingerprints != null ? fileFingerprints : fingerprinter.fingerprint(sourceCodeFile));
+                }
+
+                if (!files.isEmpty()) {
+                    fingerprints.put(entry.getKey(), new StudentFingerprints(files));
+                }
+            }
+
+            return fingerprints;
+        }
+
+        private FileFingerprints getPrevious(String taskName, SourceCodeFile sourceCodeFile) {
+            StudentFingerprints studentFingerprints = this.previous != null ? this.previous.get(taskName) : null;
+            if (studentFingerprints == null) {
+                return null;
+            }
+
+            for (FileFingerprints fileFingerprints : studentFingerprints.files) {
+                if (fileFingerprints.sourceCodeFile == sourceCodeFile
+                        && fileFingerprints.contentVersion == sourceCodeFile.getContentVersion()
+                        && fileFingerprints.starterSignature
+                                == StarterCodeFilter.getInstance().getStarterSignature(sourceCodeFile)) {
+                    return fileFingerprints;
+                }
+            }
+
+            return null;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package rs.ac.bg.etf.examiner.analysis;
+
+import rs.ac.bg.etf.examiner.errors.*;
+import rs.ac.bg.etf.examiner.student.*;
+
+import java.util.*;
+
+/**
+ * Two students whose implementations of the same task share fingerprints.
+ * Similarity is the share of fingerprints of the smaller implementation found
+ * in the other one, so copying a whole solution into a larger one still scores 1.
+ *
+ * @author Marko Milojevic
+ *
+ */
+public class PlagiarismMatch implements Comparable<PlagiarismMatch> {
+
+    private final String taskName;
+    private final StudentAssignment firstStudentAssignment;
+    private final StudentAssignment secondStudentAssignment;
+    private final int sharedFingerprintCount;
+    private final double similarity;
+    private final List<MatchedRegion> matchedRegions;
+
+    PlagiarismMatch(String taskName, StudentAssignment firstStudentAssignment,
+            StudentAssignment secondStudentAssignment, int sharedFingerprintCount, double similarity,
+            List<MatchedRegion> matchedRegions) {
+        this.taskName = taskName;
+        this.firstStudentAssignment = firstStudentAssignment;
+        this.secondStudentAssignment = secondStudentAssignment;
+        this.sharedFingerprintCount = sharedFingerprintCount;
+        this.similarity = similarity;
+        this.matchedRegions = Collections.unmodifiableList(matchedRegions);
+    }
+
+    public String getTaskName() {
+        return this.taskName;
+    }
+
+    public StudentAssignment getFirstStudentAssignment() {
+        return this.firstStudentAssignment;
+    }
+
+    public StudentAssignment getSecondStudentAssignment() {
+        return this.secondStudentAssignment;
+    }
+
+    public int getSharedFingerprintCount() {
+        return this.sharedFingerprintCount;
+    }
+
+    public double getSimilarity() {
+        return this.similarity;
+    }
+
+    public List<MatchedRegion> getMatchedRegions() {
+        return this.matchedRegions;
+    }
+
+    /**
+     * Creates a <tt>FileRemark</tt> for both sides of every matched region.
+     * Remarks are not attached to students, so they can be reviewed first.
+     */
+    public List<FileRemark> createFileRemarks(String explanation) {
+        List<FileRemark> remarks = new ArrayList<FileRemark>();
+        for (MatchedRegion region : this.matchedRegions) {
+            remarks.add(createFileRemark(region.getFirstSourceCodeFile(), region.getFirstStartRow(),
+                    region.getFirstEndRow(), explanation));
+            remarks.add(createFileRemark(region.getSecondSourceCodeFile(), region.getSecondStartRow(),
+                    region.getSecondEndRow(), explanation));
+        }
+
+        return remarks;
+    }
+
+    private FileRemark createFileRemark(SourceCodeFile sourceCodeFile, int startRow, int endRow,
+            String explanation) {
+        return new FileRemark(sourceCodeFile, sourceCodeFile.getRowsAsString(startRow, endRow), startRow, endRow,
+                explanation);
+    }
+
+    public int compareTo(PlagiarismMatch match) {
+        if (match == null) {
+            return -1;
+        } else if (this.similarity != match.similarity) {
+            return this.similarity > match.similarity ? -1 : 1;
+        } else if (this.sharedFingerprintCount != match.sharedFingerprintCount) {
+            return this.sharedFingerprintCount > match.sharedFingerprintCount ? -1 : 1;
+        }
+
+        return this.firstStudentAssignment.getId().compareTo(match.firstStudentAssignment.getId());
+    }
+
+    public String toString() {
+        return this.taskName + ": " + this.firstStudentAssignment.getId() + " ~ "
+                + this.secondStudentAssignment.getId() + " (" + Math.round(this.similarity * 100) + "%)";
+    }
+}
@@ -0,0 +1,40 @@
+package rs.ac.bg.etf.examiner.analysis;
+
+import rs.ac.bg.etf.examiner.student.*;
+
+import java.util.*;
+
+/**
+ * Languages recognized by <tt>SyntaxTokenizer</tt>, with their keywords.
+ *
+ * @author Marko Milojevic
+ *
+ */
+public enum SourceLanguage {
+    JAVA("abstract", "assert", "boolean", "break", "byte", "case", "catch", "char", "class", "const",
+            "continue", "default", "do", "double", "else", "enum", "extends", "final", "finally", "float",
+            "for", "goto", "if", "implements", "import", "instanceof", "int", "interface", "long", "native",
+            "new", "package", "private", "protected", "public", "return", "short", "static", "strictfp",
+            "super", "switch", "synchronized", "this", "throw", "throws", "transient", "try", "void",
+            "volatile", "while", "true", "false", "null"),
+    C_CPP("auto", "bool", "break", "case", "catch", "char", "class", "const", "constexpr", "continue",
+            "default", "delete", "do", "double", "else", "enum", "explicit", "extern", "false", "float",
+            "for", "friend", "goto", "if", "inline", "int", "long", "mutable", "namespace", "new", "nullptr",
+            "operator", "private", "protected", "public", "register", "return", "short", "signed", "sizeof",
+            "static", "struct", "switch", "template", "this", "throw", "true", "try", "typedef", "typename",
+            "union", "unsigned", "using", "virtual", "void", "volatile", "while", "NULL");
+
+    private final Set<String> keywords;
+
+    private SourceLanguage(String... keywords) {
+        this.keywords = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(keywords)));
+    }
+
+    public boolean isKeyword(String word) {
+        return this.keywords.contains(word);
+    }
+
+    public static SourceLanguage of(SourceCodeFile sourceCodeFile) {
+        return sourceCodeFile.getName().endsWith(".java") ? JAVA : C_CPP;
+    }
+}
@@ -0,0 +1,171 @@
+package rs.ac.bg.etf.examiner.analysis;
+
+import rs.ac.bg.etf.examiner.errors.*;
+import rs.ac.bg.etf.examiner.labexercise.*;
+import rs.ac.bg.etf.examiner.student.*;
+
+import java.net.*;
+import java.nio.*;
+import java.util.*;
+
+import org.apache.logging.log4j.*;
+
+/**
+ * Recognizes rows of student's source code files that come from starter files
+ * of the task. A file is compared with the starter file of the same name, or
+ * with all starter files of the task if there is none, line by line, ignoring
+ * whitespace. Resulting masks are cached until file's content or task's
+ * starter files change. Singleton Design Pattern.
+ *
+ * @author Marko Milojevic
+ *
+ */
+public class StarterCodeFilter {
+
+    private static final Logger log = LogManager.getLogger(StarterCodeFilter.class.getName());
+    public static final int DEFAULT_CACHE_SIZE = 4096;
+    private static StarterCodeFilter instance;
+    private final int cacheSize;
+    private final Map<URI, StarterCodeMask> cache;
+
+    protected StarterCodeFilter(int cacheSize) {
+        if (cacheSize <= 0) {
+            log.error(ErrorMessages.NON_POSITIVE_VALUE);
+            throw new IllegalArgumentException(ErrorMessages.NON_POSITIVE_VALUE);
+        }
+
+        this.cacheSize = cacheSize;
+        this.cache = new LinkedHashMap<URI, StarterCodeMask>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            protected boolean removeEldestEntry(Map.Entry<URI, StarterCodeMask> eldest) {
+                return size() > StarterCodeFilter.this.cacheSize;
+            }
+        };
+    }
+
+    public static synchronized StarterCodeFilter getInstance() {
+        if (instance == null) {
+            instance = new StarterCodeFilter(DEFAULT_CACHE_SIZE);
+        }
+
+        return instance;
+    }
+
+    public static synchronized void setInstance(StarterCodeFilter instance) {
+        if (instance != null) {
+            StarterCodeFilter.instance = instance;
+        }
+    }
+
+    public int getCacheSize() {
+        return this.cacheSize;
+    }
+
+    public boolean isStarterCode(SourceCodeFile sourceCodeFile, int row) {
+        return getMask(sourceCodeFile).isStarterCode(row);
+    }
+
+    public StarterCodeMask getMask(SourceCodeFile sourceCodeFile) {
+        if (sourceCodeFile == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        }
+
+        List<StarterFile> starterFiles = getStarterFiles(sourceCodeFile);
+        int starterSignature = getSignature(starterFiles);
+        URI uri = sourceCodeFile.getUri();
+        long contentVersion = sourceCodeFile.getContentVersion();
+        StarterCodeMask cached;
+        synchronized (this.cache) {
+            cached = this.cache.get(uri);
+        }
+
+        if (cached != null && cached.getContentVersion() == contentVersion
+                && cached.getStarterSignature() == starterSignature) {
+            return cached;
+        }
+
+        StarterCodeMask mask = createMask(sourceCodeFile, starterFiles, starterSignature);
+        synchronized (this.cache) {
+            this.cache.put(uri, mask);
+        }
+
+        return mask;
+    }
+
+    /**
+     * Returns signature of starter files the mask of given file is computed
+     * from, which changes whenever any of them is replaced or edited.
+     */
+    int getStarterSignature(SourceCodeFile sourceCodeFile) {
+        return getSignature(getStarterFiles(sourceCodeFile));
+    }
+
+    public void invalidate(SourceCodeFile sourceCodeFile) {
+        if (sourceCodeFile == null) {
+            return;
+        }
+
+        synchronized (this.cache) {
+            this.cache.remove(sourceCodeFile.getUri());
+        }
+    }
+
+    public void clear() {
+        synchronized (this.cache) {
+            this.cache.clear();
+        }
+    }
+
+    private List<StarterFile> getStarterFiles(SourceCodeFile sourceCodeFile) {
+        StudentTask studentTask = sourceCodeFile.getParent();
+        Task task = studentTask != null ? studentTask.getTask() : null;
+        if (task == null) {
+            return Collections.emptyList();
+        }
+
+        StarterFile starterFile = task.getStarterFileByName(sourceCodeFile.getName());
+        return starterFile != null ? Collections.singletonList(starterFile) : task.getStarterFiles();
+    }
+
+    private int getSignature(List<StarterFile> starterFiles) {
+        int signature = 1;
+        for (StarterFile starterFile : starterFiles) {
+            signature = 31 * signature + System.identityHashCode(starterFile);
+            signature = 31 * signature + starterFile.getContentHash();
+        }
+
+        return signature;
+    }
+
+    private StarterCodeMask createMask(SourceCodeFile sourceCodeFile, List<StarterFile> starterFiles,
+            int starterSignature) {
+        long contentVersion;
+        int lineCount;
+        int[] lineHashes;
+        synchronized (sourceCodeFile) {
+            contentVersion = sourceCodeFile.getContentVersion();
+            lineCount = sourceCodeFile.getLineCount();
+            if (starterFiles.isEmpty()) {
+                return new StarterCodeMask(contentVersion, starterSignature, lineCount, new BitSet());
+            }
+
+            ByteBuffer content = sourceCodeFile.getContent();
+            lineHashes = new int[lineCount];
+            for (int row = 0; row < lineCount; row++) {
+                lineHashes[row] = StarterFile.hashLine(content, sourceCodeFile.getRowStartOffset(row),
+                        sourceCodeFile.getRowEndOffset(row));
+            }
+        }
+
+        BitSet starterRows = new BitSet(lineCount);
+        for (StarterFile starterFile : starterFiles) {
+            starterRows.or(LineDiff.commonLines(lineHashes, starterFile.getLineHashes()));
+        }
+
+        log.debug(sourceCodeFile.getName() + ": " + starterRows.cardinality() + " of " + lineCount
+                + " rows come from starter code.");
+        return new StarterCodeMask(contentVersion, starterSignature, lineCount, starterRows);
+    }
+}
@@ -0,0 +1,58 @@
+package rs.ac.bg.etf.examiner.analysis;
+
+import java.util.*;
+
+/**
+ * Rows of one version of a student's source code file that were taken over
+ * from the task's starter files. Rows are 0-based, as in <tt>SourceCodeFile</tt>.
+ *
+ * @author Marko Milojevic
+ *
+ */
+public class StarterCodeMask {
+
+    private final long contentVersion;
+    private final int starterSignature;
+    private final int lineCount;
+    private final BitSet starterRows;
+
+    StarterCodeMask(long contentVersion, int starterSignature, int lineCount, BitSet starterRows) {
+        this.contentVersion = contentVersion;
+        this.starterSignature = starterSignature;
+        this.lineCount = lineCount;
+        this.starterRows = starterRows;
+    }
+
+    public long getContentVersion() {
+        return this.contentVersion;
+    }
+
+    int getStarterSignature() {
+        return this.starterSignature;
+    }
+
+    public int getLineCount() {
+        return this.lineCount;
+    }
+
+    public boolean isStarterCode(int row) {
+        return this.starterRows.get(row);
+    }
+
+    public int getStarterRowCount() {
+        return this.starterRows.cardinality();
+    }
+
+    public int getAuthoredRowCount() {
+        return this.lineCount - this.starterRows.cardinality();
+    }
+
+    /**
+     * Returns index of the first row at or after given one which was written
+     * by the student, or -1 if there is none.
+     */
+    public int nextAuthoredRow(int row) {
+        int next = this.starterRows.nextClearBit(row);
+        return next < this.lineCount ? next : -1;
+    }
+}
@@ -0,0 +1,184 @@
+package rs.ac.bg.etf.examiner.analysis;
+
+import rs.ac.bg.etf.examiner.errors.*;
+import rs.ac.bg.etf.examiner.student.*;
+
+import java.net.*;
+import java.nio.*;
+import java.util.*;
+
+import org.apache.logging.log4j.*;
+
+/**
+ * Tokenizes source code files for syntax highlighting and caches the result.
+ * A cached token stream is reused as long as file's content version does not
+ * change. When it does, only lines that differ from the cached version are
+ * tokenized again, together with the following lines whose starting lexer state
+ * changed. Cache is bounded and shared by all files of a cohort.
+ * Singleton Design Pattern.
+ *
+ * @author Marko Milojevic
+ *
+ */
+public class SyntaxTokenizer {
+
+    private static final Logger log = LogManager.getLogger(SyntaxTokenizer.class.getName());
+    public static final int DEFAULT_CACHE_SIZE = 4096;
+    private static SyntaxTokenizer instance;
+    private final int cacheSize;
+    private final Map<URI, TokenizedFile> cache;
+
+    protected SyntaxTokenizer(int cacheSize) {
+        if (cacheSize <= 0) {
+            log.error(ErrorMessages.NON_POSITIVE_VALUE);
+            throw new IllegalArgumentException(ErrorMessages.NON_POSITIVE_VALUE);
+        }
+
+        this.cacheSize = cacheSize;
+        this.cache = new LinkedHashMap<URI, TokenizedFile>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            protected boolean removeEldestEntry(Map.Entry<URI, TokenizedFile> eldest) {
+                return size() > SyntaxTokenizer.this.cacheSize;
+            }
+        };
+    }
+
+    public static synchronized SyntaxTokenizer getInstance() {
+        if (instance == null) {
+            instance = new SyntaxTokenizer(DEFAULT_CACHE_SIZE);
+        }
+
+        return instance;
+    }
+
+    public static synchronized void setInstance(SyntaxTokenizer instance) {
+        if (instance != null) {
+            SyntaxTokenizer.instance = instance;
+        }
+    }
+
+    public int getCacheSize() {
+        return this.cacheSize;
+    }
+
+    public List<Token> getTokens(SourceCodeFile sourceCodeFile, int row) {
+        return tokenize(sourceCodeFile).getTokens(row);
+    }
+
+    public TokenizedFile tokenize(SourceCodeFile sourceCodeFile) {
+        if (sourceCodeFile == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        }
+
+        URI uri = sourceCodeFile.getUri();
+        long contentVersion = sourceCodeFile.getContentVersion();
+        TokenizedFile cached;
+        synchronized (this.cache) {
+            cached = this.cache.get(uri);
+        }
+
+        if (cached != null && cached.getContentVersion() == contentVersion) {
+            return cached;
+        }
+
+        TokenizedFile tokenizedFile = tokenize(sourceCodeFile, cached);
+        synchronized (this.cache) {
+            TokenizedFile current = this.cache.get(uri);
+            if (current == null || current.getContentVersion() < tokenizedFile.getContentVersion()) {
+                this.cache.put(uri, tokenizedFile);
+            }
+        }
+
+        return tokenizedFile;
+    }
+
+    public void invalidate(SourceCodeFile sourceCodeFile) {
+        if (sourceCodeFile == null) {
+            return;
+        }
+
+        synchronized (this.cache) {
+            this.cache.remove(sourceCodeFile.getUri());
+        }
+    }
+
+    public void clear() {
+        synchronized (this.cache) {
+            this.cache.clear();
+        }
+    }
+
+    private TokenizedFile tokenize(SourceCodeFile sourceCodeFile, TokenizedFile previous) {
+        long contentVersion;
+        SourceLanguage language = SourceLanguage.of(sourceCodeFile);
+        ByteBuffer content;
+        int lineCount;
+        int[] starts;
+        int[] ends;
+        synchronized (sourceCodeFile) {
+            contentVersion = sourceCodeFile.getContentVersion();
+            content = sourceCodeFile.getContent();
+            lineCount = sourceCodeFile.getLineCount();
+            starts = new int[lineCount];
+            ends = new int[lineCount];
+            for (int row = 0; row < lineCount; row++) {
+                starts[row] = sourceCodeFile.getRowStartOffset(row);
+                ends[row] = sourceCodeFile.getRowEndOffset(row);
+            }
+        }
+
+        int[] hashes = new int[lineCount];
+        for (int row = 0; row < lineCount; row++) {
+            hashes[row] = hash(content, starts[row], ends[row]);
+        }
+
+        if (previous != null && previous.getLanguage() != language) {
+            previous = null;
+        }
+
+        int previousCount = previous != null ? previous.getLineCount() : 0;
+        int prefix = 0;
+        while (prefix < lineCount && prefix < previousCount && hashes[prefix] == previous.getLineHash(prefix)) {
+            prefix++;
+        }
+
+        int suffix = 0;
+        while (suffix < lineCount - prefix && suffix < previousCount - prefix
+                && hashes[lineCount - 1 - suffix] == previous.getLineHash(previousCount - 1 - suffix)) {
+            suffix++;
+        }
+
+        byte[] entryStates = new byte[lineCount + 1];
+        List<List<Token>> lines = new ArrayList<List<Token>>(lineCount);
+        byte state = Lexer.NORMAL;
+        int retokenized = 0;
+        for (int row = 0; row < lineCount; row++) {
+            entryStates[row] = state;
+            int previousRow = row < prefix ? row : row >= lineCount - suffix ? previousCount - (lineCount - row) : -1;
+            if (previousRow >= 0 && previous.getEntryState(previousRow) == state) {
+                lines.add(previous.getTokens(previousRow));
+                state = previous.getEntryState(previousRow + 1);
+            } else {
+                List<Token> tokens = new ArrayList<Token>();
+                state = Lexer.tokenizeLine(content, starts[row], ends[row], state, language, tokens);
+                lines.add(Collections.unmodifiableList(tokens));
+                retokenized++;
+            }
+        }
+
+        entryStates[lineCount] = state;
+        log.debug("Tokenized " + retokenized + " of " + lineCount + " lines of " + sourceCodeFile.getName());
+        return new TokenizedFile(contentVersion, language, hashes, entryStates, lines);
+    }
+
+    private int hash(ByteBuffer content, int start, int end) {
+        int hash = end - start;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + content.get(i);
+        }
+
+        return hash;
+    }
+}
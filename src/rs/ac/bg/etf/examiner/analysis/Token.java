@@ -0,0 +1,38 @@
+package rs.ac.bg.etf.examiner.analysis;
+
+/**
+ * Represents a token of a source code line. Position is given as a byte
+ * offset from the start of the line, so a token stays valid when lines above
+ * it are inserted or removed.
+ *
+ * @author Marko Milojevic
+ *
+ */
+public class Token {
+
+    private final TokenType type;
+    private final int column;
+    private final int length;
+
+    Token(TokenType type, int column, int length) {
+        this.type = type;
+        this.column = column;
+        this.length = length;
+    }
+
+    public TokenType getType() {
+        return this.type;
+    }
+
+    public int getColumn() {
+        return this.column;
+    }
+
+    public int getLength() {
+        return this.length;
+    }
+
+    public String toString() {
+        return this.type + "[" + this.column + ", " + this.length + "]";
+    }
+}
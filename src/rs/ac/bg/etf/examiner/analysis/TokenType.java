@@ -0,0 +1,9 @@
+package rs.ac.bg.etf.examiner.analysis;
+
+/**
+ * @author Marko Milojevic
+ *
+ */
+public enum TokenType {
+    KEYWORD, IDENTIFIER, NUMBER, STRING, CHARACTER, COMMENT, PREPROCESSOR, ANNOTATION, OPERATOR, PUNCTUATION
+}
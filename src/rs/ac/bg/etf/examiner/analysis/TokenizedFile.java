@@ -0,0 +1,58 @@
+package rs.ac.bg.etf.examiner.analysis;
+
+import java.util.*;
+
+/**
+ * Immutable token stream of one version of a source code file, split into
+ * lines. Besides tokens, it keeps a hash of every line and the lexer state at
+ * the start of every line, which <tt>SyntaxTokenizer</tt> uses to retokenize
+ * only changed lines of the next version.
+ *
+ * @author Marko Milojevic
+ *
+ */
+public class TokenizedFile {
+
+    private final long contentVersion;
+    private final SourceLanguage language;
+    private final int[] lineHashes;
+    private final byte[] entryStates;
+    private final List<List<Token>> lines;
+
+    TokenizedFile(long contentVersion, SourceLanguage language, int[] lineHashes, byte[] entryStates,
+            List<List<Token>> lines) {
+        this.contentVersion = contentVersion;
+        this.language = language;
+        this.lineHashes = lineHashes;
+        this.entryStates = entryStates;
+        this.lines = Collections.unmodifiableList(lines);
+    }
+
+    public long getContentVersion() {
+        return this.contentVersion;
+    }
+
+    public SourceLanguage getLanguage() {
+        return this.language;
+    }
+
+    public int getLineCount() {
+        return this.lines.size();
+    }
+
+    public List<Token> getTokens(int row) {
+        return this.lines.get(row);
+    }
+
+    public List<List<Token>> getLines() {
+        return this.lines;
+    }
+
+    int getLineHash(int row) {
+        return this.lineHashes[row];
+    }
+
+    byte getEntryState(int row) {
+        return this.entryStates[row];
+    }
+}
@@ -0,0 +1,54 @@
+package rs.ac.bg.etf.examiner.errors;
+
+/**
+ * One message of compiler's output, recognized by <tt>CompilerOutputMatcher</tt>
+ * as an <tt>Error</tt> of the database. Rows and columns are counted from 0,
+ * as in <tt>SourceCodeFile</tt>, although compilers count them from 1. Column
+ * is -1 when compiler does not report it.
+ *
+ * @author Marko Milojevic
+ *
+ */
+public class CompilerDiagnostic {
+
+    private final String fileName;
+    private final int row;
+    private final int column;
+    private final String message;
+    private final Error error;
+
+    CompilerDiagnostic(String fileName, int row, int column, String message, Error error) {
+        this.fileName = fileName;
+        this.row = row;
+        this.column = column;
+        this.message = message;
+        this.error = error;
+    }
+
+    /**
+     * Returns path of the file as written by the compiler.
+     */
+    public String getFileName() {
+        return this.fileName;
+    }
+
+    public int getRow() {
+        return this.row;
+    }
+
+    public int getColumn() {
+        return this.column;
+    }
+
+    public String getMessage() {
+        return this.message;
+    }
+
+    public Error getError() {
+        return this.error;
+    }
+
+    public String toString() {
+        return this.fileName + ":" + (this.row + 1) + ": " + this.error.getName();
+    }
+}
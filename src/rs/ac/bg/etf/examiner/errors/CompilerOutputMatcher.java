@@ -0,0 +1,469 @@
+package rs.ac.bg.etf.examiner.errors;
+
+import rs.ac.bg.etf.examiner.student.*;
+
+import java.nio.file.*;
+import java.util.*;
+
+import org.apache.logging.log4j.*;
+
+/**
+ * Recognizes errors of the database in output of javac, gcc or clang. Names
+ * of errors are message templates, in which an ellipsis stands for any text,
+ * so every name is split into literal fragments that have to appear in the
+ * message in order. Fragments of all errors are compiled into one Aho-Corasick
+ * automaton, so each message is read only once, whatever the number of
+ * errors. When several errors match a message, the one with the longest
+ * literal text wins. Matcher does not change after it is created, so it has
+ * to be created again when errors of the database change.
+ *
+ * @author Marko Milojevic
+ *
+ */
+public class CompilerOutputMatcher {
+
+    private static final Logger log = LogManager.getLogger(CompilerOutputMatcher.class.getName());
+    private static final String[] ELLIPSES = { "...", "\u2026" };
+    private static final String NOTE_KIND = "note:";
+    private static final String[] KINDS = { "fatal error:", "error:", "warning:", NOTE_KIND };
+    private final List<Error> errors;
+    private final int[] fragmentCounts;
+    private final int[] literalLengths;
+    private final int[] patternErrors;
+    private final int[] patternFragments;
+    private final int[] patternLengths;
+    private final boolean[] isPatternStartWord;
+    private final boolean[] isPatternEndWord;
+    private char[][] labels;
+    private int[][] targets;
+    private int[] failures;
+    private int[][] outputs;
+
+    public CompilerOutputMatcher(ErrorDatabase database) {
+        this(getErrors(database));
+    }
+
+    public CompilerOutputMatcher(Collection<Error> errors) {
+        if (errors == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        }
+
+        List<Error> matchedErrors = new ArrayList<Error>();
+        List<String[]> errorFragments = new ArrayList<String[]>();
+        int patternCount = 0;
+        for (Error error : errors) {
+            String[] fragments = error != null ? split(error.getName()) : new String[0];
+            if (fragments.length > 0) {
+                matchedErrors.add(error);
+                errorFragments.add(fragments);
+                patternCount += fragments.length;
+            }
+        }
+
+        this.errors = Collections.unmodifiableList(matchedErrors);
+        this.fragmentCounts = new int[matchedErrors.size()];
+        this.literalLengths = new int[matchedErrors.size()];
+        this.patternErrors = new int[patternCount];
+        this.patternFragments = new int[patternCount];
+        this.patternLengths = new int[patternCount];
+        this.isPatternStartWord = new boolean[patternCount];
+        this.isPatternEndWord = new boolean[patternCount];
+        List<Map<Character, Integer>> trie = new ArrayList<Map<Character, Integer>>();
+        List<List<Integer>> trieOutputs = new ArrayList<List<Integer>>();
+        trie.add(new TreeMap<Character, Integer>());
+        trieOutputs.add(new ArrayList<Integer>());
+        int p = 0;
+        for (int e = 0; e < errorFragments.size(); e++) {
+            String[] fragments = errorFragments.get(e);
+            this.fragmentCounts[e] = fragments.length;
+            for (int f = 0; f < fragments.length; f++) {
+                String fragment = fragments[f];
+                int node = 0;
+                for (int i = 0; i < fragment.length(); i++) {
+                    Integer next = trie.get(node).get(fragment.charAt(i));
+                    if (next == null) {
+                        next = trie.size();
+                        trie.get(node).put(fragment.charAt(i), next);
+                        trie.add(new TreeMap<Character, Integer>());
+                        trieOutputs.add(new ArrayList<Integer>());
+                    }
+
+                    node = next;
+                }
+
+                trieOutputs.get(node).add(p);
+                this.patternErrors[p] = e;
+                this.patternFragments[p] = f;
+                this.patternLengths[p] = fragment.length();
+                this.isPatternStartWord[p] = Character.isLetterOrDigit(fragment.charAt(0));
+                this.isPatternEndWord[p] = Character.isLetterOrDigit(fragment.charAt(fragment.length() - 1));
+                this.literalLengths[e] += fragment.length();
+                p++;
+            }
+        }
+
+        compile(trie, trieOutputs);
+    }
+
+    public List<Error> getErrors() {
+        return this.errors;
+    }
+
+    /**
+     * Returns error whose name matches given compiler message, or
+     * <tt>null</tt> if there is none.
+     */
+    public Error match(String message) {
+        if (message == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        }
+
+        int e = match(message, 0, message.length(), new State(this.errors.size()));
+        return e >= 0 ? this.errors.get(e) : null;
+    }
+
+    /**
+     * Returns recognized diagnostics of given compiler output, in order.
+     * Lines that are not diagnostics, notes and messages of unknown errors
+     * are skipped.
+     */
+    public List<CompilerDiagnostic> matchOutput(String output) {
+        if (output == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        }
+
+        List<CompilerDiagnostic> diagnostics = new ArrayList<CompilerDiagnostic>();
+        State state = new State(this.errors.size());
+        int lineStart = 0;
+        while (lineStart < output.length()) {
+            int lineEnd = output.indexOf('\n', lineStart);
+            if (lineEnd < 0) {
+                lineEnd = output.length();
+            }
+
+            CompilerDiagnostic diagnostic = matchLine(output, lineStart,
+                    lineEnd > lineStart && output.charAt(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd, state);
+            if (diagnostic != null) {
+                diagnostics.add(diagnostic);
+            }
+
+            lineStart = lineEnd + 1;
+        }
+
+        return diagnostics;
+    }
+
+    /**
+     * Creates a <tt>FileRemark</tt> for every recognized diagnostic of given
+     * compiler output that points to a row of a file of student's tasks.
+     * Diagnostics of the same error in the same row are reported once. Remarks
+     * are not attached to student, so they can be reviewed first.
+     */
+    public List<FileRemark> createFileRemarks(StudentAssignment studentAssignment, String output,
+            int errorPenaltyPercentage) {
+        if (studentAssignment == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        } else if (errorPenaltyPercentage < 0 || errorPenaltyPercentage > 100) {
+            log.error(ErrorMessages.INVALID_PERCENTAGE_VALUE);
+            throw new IllegalArgumentException();
+        }
+
+        List<FileRemark> remarks = new ArrayList<FileRemark>();
+        Set<String> reported = new HashSet<String>();
+        for (CompilerDiagnostic diagnostic : matchOutput(output)) {
+            SourceCodeFile sourceCodeFile = getSourceCodeFile(studentAssignment, diagnostic.getFileName());
+            int row = diagnostic.getRow();
+            if (sourceCodeFile == null || row >= sourceCodeFile.getLineCount()
+                    || !reported.add(sourceCodeFile.getPath() + ":" + row + ":" + diagnostic.getError().getName())) {
+                continue;
+            }
+
+            remarks.add(new FileRemark(sourceCodeFile, sourceCodeFile.getRowsAsString(row, row), row, row,
+                    diagnostic.getError(), errorPenaltyPercentage, diagnostic.getMessage()));
+        }
+
+        log.info(remarks.size() + " remarks created from compiler output for " + studentAssignment.getId() + ".");
+        return remarks;
+    }
+
+    /**
+     * Parses <tt>file:row:[column:] [kind:] message</tt> header of a line and
+     * matches its message.
+     */
+    private CompilerDiagnostic matchLine(String output, int start, int end, State state) {
+        int colon = output.indexOf(':', start);
+        if (colon == start + 1 && colon + 1 < end
+                && (output.charAt(colon + 1) == '\\' || output.charAt(colon + 1) == '/')) {
+            colon = output.indexOf(':', colon + 1);
+        }
+
+        int row = -1;
+        int position = -1;
+        while (colon >= 0 && colon < end) {
+            position = skipDigits(output, colon + 1, end);
+            if (position > colon + 1 && position < end && output.charAt(position) == ':') {
+                row = parseNumber(output, colon + 1, position);
+                break;
+            }
+
+            colon = output.indexOf(':', colon + 1);
+        }
+
+        if (row <= 0 || colon == start) {
+            return null;
+        }
+
+        String fileName = output.substring(start, colon).trim();
+        int column = -1;
+        int columnEnd = skipDigits(output, position + 1, end);
+        if (columnEnd > position + 1 && columnEnd < end && output.charAt(columnEnd) == ':') {
+            column = parseNumber(output, position + 1, columnEnd) - 1;
+            position = columnEnd;
+        }
+
+        position = skipSpaces(output, position + 1, end);
+        for (String kind : KINDS) {
+            if (output.startsWith(kind, position) && position + kind.length() <= end) {
+                if (kind == NOTE_KIND) {
+                    return null;
+                }
+
+                position = skipSpaces(output, position + kind.length(), end);
+                break;
+            }
+        }
+
+        int e = match(output, position, end, state);
+        if (e < 0) {
+            return null;
+        }
+
+        return new CompilerDiagnostic(fileName, row - 1, column, output.substring(position, end).trim(),
+                this.errors.get(e));
+    }
+
+    /**
+     * Runs the automaton over characters of text from <tt>start</tt> to
+     * <tt>end</tt>. Fragments of an error are accepted in order and without
+     * overlapping, and only at word boundaries. Returns index of the matched
+     * error, or -1.
+     */
+    private int match(String text, int start, int end, State state) {
+        state.reset();
+        int best = -1;
+        int node = 0;
+        for (int i = start; i < end; i++) {
+            node = next(node, Character.toLowerCase(text.charAt(i)));
+            for (int p : this.outputs[node]) {
+                int patternStart = i + 1 - this.patternLengths[p];
+                if (this.isPatternStartWord[p] && patternStart > start
+                        && Character.isLetterOrDigit(text.charAt(patternStart - 1))
+                        || this.isPatternEndWord[p] && i + 1 < end && Character.isLetterOrDigit(text.charAt(i + 1))) {
+                    continue;
+                }
+
+                int e = this.patternErrors[p];
+                if (state.progress[e] != this.patternFragments[p] || patternStart < state.lastEnds[e]) {
+                    continue;
+                }
+
+                if (state.progress[e] == 0) {
+                    state.touched[state.touchedCount++] = e;
+                }
+
+                state.progress[e]++;
+                state.lastEnds[e] = i + 1;
+                if (state.progress[e] == this.fragmentCounts[e]
+                        && (best < 0 || this.literalLengths[e] > this.literalLengths[best]
+                        || this.literalLengths[e] == this.literalLengths[best] && e < best)) {
+                    best = e;
+                }
+            }
+        }
+
+        return best;
+    }
+
+    private int next(int node, char c) {
+        while (true) {
+            int l = Arrays.binarySearch(this.labels[node], c);
+            if (l >= 0) {
+                return this.targets[node][l];
+            } else if (node == 0) {
+                return 0;
+            }
+
+            node = this.failures[node];
+        }
+    }
+
+    /**
+     * Turns the trie into arrays and links every node to the node of its
+     * longest proper suffix, merging outputs of the suffix into the node.
+     */
+    private void compile(List<Map<Character, Integer>> trie, List<List<Integer>> trieOutputs) {
+        int nodeCount = trie.size();
+        this.labels = new char[nodeCount][];
+        this.targets = new int[nodeCount][];
+        this.failures = new int[nodeCount];
+        this.outputs = new int[nodeCount][];
+        for (int n = 0; n < nodeCount; n++) {
+            Map<Character, Integer> edges = trie.get(n);
+            this.labels[n] = new char[edges.size()];
+            this.targets[n] = new int[edges.size()];
+            int l = 0;
+            for (Map.Entry<Character, Integer> edge : edges.entrySet()) {
+                this.labels[n][l] = edge.getKey();
+                this.targets[n][l] = edge.getValue();
+                l++;
+            }
+        }
+
+        Deque<Integer> queue = new ArrayDeque<Integer>();
+        this.outputs[0] = toArray(trieOutputs.get(0));
+        for (int target : this.targets[0]) {
+            this.failures[target] = 0;
+            this.outputs[target] = toArray(trieOutputs.get(target));
+            queue.add(target);
+        }
+
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            for (int l = 0; l < this.labels[node].length; l++) {
+                int target = this.targets[node][l];
+                int failure = next(this.failures[node], this.labels[node][l]);
+                this.failures[target] = failure;
+                List<Integer> targetOutputs = new ArrayList<Integer>(trieOutputs.get(target));
+                for (int p : this.outputs[failure]) {
+                    targetOutputs.add(p);
+                }
+
+                this.outputs[target] = toArray(targetOutputs);
+                queue.add(target);
+            }
+        }
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        int[] array = new int[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+
+        return array;
+    }
+
+    /**
+     * Splits error name into lower case literal fragments around ellipses.
+     */
+    private static String[] split(String name) {
+        String text = name.toLowerCase(Locale.ROOT);
+        for (String ellipsis : ELLIPSES) {
+            text = text.replace(ellipsis, "\u0000");
+        }
+
+        List<String> fragments = new ArrayList<String>();
+        for (String fragment : text.split("\u0000")) {
+            fragment = fragment.trim();
+            if (!fragment.isEmpty()) {
+                fragments.add(fragment);
+            }
+        }
+
+        return fragments.toArray(new String[fragments.size()]);
+    }
+
+    private static List<Error> getErrors(ErrorDatabase database) {
+        if (database == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        }
+
+        List<Error> errors = new ArrayList<Error>();
+        for (ErrorCategory category : database.getCategories()) {
+            errors.addAll(category.getErrors());
+        }
+
+        return errors;
+    }
+
+    /**
+     * Returns file of student's tasks the compiler refers to. Files are found
+     * by name; of several files with the same name, the one whose path ends
+     * with the compiler's path is chosen.
+     */
+    private static SourceCodeFile getSourceCodeFile(StudentAssignment studentAssignment, String fileName) {
+        String name = fileName.substring(Math.max(fileName.lastIndexOf('/'), fileName.lastIndexOf('\\')) + 1);
+        SourceCodeFile found = null;
+        for (StudentTask studentTask : studentAssignment.getStudentTasks()) {
+            SourceCodeFile sourceCodeFile = studentTask.getSourceCodeFileByName(name);
+            if (sourceCodeFile == null) {
+                continue;
+            } else if (found == null) {
+                found = sourceCodeFile;
+            } else if (endsWith(sourceCodeFile.getPath(), fileName)) {
+                return sourceCodeFile;
+            }
+        }
+
+        return found;
+    }
+
+    private static boolean endsWith(Path path, String fileName) {
+        try {
+            return path.endsWith(fileName.replace('\\', '/'));
+        } catch (InvalidPathException e) {
+            return false;
+        }
+    }
+
+    private static int skipDigits(String text, int position, int end) {
+        while (position < end && text.charAt(position) >= '0' && text.charAt(position) <= '9') {
+            position++;
+        }
+
+        return position;
+    }
+
+    private static int skipSpaces(String text, int position, int end) {
+        while (position < end && Character.isWhitespace(text.charAt(position))) {
+            position++;
+        }
+
+        return position;
+    }
+
+    private static int parseNumber(String text, int start, int end) {
+        return end - start > 9 ? Integer.MAX_VALUE : Integer.parseInt(text.substring(start, end));
+    }
+
+    /**
+     * Progress of every error through its fragments within one message.
+     */
+    private static class State {
+
+        final int[] progress;
+        final int[] lastEnds;
+        final int[] touched;
+        int touchedCount;
+
+        State(int errorCount) {
+            this.progress = new int[errorCount];
+            this.lastEnds = new int[errorCount];
+            this.touched = new int[errorCount];
+        }
+
+        void reset() {
+            for (int t = 0; t < this.touchedCount; t++) {
+                this.progress[this.touched[t]] = 0;
+                this.lastEnds[this.touched[t]] = 0;
+            }
+
+            this.touchedCount = 0;
+        }
+    }
+}
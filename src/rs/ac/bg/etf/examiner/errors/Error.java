@@ -8,6 +8,8 @@ import org.apache.logging.log4j.*;
  * Represents an error that can be attached to student's assignment. <tt>Error</tt>s are
  * stored in error database which is represented by <tt>ErrorDatabase</tt>.
  * Errors are divided into categories represented by <tt>ErrorCategory</tt>.
+ * Setters lock the database of the error, or its category, or the error
+ * itself, whichever it belongs to, and pass the change on to the database.
  * 
  * @author Marko Milojevic
  * 
@@ -19,11 +21,12 @@ public class Error implements Serializable, Comparable<Error> {
     public static final String DEFAULT_DESCRIPTION = "No description.";
     public static final ErrorSeverity DEFAULT_SEVERITY = ErrorSeverity.LOW;
     public static final String DEFAULT_EXAMPLE_CODE = "No example code.";
-    private String name;
-    private String description;
-    private ErrorSeverity severity;
-    private String exampleCode;
-    private ErrorCategory parent;
+    private volatile String name;
+    private volatile String description;
+    private volatile ErrorSeverity severity;
+    private volatile String exampleCode;
+    private volatile ErrorCategory parent;
+    private volatile int id;
 
     public Error(String name, String description, ErrorSeverity severity,
             String exampleCode) {
@@ -45,6 +48,19 @@ public class Error implements Serializable, Comparable<Error> {
         setExampleCode(error.exampleCode);
     }
 
+    /**
+     * Returns id given to this error by the database it was first added to,
+     * or 0 if it has never been in a database. Id does not change when the
+     * error is renamed or moved to another category.
+     */
+    public int getId() {
+        return this.id;
+    }
+
+    void setId(int id) {
+        this.id = id;
+    }
+
     public String getName() {
         return this.name;
     }
@@ -53,12 +69,21 @@ public class Error implements Serializable, Comparable<Error> {
         if (name == null) {
         	log.error(ErrorMessages.NULL_ARGUMENT);
             throw new IllegalArgumentException();
-        } else if (hasParent() && parent.containsErrorByName(name)) {
-        	log.error(ErrorMessages.ALREADY_IN_COLLECTION);
-            throw new IllegalArgumentException();
         }
 
-        this.name = name;
+        synchronized (getWriteLock()) {
+        	Error namesake = hasParent() ? parent.getErrorByName(name) : null;
+        	if (namesake != null && namesake != this) {
+        		log.error(ErrorMessages.ALREADY_IN_COLLECTION);
+        		throw new IllegalArgumentException();
+        	}
+
+        	String oldName = this.name;
+        	this.name = name;
+        	if (hasParent()) {
+        		parent.errorRenamed(this, oldName);
+        	}
+        }
     }
 
     public String getDescription() {
@@ -66,8 +91,13 @@ public class Error implements Serializable, Comparable<Error> {
     }
 
     public void setDescription(String description) {
-        this.description = description == null || "".equals(description) ?
-        		DEFAULT_DESCRIPTION : description;
+        synchronized (getWriteLock()) {
+        	this.description = description == null || "".equals(description) ?
+        			DEFAULT_DESCRIPTION : description;
+        	if (hasParent()) {
+        		parent.errorChanged(this);
+        	}
+        }
     }
 
     public ErrorSeverity getSeverity() {
@@ -75,7 +105,12 @@ public class Error implements Serializable, Comparable<Error> {
     }
 
     public void setSeverity(ErrorSeverity severity) {
-        this.severity = severity == null ? DEFAULT_SEVERITY : severity;
+        synchronized (getWriteLock()) {
+        	this.severity = severity == null ? DEFAULT_SEVERITY : severity;
+        	if (hasParent()) {
+        		parent.errorChanged(this);
+        	}
+        }
     }
 
     public String getExampleCode() {
@@ -83,8 +118,13 @@ public class Error implements Serializable, Comparable<Error> {
     }
 
     public void setExampleCode(String exampleCode) {
-        this.exampleCode = exampleCode == null || "".equals(exampleCode) ?
-        		DEFAULT_EXAMPLE_CODE : exampleCode;
+        synchronized (getWriteLock()) {
+        	this.exampleCode = exampleCode == null || "".equals(exampleCode) ?
+        			DEFAULT_EXAMPLE_CODE : exampleCode;
+        	if (hasParent()) {
+        		parent.errorChanged(this);
+        	}
+        }
     }
 
     public ErrorCategory getParent() {
@@ -107,6 +147,11 @@ public class Error implements Serializable, Comparable<Error> {
 		return this.parent != null;
 	}
 
+	private Object getWriteLock() {
+		ErrorCategory parent = this.parent;
+		return parent != null ? parent.getWriteLock() : this;
+	}
+
 	private void removeFromCurrentParent() {
 		this.parent.removeError(this);
 	}
@@ -115,6 +160,11 @@ public class Error implements Serializable, Comparable<Error> {
         return name.compareTo(o.name);
     }
     
+    /**
+     * Errors are equal if they have the same id, so a copy read together with
+     * student's remarks equals the error in the database even after either is
+     * renamed or moved. Errors without an id are equal only to themselves.
+     */
     public boolean equals(Object obj) {
         if (obj == null) {
             return false;
@@ -125,10 +175,15 @@ public class Error implements Serializable, Comparable<Error> {
         }
 
         Error error = (Error) obj;
-        boolean haveSameParent = hasParent() && error.hasParent() ?
-        		parent.equals(error.parent) : false;
+        return this.id > 0 && this.id == error.id;
+    }
 
-        return name.equals(error.name) && haveSameParent;
+    /**
+     * Returns the id. It is given when the error is first added to a database,
+     * so errors should be put into hashed collections only after that.
+     */
+    public int hashCode() {
+        return this.id;
     }
     
     public String toString() {
@@ -6,7 +6,11 @@ import java.util.*;
 import org.apache.logging.log4j.*;
 
 /**
- * Contains list of <tt>Error</tt>s.
+ * Contains list of <tt>Error</tt>s. Errors are also indexed by name; the index
+ * is kept up to date when errors are added, removed or renamed. List and index
+ * are never changed in place: writers copy them and publish the copies, so
+ * readers always see a consistent snapshot without locking. Writers lock the
+ * database of the category, or the category itself if it is in none.
  * 
  * @author Marko Milojevic
  * 
@@ -16,9 +20,11 @@ public class ErrorCategory implements Serializable, Comparable<ErrorCategory> {
     private static final long serialVersionUID = 1L;
     private static final Logger log = LogManager.getLogger(ErrorCategory.class.getName());
     public static final String DEFAULT_CATEGORY_NAME = "NEW";
-    private String name;
-    private List<Error> errors;
-    private ErrorDatabase parent;
+    private volatile String name;
+    private volatile List<Error> errors;
+    private volatile ErrorDatabase parent;
+    private volatile int id;
+    private transient volatile Map<String, Error> errorsByName;
 
     {
     	errors = new ArrayList<Error>();
@@ -32,17 +38,37 @@ public class ErrorCategory implements Serializable, Comparable<ErrorCategory> {
         setName(name);
     }
 
+    /**
+     * Returns id given to this category by the database it was first added
+     * to, or 0 if it has never been in a database.
+     */
+    public int getId() {
+        return this.id;
+    }
+
+    void setId(int id) {
+        this.id = id;
+    }
+
     public String getName() {
         return this.name;
     }
 
     public void setName(String name) {
-    	if (hasParent() && this.parent.containsCategoryByName(name)) {
-    		log.error(ErrorMessages.ALREADY_IN_COLLECTION);
-            throw new IllegalArgumentException();
+    	synchronized (getWriteLock()) {
+    		String newName = name == null || "".equals(name) ? DEFAULT_CATEGORY_NAME : name;
+    		ErrorCategory namesake = hasParent() ? this.parent.getCategoryByName(newName) : null;
+    		if (namesake != null && namesake != this) {
+    			log.error(ErrorMessages.ALREADY_IN_COLLECTION);
+    			throw new IllegalArgumentException();
+    		}
+    		
+    		String oldName = this.name;
+    		this.name = newName;
+    		if (hasParent()) {
+    			this.parent.categoryRenamed(this, oldName);
+    		}
     	}
-    	
-        this.name = name == null || "".equals(name) ? DEFAULT_CATEGORY_NAME : name;
     }
 
     public List<Error> getErrors() {
@@ -54,29 +80,35 @@ public class ErrorCategory implements Serializable, Comparable<ErrorCategory> {
     		return null;
     	}
     	
-    	for (Error error : this.errors) {
-    		if (error.getName().equals(errorName)) {
-    			return error;
-    		}
-    	}
-    	
-    	return null;
+    	return getErrorsByName().get(errorName);
     }
 
     public boolean addError(Error error) {
         if (error == null) {
         	return false;
-        } else if (containsError(error)) {
-            log.error(ErrorMessages.ALREADY_IN_COLLECTION);
-            throw new IllegalArgumentException();
         }
 
-        boolean opResult = this.errors.add(error);
-        if (opResult == true) {
-            error.setParent(this);
-        }
+        synchronized (getWriteLock()) {
+        	if (containsErrorByName(error.getName())) {
+        		log.error(ErrorMessages.ALREADY_IN_COLLECTION);
+        		throw new IllegalArgumentException();
+        	}
+
+        	List<Error> errors = new ArrayList<Error>(this.errors);
+        	boolean opResult = errors.add(error);
+        	if (opResult == true) {
+        		error.setParent(this);
+        		this.errors = errors;
+        		Map<String, Error> errorsByName = new HashMap<String, Error>(getErrorsByName());
+        		errorsByName.put(error.getName(), error);
+        		this.errorsByName = errorsByName;
+        		if (hasParent()) {
+        			this.parent.errorAdded(error);
+        		}
+        	}
 
-        return opResult;
+        	return opResult;
+        }
     }
 
     public boolean removeError(Error error) {
@@ -84,12 +116,23 @@ public class ErrorCategory implements Serializable, Comparable<ErrorCategory> {
         	return false;
         }
 
-        boolean opResult = this.errors.remove(error);
-        if (opResult) {
-            error.setParent(null);
-        }
+        synchronized (getWriteLock()) {
+        	List<Error> errors = new ArrayList<Error>(this.errors);
+        	boolean opResult = errors.remove(error);
+        	if (opResult) {
+        		this.errors = errors;
+        		Map<String, Error> errorsByName = new HashMap<String, Error>(getErrorsByName());
+        		errorsByName.remove(error.getName());
+        		this.errorsByName = errorsByName;
+        		if (hasParent()) {
+        			this.parent.errorRemoved(error);
+        		}
+
+        		error.setParent(null);
+        	}
 
-        return opResult;
+        	return opResult;
+        }
     }
     
     public boolean removeErrorByName(String errorName) {
@@ -102,21 +145,55 @@ public class ErrorCategory implements Serializable, Comparable<ErrorCategory> {
         	return false;
         }
 
-        return errors.contains(error);
+        return getErrorByName(error.getName()) == error || this.errors.contains(error);
     }
     
     public boolean containsErrorByName(String errorName) {
-    	if (errorName == null) {
-    		return false;
+    	return getErrorByName(errorName) != null;
+    }
+
+    /**
+     * Moves given error of this category under its new name in the index.
+     * Called with the write lock held.
+     */
+    void errorRenamed(Error error, String oldName) {
+    	Map<String, Error> errorsByName = new HashMap<String, Error>(getErrorsByName());
+    	if (errorsByName.get(oldName) == error) {
+    		errorsByName.remove(oldName);
     	}
     	
-    	for (Error error : this.errors) {
-    		if (error.getName().equals(errorName)) {
-    			return true;
+    	errorsByName.put(error.getName(), error);
+    	this.errorsByName = errorsByName;
+    	errorChanged(error);
+    }
+
+    /**
+     * Passes a change of given error of this category to the database.
+     */
+    void errorChanged(Error error) {
+    	if (hasParent()) {
+    		this.parent.errorChanged(error);
+    	}
+    }
+
+    private Map<String, Error> getErrorsByName() {
+    	Map<String, Error> errorsByName = this.errorsByName;
+    	if (errorsByName == null) {
+    		synchronized (getWriteLock()) {
+    			if (this.errorsByName == null) {
+    				Map<String, Error> index = new HashMap<String, Error>();
+    				for (Error error : this.errors) {
+    					index.put(error.getName(), error);
+    				}
+    				
+    				this.errorsByName = index;
+    			}
+    			
+    			errorsByName = this.errorsByName;
     		}
     	}
     	
-    	return false;
+    	return errorsByName;
     }
     
     public ErrorDatabase getParent() {
@@ -138,19 +215,32 @@ public class ErrorCategory implements Serializable, Comparable<ErrorCategory> {
 	private boolean hasParent() {
 		return this.parent != null;
 	}
+
+	Object getWriteLock() {
+		ErrorDatabase parent = this.parent;
+		return parent != null ? parent.getWriteLock() : this;
+	}
 	
 	private void removeFromCurrentParent() {
 		this.parent.removeCategory(this);
 	}
 
     public void sort() {
-        Collections.sort(errors);
+        synchronized (getWriteLock()) {
+            List<Error> errors = new ArrayList<Error>(this.errors);
+            Collections.sort(errors);
+            this.errors = errors;
+        }
     }
 
     public int compareTo(ErrorCategory category) {
         return category != null ? name.compareTo(category.name) : 1;
     }
 
+    /**
+     * Categories are equal if they have the same id, which is kept when they
+     * are renamed. Categories without an id are equal only to themselves.
+     */
     public boolean equals(Object obj) {
         if (obj == null) {
             return false;
@@ -161,6 +251,15 @@ public class ErrorCategory implements Serializable, Comparable<ErrorCategory> {
         }
 
         ErrorCategory category = (ErrorCategory) obj;
-        return name.equals(category.name);
+        return this.id > 0 && this.id == category.id;
+    }
+
+    /**
+     * Returns the id. It is given when the category is first added to a
+     * database, so categories should be put into hashed collections only
+     * after that.
+     */
+    public int hashCode() {
+        return this.id;
     }
 }
@@ -10,6 +10,13 @@ import org.apache.logging.log4j.*;
 /**
  * Contains all errors, divided into error categories, that can
  * appear in student's assignment. Singleton Design Pattern.
+ * Categories, errors of a category and indices by name and id are never
+ * changed in place. Writers, serialized on the database, which its categories
+ * and their errors lock as well, publish new copies, so readers see an immutable
+ * snapshot without locking and iteration never fails because of a change.
+ * Every error and category gets a numeric id when it is added for the first
+ * time. Ids are saved with the database and never reused, so they can stand
+ * for an error or category anywhere, and are resolved in constant time.
  * 
  * @author Marko Milojevic
  * 
@@ -18,8 +25,14 @@ public class ErrorDatabase implements Serializable {
 
     private static final long serialVersionUID = 1L;
     private static final Logger log = LogManager.getLogger(ErrorDatabase.class.getName());
-    private static ErrorDatabase instance;
-    private List<ErrorCategory> categories;
+    private static volatile ErrorDatabase instance;
+    private volatile List<ErrorCategory> categories;
+    private int nextErrorId;
+    private int nextCategoryId;
+    private transient volatile Map<String, ErrorCategory> categoriesByName;
+    private transient volatile Error[] errorsById;
+    private transient volatile ErrorCategory[] categoriesById;
+    private transient volatile ErrorSearchIndex searchIndex;
 
     {
     	categories = new ArrayList<ErrorCategory>();
@@ -28,14 +41,21 @@ public class ErrorDatabase implements Serializable {
     protected ErrorDatabase() {}
 
     public static ErrorDatabase getInstance() {
-        if (instance == null) {
-            instance = new ErrorDatabase();
+        ErrorDatabase database = instance;
+        if (database == null) {
+            synchronized (ErrorDatabase.class) {
+                if (instance == null) {
+                    instance = new ErrorDatabase();
+                }
+
+                database = instance;
+            }
         }
 
-        return instance;
+        return database;
     }
     
-    public static void setInstance(ErrorDatabase instance) {
+    public static synchronized void setInstance(ErrorDatabase instance) {
     	if (instance != null) {
     		ErrorDatabase.instance = instance;
     	}
@@ -50,29 +70,37 @@ public class ErrorDatabase implements Serializable {
             return null;
         }
 
-        for (ErrorCategory category : this.categories) {
-            if (category.getName().equals(categoryName)) {
-                return category;
-            }
-        }
-
-        return null;
+        return getCategoriesByName().get(categoryName);
     }
 
     public boolean addCategory(ErrorCategory category) {
         if (category == null) {
             return false;
-        } else if (containsCategory(category)) {
-            log.error(ErrorMessages.ALREADY_IN_COLLECTION);
-            throw new IllegalArgumentException();
-        }
-        
-        boolean opResult = this.categories.add(category);
-        if (opResult == true) {
-        	category.setParent(this);
         }
 
-        return opResult;
+        synchronized (this) {
+        	if (containsCategoryByName(category.getName())) {
+        		log.error(ErrorMessages.ALREADY_IN_COLLECTION);
+        		throw new IllegalArgumentException();
+        	}
+        	
+        	List<ErrorCategory> categories = new ArrayList<ErrorCategory>(this.categories);
+        	boolean opResult = categories.add(category);
+        	if (opResult == true) {
+        		category.setParent(this);
+        		this.categories = categories;
+        		Map<String, ErrorCategory> categoriesByName = new HashMap<String, ErrorCategory>(
+        				getCategoriesByName());
+        		categoriesByName.put(category.getName(), category);
+        		this.categoriesByName = categoriesByName;
+        		register(category);
+        		for (Error error : category.getErrors()) {
+        			errorAdded(error);
+        		}
+        	}
+
+        	return opResult;
+        }
     }
 
     public boolean removeCategory(ErrorCategory category) {
@@ -80,12 +108,25 @@ public class ErrorDatabase implements Serializable {
             return false;
         }
 
-        boolean opResult = this.categories.remove(category);
-        if (opResult) {
-        	category.setParent(null);
+        synchronized (this) {
+        	List<ErrorCategory> categories = new ArrayList<ErrorCategory>(this.categories);
+        	boolean opResult = categories.remove(category);
+        	if (opResult) {
+        		this.categories = categories;
+        		Map<String, ErrorCategory> categoriesByName = new HashMap<String, ErrorCategory>(
+        				getCategoriesByName());
+        		categoriesByName.remove(category.getName());
+        		this.categoriesByName = categoriesByName;
+        		unregister(category);
+        		for (Error error : category.getErrors()) {
+        			errorRemoved(error);
+        		}
+        		
+        		category.setParent(null);
+        	}
+
+        	return opResult;
         }
-
-        return opResult;
     }
     
     public boolean removeCategoryByName(String categoryName) {
@@ -98,37 +139,251 @@ public class ErrorDatabase implements Serializable {
             return false;
         }
 
-        return this.categories.contains(category);
+        return getCategoryByName(category.getName()) != null;
     }
 
     public boolean containsCategoryByName(String categoryName) {
-        if (categoryName == null) {
-            return false;
-        }
+        return getCategoryByName(categoryName) != null;
+    }
 
-        for (ErrorCategory category : this.categories) {
-            if (category.getName().equals(categoryName)) {
-                return true;
-            }
-        }
+    /**
+     * Returns category of this database with given id, or <tt>null</tt>.
+     */
+    public ErrorCategory getCategoryById(int id) {
+    	indexIds();
+    	ErrorCategory[] categoriesById = this.categoriesById;
+    	return id > 0 && id < categoriesById.length ? categoriesById[id] : null;
+    }
 
-        return false;
+    /**
+     * Returns error of this database with given id, or <tt>null</tt>.
+     */
+    public Error getErrorById(int id) {
+    	indexIds();
+    	Error[] errorsById = this.errorsById;
+    	return id > 0 && id < errorsById.length ? errorsById[id] : null;
     }
 
     public boolean containsError(Error error) {
-        if (error == null || error.getParent() == null) {
+        ErrorCategory parent = error != null ? error.getParent() : null;
+        if (parent == null) {
             return false;
         }
         
-        ErrorCategory category = getCategoryByName(error.getParent().getName());
-        return category.containsError(error);
+        ErrorCategory category = getCategoryByName(parent.getName());
+        return category != null && category.containsError(error);
+    }
+
+    /**
+     * Moves given category of this database under its new name in the index.
+     * Called with the write lock held.
+     */
+    void categoryRenamed(ErrorCategory category, String oldName) {
+    	Map<String, ErrorCategory> categoriesByName = new HashMap<String, ErrorCategory>(getCategoriesByName());
+    	if (categoriesByName.get(oldName) == category) {
+    		categoriesByName.remove(oldName);
+    	}
+    	
+    	categoriesByName.put(category.getName(), category);
+    	this.categoriesByName = categoriesByName;
+    }
+
+    /**
+     * Returns index for searching errors of this database, created on first use.
+     */
+    public ErrorSearchIndex getSearchIndex() {
+    	ErrorSearchIndex searchIndex = this.searchIndex;
+    	if (searchIndex == null) {
+    		synchronized (this) {
+    			if (this.searchIndex == null) {
+    				this.searchIndex = new ErrorSearchIndex(this);
+    			}
+    			
+    			searchIndex = this.searchIndex;
+    		}
+    	}
+    	
+    	return searchIndex;
+    }
+
+    /**
+     * Returns the object writers of this database, its categories and their
+     * errors synchronize on, which is the database itself, so it is kept when
+     * the database is saved and loaded.
+     */
+    Object getWriteLock() {
+    	return this;
+    }
+
+    void errorAdded(Error error) {
+    	register(error);
+    	if (this.searchIndex != null) {
+    		this.searchIndex.add(error);
+    	}
+    }
+
+    void errorRemoved(Error error) {
+    	unregister(error);
+    	if (this.searchIndex != null) {
+    		this.searchIndex.remove(error);
+    	}
+    }
+
+    void errorChanged(Error error) {
+    	if (this.searchIndex != null) {
+    		this.searchIndex.update(error);
+    	}
+    }
+
+    /**
+     * Creates the id registry on first use. Ids are given to errors and
+     * categories of a database saved before ids were introduced, and to
+     * those whose id is already taken.
+     */
+    private void indexIds() {
+    	if (this.errorsById != null) {
+    		return;
+    	}
+    	
+    	synchronized (this) {
+    		if (this.errorsById != null) {
+    			return;
+    		}
+    		
+    		this.nextCategoryId = Math.max(this.nextCategoryId, 1);
+    		this.nextErrorId = Math.max(this.nextErrorId, 1);
+    		for (ErrorCategory category : this.categories) {
+    			this.nextCategoryId = Math.max(this.nextCategoryId, category.getId() + 1);
+    			for (Error error : category.getErrors()) {
+    				this.nextErrorId = Math.max(this.nextErrorId, error.getId() + 1);
+    			}
+    		}
+    		
+    		ErrorCategory[] categoriesById = new ErrorCategory[this.nextCategoryId];
+    		Error[] errorsById = new Error[this.nextErrorId];
+    		for (ErrorCategory category : this.categories) {
+    			categoriesById = register(categoriesById, category);
+    			for (Error error : category.getErrors()) {
+    				errorsById = register(errorsById, error);
+    			}
+    		}
+    		
+    		this.categoriesById = categoriesById;
+    		this.errorsById = errorsById;
+    	}
+    }
+    
+    private void register(ErrorCategory category) {
+    	indexIds();
+    	this.categoriesById = register(this.categoriesById.clone(), category);
+    }
+    
+    /**
+     * Puts given category into given registry, giving it a new id if it has
+     * none or its id is taken. Returns the registry, grown if needed.
+     */
+    private ErrorCategory[] register(ErrorCategory[] categoriesById, ErrorCategory category) {
+    	int id = category.getId();
+    	if (id <= 0 || id < categoriesById.length && categoriesById[id] != null && categoriesById[id] != category) {
+    		id = this.nextCategoryId++;
+    		category.setId(id);
+    	}
+    	
+    	if (id >= categoriesById.length) {
+    		categoriesById = Arrays.copyOf(categoriesById, Math.max(2 * categoriesById.length, id + 1));
+    	}
+    	
+    	this.nextCategoryId = Math.max(this.nextCategoryId, id + 1);
+    	categoriesById[id] = category;
+    	return categoriesById;
+    }
+    
+    private void unregister(ErrorCategory category) {
+    	ErrorCategory[] categoriesById = this.categoriesById;
+    	int id = category.getId();
+    	if (categoriesById != null && id > 0 && id < categoriesById.length && categoriesById[id] == category) {
+    		categoriesById = categoriesById.clone();
+    		categoriesById[id] = null;
+    		this.categoriesById = categoriesById;
+    	}
+    }
+    
+    private void register(Error error) {
+    	indexIds();
+    	this.errorsById = register(this.errorsById.clone(), error);
+    }
+    
+    /**
+     * Puts given error into given registry, giving it a new id if it has
+     * none or its id is taken. Returns the registry, grown if needed.
+     */
+    private Error[] register(Error[] errorsById, Error error) {
+    	int id = error.getId();
+    	if (id <= 0 || id < errorsById.length && errorsById[id] != null && errorsById[id] != error) {
+    		id = this.nextErrorId++;
+    		error.setId(id);
+    	}
+    	
+    	if (id >= errorsById.length) {
+    		errorsById = Arrays.copyOf(errorsById, Math.max(2 * errorsById.length, id + 1));
+    	}
+    	
+    	this.nextErrorId = Math.max(this.nextErrorId, id + 1);
+    	errorsById[id] = error;
+    	return errorsById;
+    }
+    
+    private void unregister(Error error) {
+    	Error[] errorsById = this.errorsById;
+    	int id = error.getId();
+    	if (errorsById != null && id > 0 && id < errorsById.length && errorsById[id] == error) {
+    		errorsById = errorsById.clone();
+    		errorsById[id] = null;
+    		this.errorsById = errorsById;
+    	}
+    }
+    
+    /**
+     * Gives ids to all errors and categories before writing, so they are
+     * saved with the database. Writing holds the write lock, so the saved
+     * database is a consistent version.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+    	indexIds();
+    	synchronized (this) {
+    		out.defaultWriteObject();
+    	}
+    }
+
+    private Map<String, ErrorCategory> getCategoriesByName() {
+    	Map<String, ErrorCategory> categoriesByName = this.categoriesByName;
+    	if (categoriesByName == null) {
+    		synchronized (this) {
+    			if (this.categoriesByName == null) {
+    				Map<String, ErrorCategory> index = new HashMap<String, ErrorCategory>();
+    				for (ErrorCategory category : this.categories) {
+    					index.put(category.getName(), category);
+    				}
+    				
+    				this.categoriesByName = index;
+    			}
+    			
+    			categoriesByName = this.categoriesByName;
+    		}
+    	}
+    	
+    	return categoriesByName;
     }
     
     public void sort() {
-        Collections.sort(this.categories);
+        synchronized (this) {
+            List<ErrorCategory> categories = new ArrayList<ErrorCategory>(this.categories);
+            Collections.sort(categories);
+            this.categories = categories;
 
-        for (ErrorCategory category : this.categories) {
-            category.sort();
+            for (ErrorCategory category : categories) {
+                category.sort();
+            }
         }
     }
 
@@ -8,6 +8,7 @@ public class ErrorMessages {
 	private static String newline = System.lineSeparator();
 	public static String NULL_ARGUMENT = "Argmument must not be null.";
 	public static String NON_POSITIVE_VALUE = "Value must be greater than zero.";
+	public static String NEGATIVE_VALUE = "Value must not be less than zero.";
 	public static String ALREADY_IN_COLLECTION = "Object is already contained in collection.";
 	public static String INVALID_PERCENTAGE_VALUE = "Percentage value must be in interval [0, 100].";
 	public static String INVALID_SCORE_VALUE = "Score cannot be less then zero, or bigger then total value.";
@@ -17,6 +18,11 @@ public class ErrorMessages {
 														+ " directory which denotes student's group.";
 	public static String FILE_DOES_NOT_EXIST = "File does not exist.";
 	public static String INVALID_ERROR_POSITION = "Error cannot be marked due to invalid code selection.";
+	public static String INVALID_ROW = "Row is out of file's range.";
+	public static String INVALID_INDEX = "Index is out of range.";
+	public static String NOT_IN_COLLECTION = "Object is not contained in collection.";
+	public static String INVALID_ITEM_PATH = "Task or item does not exist.";
+	public static String UNDEFINED_ASSIGNMENT = "Assignment is not defined by laboratory exercise.";
 	
 	public static String errorMessage(Task task) {
 		if (task == null) {
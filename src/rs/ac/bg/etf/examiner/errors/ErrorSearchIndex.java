@@ -0,0 +1,520 @@
+package rs.ac.bg.etf.examiner.errors;
+
+import java.util.*;
+
+import org.apache.logging.log4j.*;
+
+/**
+ * Inverted index over names, descriptions and example codes of all errors of
+ * an <tt>ErrorDatabase</tt>. Terms are kept sorted, so the last, unfinished
+ * word of a query is matched as a prefix, and every term is also indexed by
+ * its trigrams, so misspelled words and parts of words are matched as well.
+ * Results are ranked by field of the match, quality of the match and rarity
+ * of the term. The index is updated by the database whenever an error is
+ * added, removed or changed. Writers, serialized on the index, publish a new
+ * immutable snapshot, copying only postings and trigram sets they change, so
+ * searches never lock and never wait for a writer. A search scores only
+ * errors in postings of matched terms.
+ *
+ * @author Marko Milojevic
+ *
+ */
+public class ErrorSearchIndex {
+
+    private static final Logger log = LogManager.getLogger(ErrorSearchIndex.class.getName());
+    public static final int DEFAULT_LIMIT = 10;
+    private static final int NAME_WEIGHT = 8;
+    private static final int DESCRIPTION_WEIGHT = 2;
+    private static final int EXAMPLE_CODE_WEIGHT = 1;
+    private static final int MAX_TERM_WEIGHT = 2 * NAME_WEIGHT;
+    private static final int TRIGRAM_LENGTH = 3;
+    private static final float PREFIX_QUALITY = 0.5f;
+    private static final float SUBSTRING_QUALITY = 0.4f;
+    private static final float SIMILAR_QUALITY = 0.3f;
+    private static final float MIN_SIMILARITY = 0.5f;
+    private List<String[]> documentTerms;
+    private Map<Error, Integer> documentIds;
+    private Deque<Integer> freeIds;
+    private volatile Snapshot snapshot;
+
+    {
+        documentTerms = new ArrayList<String[]>();
+        documentIds = new IdentityHashMap<Error, Integer>();
+        freeIds = new ArrayDeque<Integer>();
+        snapshot = new Snapshot(new Error[0], 0, new TreeMap<String, Postings>(),
+                new HashMap<String, Set<String>>());
+    }
+
+    ErrorSearchIndex(ErrorDatabase database) {
+        Changes changes = new Changes(this.snapshot);
+        for (ErrorCategory category : database.getCategories()) {
+            for (Error error : category.getErrors()) {
+                if (!this.documentIds.containsKey(error)) {
+                    addDocument(changes, error);
+                }
+            }
+        }
+
+        this.snapshot = changes.toSnapshot(this.documentIds.size());
+    }
+
+    public int size() {
+        return this.snapshot.size;
+    }
+
+    public List<Error> search(String query) {
+        return search(query, DEFAULT_LIMIT, null);
+    }
+
+    public List<Error> search(String query, int limit) {
+        return search(query, limit, null);
+    }
+
+    /**
+     * Returns at most <tt>limit</tt> errors matching all words of the query,
+     * best first. If categories are given, only errors of those categories
+     * are returned.
+     */
+    public List<Error> search(String query, int limit, Collection<ErrorCategory> categories) {
+        if (query == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        } else if (limit <= 0) {
+            log.error(ErrorMessages.NON_POSITIVE_VALUE);
+            throw new IllegalArgumentException(ErrorMessages.NON_POSITIVE_VALUE);
+        }
+
+        List<String> words = tokenize(query);
+        if (words.isEmpty()) {
+            return new ArrayList<Error>();
+        }
+
+        final Snapshot snapshot = this.snapshot;
+        boolean isLastWordPrefix = Character.isLetterOrDigit(query.charAt(query.length() - 1));
+        Matches matches = null;
+        for (int w = 0; w < words.size(); w++) {
+            Matches wordMatches = new Matches();
+            match(snapshot, words.get(w), isLastWordPrefix && w == words.size() - 1, wordMatches);
+            wordMatches.collapse();
+            if (matches == null) {
+                matches = wordMatches;
+            } else {
+                matches.retain(wordMatches);
+            }
+
+            if (matches.size == 0) {
+                return new ArrayList<Error>();
+            }
+        }
+
+        final int[] ids = matches.ids;
+        final float[] scores = matches.scores;
+        Set<ErrorCategory> filter = categories != null ? new HashSet<ErrorCategory>(categories) : null;
+        PriorityQueue<Integer> best = new PriorityQueue<Integer>(limit + 1, new Comparator<Integer>() {
+            public int compare(Integer first, Integer second) {
+                if (scores[first] != scores[second]) {
+                    return scores[first] < scores[second] ? -1 : 1;
+                }
+
+                return snapshot.documents[ids[second]].compareTo(snapshot.documents[ids[first]]);
+            }
+        });
+
+        for (int m = 0; m < matches.size; m++) {
+            Error error = snapshot.documents[ids[m]];
+            if (filter == null || filter.contains(error.getParent())) {
+                best.add(m);
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+        }
+
+        List<Error> result = new ArrayList<Error>(best.size());
+        while (!best.isEmpty()) {
+            result.add(snapshot.documents[ids[best.poll()]]);
+        }
+
+        Collections.reverse(result);
+        return result;
+    }
+
+    synchronized boolean add(Error error) {
+        if (error == null || this.documentIds.containsKey(error)) {
+            return false;
+        }
+
+        Changes changes = new Changes(this.snapshot);
+        addDocument(changes, error);
+        this.snapshot = changes.toSnapshot(this.documentIds.size());
+        return true;
+    }
+
+    synchronized boolean remove(Error error) {
+        if (error == null || !this.documentIds.containsKey(error)) {
+            return false;
+        }
+
+        Changes changes = new Changes(this.snapshot);
+        removeDocument(changes, error);
+        this.snapshot = changes.toSnapshot(this.documentIds.size());
+        return true;
+    }
+
+    /**
+     * Indexes given error again, after its name, description or example code
+     * has changed. Searches see either the old or the new version of the error.
+     */
+    synchronized boolean update(Error error) {
+        if (error == null || !this.documentIds.containsKey(error)) {
+            return false;
+        }
+
+        Changes changes = new Changes(this.snapshot);
+        removeDocument(changes, error);
+        addDocument(changes, error);
+        this.snapshot = changes.toSnapshot(this.documentIds.size());
+        return true;
+    }
+
+    private void addDocument(Changes changes, Error error) {
+        Map<String, Integer> weights = new HashMap<String, Integer>();
+        addTerms(weights, error.getName(), NAME_WEIGHT);
+        addTerms(weights, error.getDescription(), DESCRIPTION_WEIGHT);
+        addTerms(weights, error.getExampleCode(), EXAMPLE_CODE_WEIGHT);
+
+        int d;
+        if (this.freeIds.isEmpty()) {
+            d = this.documentTerms.size();
+            this.documentTerms.add(null);
+            if (d == changes.documents.length) {
+                changes.documents = Arrays.copyOf(changes.documents, Math.max(2 * d, 16));
+            }
+        } else {
+            d = this.freeIds.poll();
+        }
+
+        changes.documents[d] = error;
+        String[] terms = weights.keySet().toArray(new String[weights.size()]);
+        for (String term : terms) {
+            Postings termPostings = changes.postings.get(term);
+            if (termPostings == null) {
+                termPostings = new Postings(new int[0], new int[0]);
+                for (String trigram : getTrigrams(term)) {
+                    changes.getTrigramTerms(trigram).add(term);
+                }
+            }
+
+            changes.postings.put(term, termPostings.add(d, weights.get(term)));
+        }
+
+        this.documentTerms.set(d, terms);
+        this.documentIds.put(error, d);
+    }
+
+    private void removeDocument(Changes changes, Error error) {
+        int d = this.documentIds.remove(error);
+        for (String term : this.documentTerms.get(d)) {
+            Postings termPostings = changes.postings.get(term).remove(d);
+            if (termPostings.size() > 0) {
+                changes.postings.put(term, termPostings);
+                continue;
+            }
+
+            changes.postings.remove(term);
+            for (String trigram : getTrigrams(term)) {
+                Set<String> trigramTerms = changes.getTrigramTerms(trigram);
+                trigramTerms.remove(term);
+                if (trigramTerms.isEmpty()) {
+                    changes.trigrams.remove(trigram);
+                }
+            }
+        }
+
+        changes.documents[d] = null;
+        this.documentTerms.set(d, null);
+        this.freeIds.add(d);
+    }
+
+    private static void match(Snapshot snapshot, String word, boolean isPrefix, Matches wordMatches) {
+        boolean isMatched = false;
+        Postings exact = snapshot.postings.get(word);
+        if (exact != null) {
+            score(snapshot, exact, 1, wordMatches);
+            isMatched = true;
+        }
+
+        if (isPrefix) {
+            for (Map.Entry<String, Postings> entry : snapshot.postings.tailMap(word, false).entrySet()) {
+                String term = entry.getKey();
+                if (!term.startsWith(word)) {
+                    break;
+                }
+
+                score(snapshot, entry.getValue(), PREFIX_QUALITY + PREFIX_QUALITY * word.length() / term.length(),
+                        wordMatches);
+                isMatched = true;
+            }
+        }
+
+        if (isMatched || word.length() < TRIGRAM_LENGTH) {
+            return;
+        }
+
+        Set<String> wordTrigrams = getTrigrams(word);
+        Map<String, int[]> sharedTrigrams = new HashMap<String, int[]>();
+        for (String trigram : wordTrigrams) {
+            Set<String> trigramTerms = snapshot.trigrams.get(trigram);
+            if (trigramTerms == null) {
+                continue;
+            }
+
+            for (String term : trigramTerms) {
+                int[] shared = sharedTrigrams.get(term);
+                if (shared == null) {
+                    shared = new int[1];
+                    sharedTrigrams.put(term, shared);
+                }
+
+                shared[0]++;
+            }
+        }
+
+        for (Map.Entry<String, int[]> entry : sharedTrigrams.entrySet()) {
+            String term = entry.getKey();
+            int shared = entry.getValue()[0];
+            if (shared == wordTrigrams.size() && term.contains(word)) {
+                score(snapshot, snapshot.postings.get(term), SUBSTRING_QUALITY, wordMatches);
+                continue;
+            }
+
+            float similarity = 2f * shared / (wordTrigrams.size() + term.length() - TRIGRAM_LENGTH + 1);
+            if (similarity >= MIN_SIMILARITY) {
+                score(snapshot, snapshot.postings.get(term), SIMILAR_QUALITY * similarity, wordMatches);
+            }
+        }
+    }
+
+    private static void score(Snapshot snapshot, Postings termPostings, float quality, Matches wordMatches) {
+        float rarity = (float) Math.log(1 + (double) snapshot.size / termPostings.size());
+        for (int p = 0; p < termPostings.size(); p++) {
+            wordMatches.add(termPostings.ids[p], quality * rarity * termPostings.weights[p]);
+        }
+    }
+
+    private static void addTerms(Map<String, Integer> weights, String text, int weight) {
+        for (String term : tokenize(text)) {
+            Integer current = weights.get(term);
+            weights.put(term, Math.min(MAX_TERM_WEIGHT, current != null ? current + weight : weight));
+        }
+    }
+
+    /**
+     * Splits given text into lower case words of letters and digits.
+     */
+    private static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<String>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean isWordCharacter = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (isWordCharacter && start < 0) {
+                start = i;
+            } else if (!isWordCharacter && start >= 0) {
+                words.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+
+        return words;
+    }
+
+    private static Set<String> getTrigrams(String term) {
+        Set<String> termTrigrams = new HashSet<String>();
+        for (int i = 0; i + TRIGRAM_LENGTH <= term.length(); i++) {
+            termTrigrams.add(term.substring(i, i + TRIGRAM_LENGTH));
+        }
+
+        return termTrigrams;
+    }
+
+    /**
+     * Errors by id, with <tt>null</tt> for free ids, number of indexed errors,
+     * postings of terms and terms containing each trigram, as seen by searches.
+     * Neither the snapshot nor anything it refers to is changed after it is
+     * published.
+     */
+    private static class Snapshot {
+
+        final Error[] documents;
+        final int size;
+        final NavigableMap<String, Postings> postings;
+        final Map<String, Set<String>> trigrams;
+
+        Snapshot(Error[] documents, int size, NavigableMap<String, Postings> postings,
+                Map<String, Set<String>> trigrams) {
+            this.documents = documents;
+            this.size = size;
+            this.postings = postings;
+            this.trigrams = trigrams;
+        }
+    }
+
+    /**
+     * Errors matched by a word, or by all words so far, with their scores.
+     * While matching, pairs of error id and score are packed into longs,
+     * score in the lower half; since scores are positive, sorting them orders
+     * pairs by id and then by score.
+     */
+    private static class Matches {
+
+        long[] entries = new long[16];
+        int[] ids;
+        float[] scores;
+        int size;
+
+        void add(int id, float score) {
+            if (this.size == this.entries.length) {
+                this.entries = Arrays.copyOf(this.entries, 2 * this.size);
+            }
+
+            this.entries[this.size++] = ((long) id << 32) | (Float.floatToIntBits(score) & 0xFFFFFFFFL);
+        }
+
+        /**
+         * Keeps the best score of every error, in ascending order of ids.
+         */
+        void collapse() {
+            Arrays.sort(this.entries, 0, this.size);
+            this.ids = new int[this.size];
+            this.scores = new float[this.size];
+            int count = 0;
+            for (int i = 0; i < this.size; i++) {
+                int id = (int) (this.entries[i] >>> 32);
+                float score = Float.intBitsToFloat((int) this.entries[i]);
+                if (count > 0 && this.ids[count - 1] == id) {
+                    this.scores[count - 1] = score;
+                } else {
+                    this.ids[count] = id;
+                    this.scores[count] = score;
+                    count++;
+                }
+            }
+
+            this.size = count;
+            this.entries = null;
+        }
+
+        /**
+         * Keeps only errors matched by given matches too, adding their scores.
+         */
+        void retain(Matches other) {
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < this.size && j < other.size) {
+                if (this.ids[i] < other.ids[j]) {
+                    i++;
+                } else if (this.ids[i] > other.ids[j]) {
+                    j++;
+                } else {
+                    this.ids[count] = this.ids[i];
+                    this.scores[count] = this.scores[i] + other.scores[j];
+                    count++;
+                    i++;
+                    j++;
+                }
+            }
+
+            this.size = count;
+        }
+    }
+
+    /**
+     * Copies of the parts of a snapshot a writer changes. Trigram sets are
+     * copied once, the first time they are changed.
+     */
+    private static class Changes {
+
+        Error[] documents;
+        final NavigableMap<String, Postings> postings;
+        final Map<String, Set<String>> trigrams;
+        final Set<String> copiedTrigrams;
+
+        Changes(Snapshot snapshot) {
+            this.documents = snapshot.documents.clone();
+            this.postings = new TreeMap<String, Postings>(snapshot.postings);
+            this.trigrams = new HashMap<String, Set<String>>(snapshot.trigrams);
+            this.copiedTrigrams = new HashSet<String>();
+        }
+
+        Set<String> getTrigramTerms(String trigram) {
+            Set<String> trigramTerms = this.trigrams.get(trigram);
+            if (trigramTerms == null || this.copiedTrigrams.add(trigram)) {
+                trigramTerms = trigramTerms != null ? new HashSet<String>(trigramTerms) : new HashSet<String>();
+                this.trigrams.put(trigram, trigramTerms);
+                this.copiedTrigrams.add(trigram);
+            }
+
+            return trigramTerms;
+        }
+
+        Snapshot toSnapshot(int size) {
+            return new Snapshot(this.documents, size, this.postings, this.trigrams);
+        }
+    }
+
+    /**
+     * Ids of errors containing a term, in ascending order, and weight of the
+     * term in each of them. Postings are never changed; adding or removing an
+     * id returns new postings.
+     */
+    private static class Postings {
+
+        final int[] ids;
+        final int[] weights;
+
+        Postings(int[] ids, int[] weights) {
+            this.ids = ids;
+            this.weights = weights;
+        }
+
+        int size() {
+            return this.ids.length;
+        }
+
+        Postings add(int id, int weight) {
+            int p = Arrays.binarySearch(this.ids, id);
+            if (p >= 0) {
+                int[] weights = this.weights.clone();
+                weights[p] = weight;
+                return new Postings(this.ids, weights);
+            }
+
+            p = -p - 1;
+            int[] ids = new int[this.ids.length + 1];
+            int[] weights = new int[this.ids.length + 1];
+            System.arraycopy(this.ids, 0, ids, 0, p);
+            System.arraycopy(this.weights, 0, weights, 0, p);
+            System.arraycopy(this.ids, p, ids, p + 1, this.ids.length - p);
+            System.arraycopy(this.weights, p, weights, p + 1, this.ids.length - p);
+            ids[p] = id;
+            weights[p] = weight;
+            return new Postings(ids, weights);
+        }
+
+        Postings remove(int id) {
+            int p = Arrays.binarySearch(this.ids, id);
+            if (p < 0) {
+                return this;
+            }
+
+            int[] ids = new int[this.ids.length - 1];
+            int[] weights = new int[this.ids.length - 1];
+            System.arraycopy(this.ids, 0, ids, 0, p);
+            System.arraycopy(this.weights, 0, weights, 0, p);
+            System.arraycopy(this.ids, p + 1, ids, p, this.ids.length - p - 1);
+            System.arraycopy(this.weights, p + 1, weights, p, this.ids.length - p - 1);
+            return new Postings(ids, weights);
+        }
+    }
+}
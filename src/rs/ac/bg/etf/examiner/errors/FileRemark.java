@@ -38,6 +38,10 @@ public class FileRemark extends Remark implements Comparable<FileRemark> {
         return this.sourceCodeFile;
     }
 
+    public StudentTask getStudentTask() {
+    	return this.sourceCodeFile != null ? this.sourceCodeFile.getParent() : null;
+    }
+
     private void setSourceCodeFile(SourceCodeFile sourceCodeFile) {
     	if (sourceCodeFile == null) {
     		log.error(ErrorMessages.NULL_ARGUMENT);
@@ -1,5 +1,7 @@
 package rs.ac.bg.etf.examiner.errors;
 
+import rs.ac.bg.etf.examiner.student.*;
+
 import java.io.*;
 import org.apache.logging.log4j.*;
 
@@ -37,7 +39,13 @@ public abstract class Remark implements Serializable {
             throw new IllegalArgumentException();
         }
 
+        Error oldError = this.error;
         this.error = error;
+        invalidatePenaltyPercentage();
+        StudentAssignment studentAssignment = getStudentAssignment();
+        if (oldError != error && studentAssignment != null) {
+        	studentAssignment.remarkErrorChanged(this);
+        }
     }
     
     public String getExplanation() {
@@ -60,6 +68,7 @@ public abstract class Remark implements Serializable {
         }
 
         this.errorPenaltyPercentage = errorPenaltyPercentage;
+        invalidatePenaltyPercentage();
     }
 
     public RemarkSeverity getSeverity() {
@@ -68,6 +77,29 @@ public abstract class Remark implements Serializable {
     
     public abstract RemarkType getType();
 
+    /**
+     * Returns the <tt>StudentTask</tt> this remark refers to, or null if it
+     * refers to the whole assignment.
+     */
+    public StudentTask getStudentTask() {
+    	return null;
+    }
+
+    /**
+     * Returns the <tt>StudentAssignment</tt> this remark refers to.
+     */
+    public StudentAssignment getStudentAssignment() {
+    	StudentTask studentTask = getStudentTask();
+    	return studentTask != null ? studentTask.getParent() : null;
+    }
+
+    private void invalidatePenaltyPercentage() {
+    	StudentTask studentTask = getStudentTask();
+    	if (studentTask != null) {
+    		studentTask.invalidatePenaltyPercentage();
+    	}
+    }
+
     public String toString() {
         String result = "";
         String newline = System.lineSeparator();
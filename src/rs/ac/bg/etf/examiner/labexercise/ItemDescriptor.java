@@ -0,0 +1,107 @@
+package rs.ac.bg.etf.examiner.labexercise;
+
+import rs.ac.bg.etf.examiner.errors.*;
+
+import java.io.*;
+import java.lang.ref.*;
+import java.util.*;
+
+import org.apache.logging.log4j.*;
+
+/**
+ * Immutable name, description and value of an <tt>Item</tt>, shared by
+ * implementations of the item of all students. Descriptors are interned, so
+ * there is only one descriptor of equal data in memory, also after
+ * deserialization.
+ *
+ * @author Marko Milojevic
+ *
+ */
+public final class ItemDescriptor implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private static final Logger log = LogManager.getLogger(ItemDescriptor.class.getName());
+    private static final Map<ItemDescriptor, WeakReference<ItemDescriptor>> pool =
+            new WeakHashMap<ItemDescriptor, WeakReference<ItemDescriptor>>();
+    private final String name;
+    private final String description;
+    private final int value;
+
+    private ItemDescriptor(String name, String description, int value) {
+        this.name = name;
+        this.description = description;
+        this.value = value;
+    }
+
+    public static ItemDescriptor of(Item item) {
+        if (item == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        }
+
+        return of(item.getName(), item.getDescription(), item.getValue());
+    }
+
+    public static ItemDescriptor of(String name, String description, int value) {
+        if (name == null || description == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        } else if (value <= 0) {
+            log.error(ErrorMessages.NON_POSITIVE_VALUE);
+            throw new IllegalArgumentException(ErrorMessages.NON_POSITIVE_VALUE);
+        }
+
+        return intern(new ItemDescriptor(name, description, value));
+    }
+
+    private static ItemDescriptor intern(ItemDescriptor descriptor) {
+        synchronized (pool) {
+            WeakReference<ItemDescriptor> reference = pool.get(descriptor);
+            ItemDescriptor interned = reference != null ? reference.get() : null;
+            if (interned == null) {
+                pool.put(descriptor, new WeakReference<ItemDescriptor>(descriptor));
+                interned = descriptor;
+            }
+
+            return interned;
+        }
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public String getDescription() {
+        return this.description;
+    }
+
+    public int getValue() {
+        return this.value;
+    }
+
+    private Object readResolve() throws ObjectStreamException {
+        return intern(this);
+    }
+
+    public boolean equals(Object obj) {
+        if (obj == null) {
+            return false;
+        } else if (obj == this) {
+            return true;
+        } else if (!(obj instanceof ItemDescriptor)) {
+            return false;
+        }
+
+        ItemDescriptor descriptor = (ItemDescriptor) obj;
+        return this.value == descriptor.value && this.name.equals(descriptor.name)
+                && this.description.equals(descriptor.description);
+    }
+
+    public int hashCode() {
+        return 31 * (31 * this.name.hashCode() + this.description.hashCode()) + this.value;
+    }
+
+    public String toString() {
+        return this.name + " (" + this.value + ")";
+    }
+}
@@ -0,0 +1,186 @@
+package rs.ac.bg.etf.examiner.labexercise;
+
+import rs.ac.bg.etf.examiner.errors.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.file.*;
+import java.util.*;
+
+import org.apache.logging.log4j.*;
+
+/**
+ * Represents a file handed out to students as a starting point of a <tt>Task</tt>.
+ * Its content is stored in the <tt>LabExercise</tt> itself, so lines students
+ * took over from it can be recognized in any session. Has a name, content
+ * and a parent <tt>Task</tt>.
+ *
+ * @author Marko Milojevic
+ *
+ */
+public class StarterFile implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private static final Logger log = LogManager.getLogger(StarterFile.class.getName());
+    private String name;
+    private byte[] content;
+    private int contentHash;
+    private transient int[] lineHashes;
+    private Task parent;
+
+    public StarterFile(String name, byte[] content) {
+        setName(name);
+        setContent(content);
+    }
+
+    public StarterFile(File file) throws IOException {
+        if (file == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        } else if (!file.isFile()) {
+            log.error(ErrorMessages.FILE_DOES_NOT_EXIST);
+            throw new FileNotFoundException(ErrorMessages.FILE_DOES_NOT_EXIST);
+        }
+
+        setName(file.getName());
+        setContent(Files.readAllBytes(file.toPath()));
+    }
+
+    public StarterFile(StarterFile starterFile) {
+        if (starterFile == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        }
+
+        setName(starterFile.name);
+        setContent(starterFile.content);
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public void setName(String name) {
+        if (name == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        } else if (hasParent() && this.parent.containsStarterFileByName(name)) {
+            log.error(ErrorMessages.ALREADY_IN_COLLECTION);
+            throw new IllegalArgumentException();
+        }
+
+        this.name = name;
+    }
+
+    public byte[] getContent() {
+        return this.content.clone();
+    }
+
+    public synchronized void setContent(byte[] content) {
+        if (content == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        }
+
+        this.content = content.clone();
+        this.contentHash = Arrays.hashCode(content);
+        this.lineHashes = null;
+    }
+
+    /**
+     * Returns hash of every line of the content, computed by
+     * {@link #hashLine(ByteBuffer, int, int)}. Hashes are computed on first use
+     * and kept until the content changes.
+     */
+    public synchronized int[] getLineHashes() {
+        if (this.lineHashes == null) {
+            ByteBuffer content = ByteBuffer.wrap(this.content);
+            List<Integer> hashes = new ArrayList<Integer>();
+            int lineStart = 0;
+            int limit = content.limit();
+            for (int i = 0; i <= limit; i++) {
+                if (i == limit || content.get(i) == '\n') {
+                    if (i < limit || lineStart < limit) {
+                        hashes.add(hashLine(content, lineStart, i));
+                    }
+
+                    lineStart = i + 1;
+                }
+            }
+
+            this.lineHashes = new int[hashes.size()];
+            for (int i = 0; i < hashes.size(); i++) {
+                this.lineHashes[i] = hashes.get(i);
+            }
+        }
+
+        return this.lineHashes.clone();
+    }
+
+    /**
+     * Returns hash of the line between given offsets without whitespace, so
+     * reindented lines still match.
+     */
+    public static int hashLine(ByteBuffer content, int start, int end) {
+        int hash = 1;
+        for (int i = start; i < end; i++) {
+            byte b = content.get(i);
+            if (b != ' ' && b != '\t' && b != '\r' && b != '\f') {
+                hash = 31 * hash + b;
+            }
+        }
+
+        return hash;
+    }
+
+    /**
+     * Returns hash of the content, which changes whenever the content does.
+     */
+    public int getContentHash() {
+        return this.contentHash;
+    }
+
+    public Task getParent() {
+        return this.parent;
+    }
+
+    void setParent(Task parent) {
+        if (this.parent == parent) {
+            return;
+        }
+
+        if (hasParent()) {
+            removeFromCurrentParent();
+        }
+
+        this.parent = parent;
+    }
+
+    private boolean hasParent() {
+        return this.parent != null;
+    }
+
+    private void removeFromCurrentParent() {
+        this.parent.removeStarterFile(this);
+    }
+
+    public boolean equals(Object obj) {
+        if (obj == null) {
+            return false;
+        } else if (obj == this) {
+            return true;
+        } else if (!(obj instanceof StarterFile)) {
+            return false;
+        }
+
+        StarterFile starterFile = (StarterFile) obj;
+        boolean haveSameParent = hasParent() && starterFile.hasParent() ?
+                this.parent.equals(starterFile.parent) : false;
+
+        return this.name.equals(starterFile.name) && haveSameParent && Arrays.equals(this.content, starterFile.content);
+    }
+
+    public int hashCode() {
+        return 31 * this.name.hashCode() + this.contentHash;
+    }
+}
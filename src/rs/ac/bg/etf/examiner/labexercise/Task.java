@@ -10,7 +10,8 @@ import org.apache.logging.log4j.*;
 /**
  * Represents a task student needs to implement as a part of an <tt>Assignment</tt>.
  * It is an abstraction of a class or an interface. Has a name,
- * list of mandatory <tt>Item</tt>s, and a parent <tt>Assignment</tt>.
+ * list of mandatory <tt>Item</tt>s, list of <tt>StarterFile</tt>s handed out
+ * to students, and a parent <tt>Assignment</tt>.
  * 
  * @author Marko Milojevic
  * 
@@ -21,10 +22,12 @@ public class Task implements Serializable {
     private static final Logger log = LogManager.getLogger(Task.class.getName());
     private String name;
     private List<Item> items;
+    private List<StarterFile> starterFiles;
     private Assignment parent;
 
     {
         this.items = new ArrayList<Item>();
+        this.starterFiles = new ArrayList<StarterFile>();
     }
     
     public Task(String name) {
@@ -41,6 +44,10 @@ public class Task implements Serializable {
         for (Item item : task.items) {
             addItem(new Item(item));
         }
+
+        for (StarterFile starterFile : task.getStarterFilesList()) {
+            addStarterFile(new StarterFile(starterFile));
+        }
     }
 
     public String getName() {
@@ -133,6 +140,82 @@ public class Task implements Serializable {
         return false;
     }
 
+    public List<StarterFile> getStarterFiles() {
+        return Collections.unmodifiableList(getStarterFilesList());
+    }
+
+    public StarterFile getStarterFileByName(String fileName) {
+        if (fileName == null) {
+            return null;
+        }
+
+        for (StarterFile starterFile : getStarterFilesList()) {
+            if (starterFile.getName().equals(fileName)) {
+                return starterFile;
+            }
+        }
+
+        return null;
+    }
+
+    public boolean addStarterFile(StarterFile starterFile) {
+        if (starterFile == null) {
+            return false;
+        } else if (containsStarterFileByName(starterFile.getName())) {
+            log.error(ErrorMessages.ALREADY_IN_COLLECTION);
+            throw new IllegalArgumentException();
+        }
+
+        boolean opResult = getStarterFilesList().add(starterFile);
+        if (opResult == true) {
+            starterFile.setParent(this);
+        }
+
+        return opResult;
+    }
+
+    public boolean removeStarterFile(StarterFile starterFile) {
+        if (starterFile == null) {
+            return false;
+        }
+
+        boolean opResult = getStarterFilesList().remove(starterFile);
+        if (opResult == true) {
+            starterFile.setParent(null);
+        }
+
+        return opResult;
+    }
+
+    public boolean removeStarterFileByName(String fileName) {
+        StarterFile starterFile = getStarterFileByName(fileName);
+        return removeStarterFile(starterFile);
+    }
+
+    public boolean containsStarterFile(StarterFile starterFile) {
+        if (starterFile == null) {
+            return false;
+        }
+
+        return getStarterFilesList().contains(starterFile);
+    }
+
+    public boolean containsStarterFileByName(String fileName) {
+        return getStarterFileByName(fileName) != null;
+    }
+
+    /**
+     * Lab exercises saved before starter files were introduced are read
+     * without the list, since initializers are not run on deserialization.
+     */
+    private List<StarterFile> getStarterFilesList() {
+        if (this.starterFiles == null) {
+            this.starterFiles = new ArrayList<StarterFile>();
+        }
+
+        return this.starterFiles;
+    }
+
     public Assignment getParent() {
 	    return this.parent;
 	}
@@ -0,0 +1,186 @@
+package rs.ac.bg.etf.examiner.student;
+
+import rs.ac.bg.etf.examiner.errors.*;
+import rs.ac.bg.etf.examiner.labexercise.*;
+
+import java.util.*;
+
+import org.apache.logging.log4j.*;
+
+/**
+ * Applies the same score or review status to one item of many students of a
+ * <tt>Cohort</tt>. Task, item and value are validated once, and items of all
+ * selected students are resolved before anything is changed, so a batch is
+ * applied either to all students or to none. Listener is notified once per batch.
+ *
+ * @author Marko Milojevic
+ *
+ */
+public class BatchGrader {
+
+    private static final Logger log = LogManager.getLogger(BatchGrader.class.getName());
+    private Cohort cohort;
+    private GradingListener listener;
+
+    public BatchGrader(Cohort cohort) {
+        if (cohort == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        }
+
+        this.cohort = cohort;
+    }
+
+    public Cohort getCohort() {
+        return this.cohort;
+    }
+
+    public GradingListener getListener() {
+        return this.listener;
+    }
+
+    public void setListener(GradingListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Sets score of given item of all selected students and returns number of
+     * items whose score changed.
+     */
+    public int setScoreAsAbsolute(Collection<StudentAssignment> studentAssignments, String taskName,
+            String itemName, int score) {
+        Item item = getItem(taskName, itemName);
+        if (score < 0 || score > item.getValue()) {
+            log.error(ErrorMessages.INVALID_SCORE_VALUE);
+            throw new IllegalArgumentException();
+        }
+
+        return applyScore(getStudentItems(studentAssignments, taskName, itemName), taskName, itemName, score);
+    }
+
+    public int setScoreAsPercentage(Collection<StudentAssignment> studentAssignments, String taskName,
+            String itemName, int percentage) {
+        Item item = getItem(taskName, itemName);
+        if (percentage < 0 || percentage > 100) {
+            log.error(ErrorMessages.INVALID_PERCENTAGE_VALUE);
+            throw new IllegalArgumentException();
+        }
+
+        int score = Math.round(((float) (item.getValue() * percentage)) / 100);
+        return applyScore(getStudentItems(studentAssignments, taskName, itemName), taskName, itemName, score);
+    }
+
+    /**
+     * Sets review status of given item of all selected students and returns
+     * number of items whose status changed.
+     */
+    public int setReviewStatus(Collection<StudentAssignment> studentAssignments, String taskName,
+            String itemName, ReviewStatus status) {
+        getItem(taskName, itemName);
+        if (status == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        }
+
+        List<StudentItem> studentItems = getStudentItems(studentAssignments, taskName, itemName);
+        List<StudentItem> changed = new ArrayList<StudentItem>();
+        Map<StudentItem, ReviewStatus> previous = new IdentityHashMap<StudentItem, ReviewStatus>();
+        try {
+            for (StudentItem studentItem : studentItems) {
+                ReviewStatus oldStatus = studentItem.getReviewStatus();
+                if (oldStatus != status) {
+                    previous.put(studentItem, oldStatus);
+                    studentItem.storeReviewStatus(status);
+                    changed.add(studentItem);
+                }
+            }
+        } catch (RuntimeException e) {
+            for (StudentItem studentItem : changed) {
+                studentItem.storeReviewStatus(previous.get(studentItem));
+            }
+
+            throw e;
+        }
+
+        notifyListener(taskName, itemName, changed);
+        return changed.size();
+    }
+
+    private int applyScore(List<StudentItem> studentItems, String taskName, String itemName, int score) {
+        List<StudentItem> changed = new ArrayList<StudentItem>();
+        Map<StudentItem, Integer> previous = new IdentityHashMap<StudentItem, Integer>();
+        try {
+            for (StudentItem studentItem : studentItems) {
+                int oldScore = studentItem.getScoreAsAbsolute();
+                if (oldScore != score) {
+                    previous.put(studentItem, oldScore);
+                    studentItem.storeScore(score);
+                    changed.add(studentItem);
+                }
+            }
+        } catch (RuntimeException e) {
+            for (StudentItem studentItem : changed) {
+                studentItem.storeScore(previous.get(studentItem));
+            }
+
+            throw e;
+        }
+
+        notifyListener(taskName, itemName, changed);
+        return changed.size();
+    }
+
+    private Item getItem(String taskName, String itemName) {
+        Task task = this.cohort.getAssignment().getTaskByName(taskName);
+        Item item = task != null ? task.getItemByName(itemName) : null;
+        if (item == null) {
+            log.error(ErrorMessages.INVALID_ITEM_PATH + " " + taskName + "/" + itemName);
+            throw new IllegalArgumentException(ErrorMessages.INVALID_ITEM_PATH);
+        }
+
+        return item;
+    }
+
+    /**
+     * Resolves given item of every selected student. Fails without changing
+     * anything if a student is not a part of the cohort or lacks the item.
+     */
+    private List<StudentItem> getStudentItems(Collection<StudentAssignment> studentAssignments, String taskName,
+            String itemName) {
+        if (studentAssignments == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        }
+
+        Set<StudentAssignment> members = Collections.newSetFromMap(new IdentityHashMap<StudentAssignment, Boolean>());
+        members.addAll(this.cohort.getStudentAssignments());
+        Set<StudentAssignment> selected = Collections.newSetFromMap(new IdentityHashMap<StudentAssignment, Boolean>());
+        List<StudentItem> studentItems = new ArrayList<StudentItem>(studentAssignments.size());
+        for (StudentAssignment studentAssignment : studentAssignments) {
+            if (studentAssignment == null || !members.contains(studentAssignment)) {
+                log.error(ErrorMessages.NOT_IN_COLLECTION);
+                throw new IllegalArgumentException(ErrorMessages.NOT_IN_COLLECTION);
+            } else if (!selected.add(studentAssignment)) {
+                continue;
+            }
+
+            StudentTask studentTask = studentAssignment.getStudentTaskByName(taskName);
+            StudentItem studentItem = studentTask != null ? studentTask.getStudentItemByName(itemName) : null;
+            if (studentItem == null) {
+                log.error(ErrorMessages.INVALID_ITEM_PATH + " " + studentAssignment.getId());
+                throw new IllegalArgumentException(ErrorMessages.INVALID_ITEM_PATH);
+            }
+
+            studentItems.add(studentItem);
+        }
+
+        return studentItems;
+    }
+
+    private void notifyListener(String taskName, String itemName, List<StudentItem> changed) {
+        GradingListener listener = this.listener;
+        if (listener != null && !changed.isEmpty()) {
+            listener.studentItemsChanged(taskName, itemName, Collections.unmodifiableList(changed));
+        }
+    }
+}
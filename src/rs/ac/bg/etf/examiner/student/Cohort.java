@@ -0,0 +1,254 @@
+package rs.ac.bg.etf.examiner.student;
+
+import rs.ac.bg.etf.examiner.errors.*;
+import rs.ac.bg.etf.examiner.labexercise.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.apache.logging.log4j.*;
+
+/**
+ * Represents all <tt>StudentAssignment</tt>s of one assignment group, together
+ * with student directories that could not be loaded. Created by <tt>CohortLoader</tt>.
+ * Archives of students stay open until {@link #releaseArchives()} is called.
+ * List of students is never changed in place: it is copied and the copy is
+ * published, so the list returned by {@link #getStudentAssignments()} can be
+ * iterated while students are added or removed.
+ *
+ * @author Marko Milojevic
+ *
+ */
+public class Cohort implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private static final Logger log = LogManager.getLogger(Cohort.class.getName());
+    private File directory;
+    private Assignment assignment;
+    private volatile List<StudentAssignment> studentAssignments;
+    private Map<File, Exception> failures;
+    private transient CohortProgress progress;
+    private transient GradeMatrix gradeMatrix;
+    private transient ErrorOccurrences errorOccurrences;
+
+    {
+        studentAssignments = new ArrayList<StudentAssignment>();
+        failures = new LinkedHashMap<File, Exception>();
+    }
+
+    Cohort(File directory, Assignment assignment) {
+        if (directory == null || assignment == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        }
+
+        this.directory = directory;
+        this.assignment = assignment;
+    }
+
+    public File getDirectory() {
+        return this.directory;
+    }
+
+    public Assignment getAssignment() {
+        return this.assignment;
+    }
+
+    void setAssignment(Assignment assignment) {
+        this.assignment = assignment;
+    }
+
+    public List<StudentAssignment> getStudentAssignments() {
+        return Collections.unmodifiableList(this.studentAssignments);
+    }
+
+    public StudentAssignment getStudentAssignmentById(String id) {
+        if (id == null) {
+            return null;
+        }
+
+        for (StudentAssignment studentAssignment : this.studentAssignments) {
+            if (studentAssignment.getId().equals(id)) {
+                return studentAssignment;
+            }
+        }
+
+        return null;
+    }
+
+    synchronized boolean addStudentAssignment(StudentAssignment studentAssignment) {
+        if (studentAssignment == null) {
+            return false;
+        }
+
+        List<StudentAssignment> studentAssignments = new ArrayList<StudentAssignment>(this.studentAssignments);
+        boolean opResult = studentAssignments.add(studentAssignment);
+        this.studentAssignments = studentAssignments;
+        if (opResult && this.progress != null) {
+            studentAssignment.setProgress(this.progress);
+            this.progress.add(studentAssignment.getReviewStatus());
+        }
+
+        if (opResult && this.gradeMatrix != null) {
+            this.gradeMatrix.addRow(studentAssignment);
+        }
+
+        if (opResult && this.errorOccurrences != null) {
+            studentAssignment.setErrorOccurrences(this.errorOccurrences);
+            this.errorOccurrences.add(studentAssignment);
+        }
+
+        return opResult;
+    }
+
+    synchronized boolean removeStudentAssignment(StudentAssignment studentAssignment) {
+        if (studentAssignment == null) {
+            return false;
+        }
+
+        List<StudentAssignment> studentAssignments = new ArrayList<StudentAssignment>(this.studentAssignments);
+        boolean opResult = studentAssignments.remove(studentAssignment);
+        this.studentAssignments = studentAssignments;
+        if (opResult && this.progress != null) {
+            studentAssignment.setProgress(null);
+            this.progress.remove(studentAssignment.getReviewStatus());
+        }
+
+        if (opResult && this.gradeMatrix != null) {
+            this.gradeMatrix.removeRow(studentAssignment);
+        }
+
+        if (opResult && this.errorOccurrences != null) {
+            studentAssignment.setErrorOccurrences(null);
+            this.errorOccurrences.remove(studentAssignment);
+        }
+
+        return opResult;
+    }
+
+    /**
+     * Returns review progress of this cohort, which is created on first access
+     * and then updated whenever review status of a student changes.
+     */
+    public synchronized CohortProgress getProgress() {
+        if (this.progress == null) {
+            CohortProgress progress = new CohortProgress();
+            for (StudentAssignment studentAssignment : this.studentAssignments) {
+                studentAssignment.setProgress(progress);
+                progress.add(studentAssignment.getReviewStatus());
+            }
+
+            this.progress = progress;
+        }
+
+        return this.progress;
+    }
+
+    /**
+     * Returns columnar store of scores and review statuses of this cohort.
+     * Matrix is optional: it is created, and items of all students are
+     * attached to it, on first access.
+     */
+    public synchronized GradeMatrix getGradeMatrix() {
+        if (this.gradeMatrix == null) {
+            GradeMatrix gradeMatrix = new GradeMatrix(this.assignment, this.studentAssignments.size());
+            for (StudentAssignment studentAssignment : this.studentAssignments) {
+                gradeMatrix.addRow(studentAssignment);
+            }
+
+            this.gradeMatrix = gradeMatrix;
+        }
+
+        return this.gradeMatrix;
+    }
+
+    /**
+     * Closes archives of all students loaded from archives, releasing their
+     * file systems and temporary files. The cohort can still be used, each
+     * archive is opened again when its source code files are needed. If some
+     * archives can not be closed, the rest are closed anyway and the first
+     * exception is thrown.
+     */
+    public synchronized void releaseArchives() throws IOException {
+        IOException exception = null;
+        for (StudentAssignment studentAssignment : this.studentAssignments) {
+            try {
+                studentAssignment.releaseRoot();
+            } catch (IOException e) {
+                log.warn("Archive " + studentAssignment.getDirectory().getPath() + " could not be closed.", e);
+                if (exception == null) {
+                    exception = e;
+                }
+            }
+        }
+
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    /**
+     * Detaches items of all students from the grade matrix and discards it.
+     */
+    public synchronized void releaseGradeMatrix() {
+        if (this.gradeMatrix != null) {
+            this.gradeMatrix.clear();
+            this.gradeMatrix = null;
+        }
+    }
+
+    /**
+     * Returns occurrence counts of errors in remarks of this cohort, which are
+     * counted on first access and then updated whenever a remark is added,
+     * removed or given another error.
+     */
+    public synchronized ErrorOccurrences getErrorOccurrences() {
+        if (this.errorOccurrences == null) {
+            ErrorOccurrences errorOccurrences = new ErrorOccurrences(this.assignment);
+            for (StudentAssignment studentAssignment : this.studentAssignments) {
+                studentAssignment.setErrorOccurrences(errorOccurrences);
+                errorOccurrences.add(studentAssignment);
+            }
+
+            this.errorOccurrences = errorOccurrences;
+        }
+
+        return this.errorOccurrences;
+    }
+
+    synchronized boolean isGradeMatrixCreated() {
+        return this.gradeMatrix != null;
+    }
+
+    /**
+     * Discards error occurrences and returns true if they were created.
+     */
+    synchronized boolean releaseErrorOccurrences() {
+        if (this.errorOccurrences == null) {
+            return false;
+        }
+
+        for (StudentAssignment studentAssignment : this.studentAssignments) {
+            studentAssignment.setErrorOccurrences(null);
+        }
+
+        this.errorOccurrences = null;
+        return true;
+    }
+
+    public Map<File, Exception> getFailures() {
+        return Collections.unmodifiableMap(this.failures);
+    }
+
+    void addFailure(File directory, Exception cause) {
+        this.failures.put(directory, cause);
+    }
+
+    public boolean hasFailures() {
+        return !this.failures.isEmpty();
+    }
+
+    public int size() {
+        return this.studentAssignments.size();
+    }
+}
@@ -0,0 +1,17 @@
+package rs.ac.bg.etf.examiner.student;
+
+import java.io.*;
+
+/**
+ * Receives progress notifications from <tt>CohortLoader</tt>. Methods are
+ * invoked from loader's worker threads, so implementations must be thread-safe.
+ *
+ * @author Marko Milojevic
+ *
+ */
+public interface CohortLoadListener {
+
+    public void studentLoaded(StudentAssignment studentAssignment, int completed, int total);
+
+    public void studentFailed(File directory, Exception cause, int completed, int total);
+}
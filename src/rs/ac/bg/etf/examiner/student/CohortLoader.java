@@ -0,0 +1,271 @@
+package rs.ac.bg.etf.examiner.student;
+
+import rs.ac.bg.etf.examiner.errors.*;
+import rs.ac.bg.etf.examiner.labexercise.*;
+import rs.ac.bg.etf.examiner.student.matching.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.apache.logging.log4j.*;
+
+/**
+ * Loads every student directory of an assignment group concurrently. Assignment
+ * group directory's name must match name of an <tt>Assignment</tt> in
+ * <tt>LabExercise</tt>, and each of its subdirectories and submission archives
+ * is loaded as one <tt>StudentAssignment</tt>. A directory that fails to load is recorded in
+ * resulting <tt>Cohort</tt> and does not affect other students.
+ *
+ * @author Marko Milojevic
+ *
+ */
+public class CohortLoader {
+
+    private static final Logger log = LogManager.getLogger(CohortLoader.class.getName());
+    public static final int DEFAULT_PARALLELISM = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+    private int parallelism;
+    private SubmissionScanner scanner;
+    private SourceCodeFileMatcher matcher;
+    private CohortLoadListener listener;
+
+    public CohortLoader() {
+        this(DEFAULT_PARALLELISM);
+    }
+
+    public CohortLoader(int parallelism) {
+        this(parallelism, new SubmissionScanner());
+    }
+
+    public CohortLoader(int parallelism, SubmissionScanner scanner) {
+        setParallelism(parallelism);
+        setScanner(scanner);
+        setMatcher(new SourceCodeFileMatcher());
+    }
+
+    public int getParallelism() {
+        return this.parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        if (parallelism <= 0) {
+            log.error(ErrorMessages.NON_POSITIVE_VALUE);
+            throw new IllegalArgumentException(ErrorMessages.NON_POSITIVE_VALUE);
+        }
+
+        this.parallelism = parallelism;
+    }
+
+    public SubmissionScanner getScanner() {
+        return this.scanner;
+    }
+
+    public void setScanner(SubmissionScanner scanner) {
+        if (scanner == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        }
+
+        this.scanner = scanner;
+    }
+
+    public SourceCodeFileMatcher getMatcher() {
+        return this.matcher;
+    }
+
+    public void setMatcher(SourceCodeFileMatcher matcher) {
+        if (matcher == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        }
+
+        this.matcher = matcher;
+    }
+
+    public CohortLoadListener getListener() {
+        return this.listener;
+    }
+
+    public void setListener(CohortLoadListener listener) {
+        this.listener = listener;
+    }
+
+    public Cohort load(String assignmentGroupDirectoryPath) throws FileNotFoundException, InterruptedException {
+        if (assignmentGroupDirectoryPath == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        }
+
+        return load(new File(assignmentGroupDirectoryPath));
+    }
+
+    public Cohort load(File assignmentGroupDirectory) throws FileNotFoundException, InterruptedException {
+        return load(assignmentGroupDirectory, null);
+    }
+
+    /**
+     * Loads assignment group using given manifest. Student directories whose
+     * manifest entry is up to date are not walked, and entries of all other
+     * directories are replaced by the result of a fresh scan.
+     */
+    public Cohort load(File assignmentGroupDirectory, SubmissionManifest manifest)
+            throws FileNotFoundException, InterruptedException {
+        if (assignmentGroupDirectory == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        } else if (!assignmentGroupDirectory.isDirectory()) {
+            log.error(ErrorMessages.FILE_DOES_NOT_EXIST);
+            throw new FileNotFoundException(ErrorMessages.FILE_DOES_NOT_EXIST);
+        }
+
+        Assignment assignment = LabExercise.getInstance().getAssignmentByName(assignmentGroupDirectory.getName());
+        if (assignment == null) {
+            log.error(ErrorMessages.INVALID_ASSIGNMENT_DIRECTORY);
+            throw new IllegalArgumentException(ErrorMessages.INVALID_ASSIGNMENT_DIRECTORY);
+        }
+
+        Cohort cohort = new Cohort(assignmentGroupDirectory, assignment);
+        List<File> studentDirectories = listStudentDirectories(assignmentGroupDirectory);
+        if (manifest != null) {
+            manifest.setRules(this.scanner.getRules());
+        }
+
+        int total = studentDirectories.size();
+        AtomicInteger completed = new AtomicInteger();
+        List<Future<StudentAssignment>> futures = new ArrayList<Future<StudentAssignment>>(total);
+        ForkJoinPool pool = new ForkJoinPool(Math.min(this.parallelism, Math.max(1, total)));
+        try {
+            for (File studentDirectory : studentDirectories) {
+                futures.add(pool.submit(new LoadStudentTask(studentDirectory, manifest, completed, total)));
+            }
+
+            for (int i = 0; i < total; i++) {
+                try {
+                    cohort.addStudentAssignment(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof java.lang.Error) {
+                        throw (java.lang.Error) cause;
+                    }
+
+                    cohort.addFailure(studentDirectories.get(i), (Exception) cause);
+                }
+            }
+        } catch (InterruptedException e) {
+            for (Future<StudentAssignment> future : futures) {
+                future.cancel(true);
+            }
+
+            throw e;
+        } finally {
+            pool.shutdown();
+        }
+
+        if (manifest != null) {
+            List<Path> directories = new ArrayList<Path>(total);
+            for (File studentDirectory : studentDirectories) {
+                directories.add(studentDirectory.toPath());
+            }
+
+            manifest.retainEntries(directories);
+        }
+
+        log.info("Loaded " + cohort.size() + " of " + total + " students from " + assignmentGroupDirectory.getPath());
+        return cohort;
+    }
+
+    private List<File> listStudentDirectories(File assignmentGroupDirectory) throws FileNotFoundException {
+        File[] files = assignmentGroupDirectory.listFiles(new FileFilter() {
+            public boolean accept(File file) {
+                return file.isDirectory() || (SubmissionArchives.isArchive(file) && file.isFile());
+            }
+        });
+
+        if (files == null) {
+            log.error(ErrorMessages.FILE_DOES_NOT_EXIST);
+            throw new FileNotFoundException(ErrorMessages.FILE_DOES_NOT_EXIST);
+        }
+
+        Arrays.sort(files);
+        return Arrays.asList(files);
+    }
+
+    private class LoadStudentTask implements Callable<StudentAssignment> {
+
+        private File directory;
+        private SubmissionManifest manifest;
+        private AtomicInteger completed;
+        private int total;
+
+        LoadStudentTask(File directory, SubmissionManifest manifest, AtomicInteger completed, int total) {
+            this.directory = directory;
+            this.manifest = manifest;
+            this.completed = completed;
+            this.total = total;
+        }
+
+        public StudentAssignment call() throws Exception {
+            CohortLoadListener listener = CohortLoader.this.listener;
+            StudentAssignment studentAssignment;
+            try {
+                Path root = getRoot();
+                studentAssignment = new StudentAssignment(this.directory, root, CohortLoader.this.scanner.getRules(),
+                        loadSourceCodeFilePaths(root), CohortLoader.this.matcher);
+            } catch (Exception e) {
+                log.error("Student directory " + this.directory.getPath() + " could not be loaded.", e);
+                releaseArchive();
+                if (listener != null) {
+                    listener.studentFailed(this.directory, e, this.completed.incrementAndGet(), this.total);
+                }
+
+                throw e;
+            }
+
+            if (listener != null) {
+                listener.studentLoaded(studentAssignment, this.completed.incrementAndGet(), this.total);
+            }
+
+            return studentAssignment;
+        }
+
+        private Path getRoot() throws IOException {
+            if (SubmissionArchives.isArchive(this.directory)) {
+                return SubmissionArchives.open(this.directory, CohortLoader.this.scanner.getRules());
+            }
+
+            return this.directory.toPath();
+        }
+
+        private void releaseArchive() {
+            if (!SubmissionArchives.isArchive(this.directory)) {
+                return;
+            }
+
+            try {
+                SubmissionArchives.close(this.directory);
+            } catch (IOException e) {
+                log.warn("Archive " + this.directory.getPath() + " could not be closed.", e);
+            }
+        }
+
+        private List<Path> loadSourceCodeFilePaths(Path path) throws IOException {
+            if (this.manifest == null || SubmissionArchives.isArchive(this.directory)) {
+                return CohortLoader.this.scanner.scan(path);
+            }
+
+            SubmissionManifestEntry entry = this.manifest.getEntry(path);
+            if (entry != null && entry.isUpToDate(path, this.manifest.isCheckingSubdirectories())) {
+                return entry.getSourceCodeFilePaths(path);
+            }
+
+            long scanTime = System.currentTimeMillis();
+            Map<Path, BasicFileAttributes> attributes = new HashMap<Path, BasicFileAttributes>();
+            List<Path> sourceCodeFilePaths = CohortLoader.this.scanner.scan(path, attributes);
+            this.manifest.putEntry(new SubmissionManifestEntry(path, sourceCodeFilePaths, attributes, scanTime));
+            return sourceCodeFilePaths;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package rs.ac.bg.etf.examiner.student;
+
+import java.util.*;
+
+/**
+ * Number of students of a <tt>Cohort</tt> per review status. It is updated
+ * incrementally as review statuses change, and can be read from any thread.
+ *
+ * @author Marko Milojevic
+ *
+ */
+public class CohortProgress {
+
+    private final int[] counts;
+    private int total;
+
+    CohortProgress() {
+        this.counts = new int[ReviewStatus.values().length];
+    }
+
+    public synchronized int getCount(ReviewStatus status) {
+        if (status == null) {
+            return 0;
+        }
+
+        return this.counts[status.ordinal()];
+    }
+
+    public synchronized int getTotal() {
+        return this.total;
+    }
+
+    /**
+     * Returns consistent snapshot of counts of all review statuses.
+     */
+    public synchronized Map<ReviewStatus, Integer> getCounts() {
+        Map<ReviewStatus, Integer> counts = new EnumMap<ReviewStatus, Integer>(ReviewStatus.class);
+        for (ReviewStatus status : ReviewStatus.values()) {
+            counts.put(status, this.counts[status.ordinal()]);
+        }
+
+        return counts;
+    }
+
+    synchronized void add(ReviewStatus status) {
+        this.counts[status.ordinal()]++;
+        this.total++;
+    }
+
+    synchronized void remove(ReviewStatus status) {
+        this.counts[status.ordinal()]--;
+        this.total--;
+    }
+
+    synchronized void update(ReviewStatus oldStatus, ReviewStatus newStatus) {
+        this.counts[oldStatus.ordinal()]--;
+        this.counts[newStatus.ordinal()]++;
+    }
+
+    public synchronized String toString() {
+        return this.counts[ReviewStatus.FINISHED.ordinal()] + " finished / "
+                + this.counts[ReviewStatus.IN_PROGRESS.ordinal()] + " in progress / "
+                + this.counts[ReviewStatus.NOT_STARTED.ordinal()] + " not started";
+    }
+}
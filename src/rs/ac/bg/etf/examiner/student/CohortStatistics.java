@@ -0,0 +1,389 @@
+package rs.ac.bg.etf.examiner.student;
+
+import rs.ac.bg.etf.examiner.errors.*;
+import rs.ac.bg.etf.examiner.labexercise.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.apache.logging.log4j.*;
+
+/**
+ * Statistics of scores and review statuses of a <tt>Cohort</tt>, per
+ * assignment, task and item. Scores and statuses are first copied into one
+ * primitive array per column, and all statistics are then computed from those
+ * arrays, in parallel over columns. If the cohort has a <tt>GradeMatrix</tt>,
+ * item columns are copied from it, otherwise from the items of students, in
+ * parallel over ranges of students. Work is done in the common fork join pool,
+ * unless another pool is given. Statistics describe the cohort at the moment
+ * they were created.
+ *
+ * @author Marko Milojevic
+ *
+ */
+public class CohortStatistics {
+
+    private static final Logger log = LogManager.getLogger(CohortStatistics.class.getName());
+    private static final int STUDENTS_PER_TASK = 256;
+    private Assignment assignment;
+    private List<Task> tasks;
+    private int[] firstItemColumns;
+    private int studentCount;
+    private int[][] itemScores;
+    private byte[][] itemStatuses;
+    private int[][] taskScores;
+    private byte[][] taskStatuses;
+    private int[] totalScores;
+    private byte[] totalStatuses;
+    private ScoreStatistics[] itemStatistics;
+    private ScoreStatistics[] taskStatistics;
+    private ScoreStatistics assignmentStatistics;
+    private boolean[] isCopiedFromMatrix;
+
+    public CohortStatistics(Cohort cohort) {
+        this(cohort, ForkJoinPool.commonPool());
+    }
+
+    public CohortStatistics(Cohort cohort, ForkJoinPool pool) {
+        if (cohort == null || pool == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        }
+
+        this.assignment = cohort.getAssignment();
+        this.tasks = new ArrayList<Task>(this.assignment.getTasks());
+        this.firstItemColumns = new int[this.tasks.size() + 1];
+        for (int t = 0; t < this.tasks.size(); t++) {
+            this.firstItemColumns[t + 1] = this.firstItemColumns[t] + this.tasks.get(t).getItems().size();
+        }
+
+        GradeMatrix gradeMatrix = cohort.isGradeMatrixCreated() ? cohort.getGradeMatrix() : null;
+        List<StudentAssignment> studentAssignments;
+        if (gradeMatrix != null) {
+            studentAssignments = new ArrayList<StudentAssignment>(gradeMatrix.getRowCount());
+            for (int row = 0; row < gradeMatrix.getRowCount(); row++) {
+                studentAssignments.add(gradeMatrix.getStudentAssignment(row));
+            }
+        } else {
+            studentAssignments = new ArrayList<StudentAssignment>(cohort.getStudentAssignments());
+        }
+
+        this.studentCount = studentAssignments.size();
+        int itemCount = this.firstItemColumns[this.tasks.size()];
+        this.itemScores = new int[itemCount][this.studentCount];
+        this.itemStatuses = new byte[itemCount][this.studentCount];
+        this.taskScores = new int[this.tasks.size()][this.studentCount];
+        this.taskStatuses = new byte[this.tasks.size()][this.studentCount];
+        this.totalScores = new int[this.studentCount];
+        this.totalStatuses = new byte[this.studentCount];
+        this.itemStatistics = new ScoreStatistics[itemCount];
+        this.taskStatistics = new ScoreStatistics[this.tasks.size()];
+
+        this.isCopiedFromMatrix = new boolean[itemCount];
+        if (gradeMatrix != null) {
+            copyItemColumns(gradeMatrix);
+        }
+
+        pool.invoke(new CopyScoresTask(studentAssignments, 0, this.studentCount));
+        pool.invoke(new ComputeStatisticsTask(0, itemCount + this.tasks.size() + 1));
+        this.isCopiedFromMatrix = null;
+    }
+
+    public Assignment getAssignment() {
+        return this.assignment;
+    }
+
+    public int getStudentCount() {
+        return this.studentCount;
+    }
+
+    public ScoreStatistics getAssignmentStatistics() {
+        return this.assignmentStatistics;
+    }
+
+    public ScoreStatistics getTaskStatistics(String taskName) {
+        int t = getTaskIndex(taskName);
+        return t >= 0 ? this.taskStatistics[t] : null;
+    }
+
+    public ScoreStatistics getItemStatistics(String taskName, String itemName) {
+        int column = getItemColumn(taskName, itemName);
+        return column >= 0 ? this.itemStatistics[column] : null;
+    }
+
+    public Map<ReviewStatus, Integer> getReviewStatusDistribution() {
+        return getDistribution(this.totalStatuses);
+    }
+
+    public Map<ReviewStatus, Integer> getReviewStatusDistribution(String taskName) {
+        int t = getTaskIndex(taskName);
+        return t >= 0 ? getDistribution(this.taskStatuses[t]) : null;
+    }
+
+    public Map<ReviewStatus, Integer> getReviewStatusDistribution(String taskName, String itemName) {
+        int column = getItemColumn(taskName, itemName);
+        return column >= 0 ? getDistribution(this.itemStatuses[column]) : null;
+    }
+
+    /**
+     * Returns Pearson correlation of scores of two tasks, or <tt>NaN</tt> if
+     * scores of either task do not vary.
+     */
+    public double getTaskCorrelation(String firstTaskName, String secondTaskName) {
+        int first = getTaskIndex(firstTaskName);
+        int second = getTaskIndex(secondTaskName);
+        if (first < 0 || second < 0) {
+            return Double.NaN;
+        }
+
+        return correlate(this.taskScores[first], this.taskScores[second], null);
+    }
+
+    /**
+     * Returns correlations of all pairs of tasks, in order of assignment's tasks.
+     */
+    public double[][] getTaskCorrelationMatrix() {
+        int taskCount = this.tasks.size();
+        double[][] matrix = new double[taskCount][taskCount];
+        for (int i = 0; i < taskCount; i++) {
+            matrix[i][i] = 1;
+            for (int j = i + 1; j < taskCount; j++) {
+                matrix[i][j] = matrix[j][i] = correlate(this.taskScores[i], this.taskScores[j], null);
+            }
+        }
+
+        return matrix;
+    }
+
+    /**
+     * Returns correlation of task's scores with the rest of the assignment's
+     * score. A task which correlates poorly or negatively with the rest probably
+     * has a problem in its rubric.
+     */
+    public double getTaskRestCorrelation(String taskName) {
+        int t = getTaskIndex(taskName);
+        if (t < 0) {
+            return Double.NaN;
+        }
+
+        return correlate(this.taskScores[t], this.totalScores, this.taskScores[t]);
+    }
+
+    /**
+     * Returns correlation of item's scores with the rest of the task's score.
+     */
+    public double getItemRestCorrelation(String taskName, String itemName) {
+        int column = getItemColumn(taskName, itemName);
+        if (column < 0) {
+            return Double.NaN;
+        }
+
+        int t = getTaskIndex(taskName);
+        return correlate(this.itemScores[column], this.taskScores[t], this.itemScores[column]);
+    }
+
+    private int getTaskIndex(String taskName) {
+        if (taskName == null) {
+            return -1;
+        }
+
+        for (int t = 0; t < this.tasks.size(); t++) {
+            if (this.tasks.get(t).getName().equals(taskName)) {
+                return t;
+            }
+        }
+
+        return -1;
+    }
+
+    private int getItemColumn(String taskName, String itemName) {
+        int t = getTaskIndex(taskName);
+        if (t < 0 || itemName == null) {
+            return -1;
+        }
+
+        List<Item> items = this.tasks.get(t).getItems();
+        for (int i = 0; i < items.size(); i++) {
+            if (items.get(i).getName().equals(itemName)) {
+                return this.firstItemColumns[t] + i;
+            }
+        }
+
+        return -1;
+    }
+
+    private Map<ReviewStatus, Integer> getDistribution(byte[] statuses) {
+        ReviewStatus[] values = ReviewStatus.values();
+        int[] counts = new int[values.length];
+        for (byte status : statuses) {
+            counts[status]++;
+        }
+
+        Map<ReviewStatus, Integer> distribution = new EnumMap<ReviewStatus, Integer>(ReviewStatus.class);
+        for (ReviewStatus status : values) {
+            distribution.put(status, counts[status.ordinal()]);
+        }
+
+        return distribution;
+    }
+
+    /**
+     * Returns Pearson correlation of <tt>x</tt> and <tt>y - subtrahend</tt>,
+     * or of <tt>x</tt> and <tt>y</tt> if subtrahend is null.
+     */
+    private static double correlate(int[] x, int[] y, int[] subtrahend) {
+        int n = x.length;
+        double sumX = 0;
+        double sumY = 0;
+        double sumXX = 0;
+        double sumYY = 0;
+        double sumXY = 0;
+        for (int i = 0; i < n; i++) {
+            double a = x[i];
+            double b = subtrahend != null ? y[i] - subtrahend[i] : y[i];
+            sumX += a;
+            sumY += b;
+            sumXX += a * a;
+            sumYY += b * b;
+            sumXY += a * b;
+        }
+
+        double covariance = n * sumXY - sumX * sumY;
+        double varianceX = n * sumXX - sumX * sumX;
+        double varianceY = n * sumYY - sumY * sumY;
+        if (varianceX <= 0 || varianceY <= 0) {
+            return Double.NaN;
+        }
+
+        return covariance / Math.sqrt(varianceX * varianceY);
+    }
+
+    /**
+     * Copies item columns the matrix has, whose rows are in the same order as
+     * students of these statistics.
+     */
+    private void copyItemColumns(GradeMatrix gradeMatrix) {
+        for (int t = 0; t < this.tasks.size(); t++) {
+            Task task = this.tasks.get(t);
+            List<Item> items = task.getItems();
+            for (int i = 0; i < items.size(); i++) {
+                int matrixColumn = gradeMatrix.getColumn(task.getName(), items.get(i).getName());
+                if (matrixColumn >= 0) {
+                    int column = this.firstItemColumns[t] + i;
+                    this.itemScores[column] = gradeMatrix.getScoreColumn(matrixColumn);
+                    this.itemStatuses[column] = gradeMatrix.getStatusColumn(matrixColumn);
+                    this.isCopiedFromMatrix[column] = true;
+                }
+            }
+        }
+    }
+
+    private void copyScores(StudentAssignment studentAssignment, int s) {
+        List<StudentTask> studentTasks = studentAssignment.getStudentTasks();
+        for (int t = 0; t < this.tasks.size(); t++) {
+            Task task = this.tasks.get(t);
+            StudentTask studentTask = t < studentTasks.size() && studentTasks.get(t).getName().equals(task.getName()) ?
+                    studentTasks.get(t) : studentAssignment.getStudentTaskByName(task.getName());
+            if (studentTask == null) {
+                continue;
+            }
+
+            this.taskScores[t][s] = studentTask.getScoreAsAbsolute();
+            this.taskStatuses[t][s] = (byte) studentTask.getReviewStatus().ordinal();
+            List<Item> items = task.getItems();
+            List<StudentItem> studentItems = studentTask.getStudentItems();
+            for (int i = 0; i < items.size(); i++) {
+                if (this.isCopiedFromMatrix[this.firstItemColumns[t] + i]) {
+                    continue;
+                }
+
+                String itemName = items.get(i).getName();
+                StudentItem studentItem = i < studentItems.size() && studentItems.get(i).getName().equals(itemName) ?
+                        studentItems.get(i) : studentTask.getStudentItemByName(itemName);
+                if (studentItem != null) {
+                    int column = this.firstItemColumns[t] + i;
+                    this.itemScores[column][s] = studentItem.getScoreAsAbsolute();
+                    this.itemStatuses[column][s] = (byte) studentItem.getReviewStatus().ordinal();
+                }
+            }
+        }
+
+        this.totalScores[s] = studentAssignment.getScoreAsAbsolute();
+        this.totalStatuses[s] = (byte) studentAssignment.getReviewStatus().ordinal();
+    }
+
+    /**
+     * Computes statistics of given column. Columns are numbered items first,
+     * then tasks, then the whole assignment.
+     */
+    private void computeStatistics(int column) {
+        int itemCount = this.itemScores.length;
+        if (column < itemCount) {
+            int t = 0;
+            while (this.firstItemColumns[t + 1] <= column) {
+                t++;
+            }
+
+            int value = this.tasks.get(t).getItems().get(column - this.firstItemColumns[t]).getValue();
+            this.itemStatistics[column] = new ScoreStatistics(this.itemScores[column], value);
+        } else if (column < itemCount + this.tasks.size()) {
+            int t = column - itemCount;
+            this.taskStatistics[t] = new ScoreStatistics(this.taskScores[t], this.tasks.get(t).getValue());
+        } else {
+            this.assignmentStatistics = new ScoreStatistics(this.totalScores, this.assignment.getValue());
+        }
+    }
+
+    private class CopyScoresTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private List<StudentAssignment> studentAssignments;
+        private int start;
+        private int end;
+
+        CopyScoresTask(List<StudentAssignment> studentAssignments, int start, int end) {
+            this.studentAssignments = studentAssignments;
+            this.start = start;
+            this.end = end;
+        }
+
+        protected void compute() {
+            if (this.end - this.start <= STUDENTS_PER_TASK) {
+                for (int s = this.start; s < this.end; s++) {
+                    copyScores(this.studentAssignments.get(s), s);
+                }
+
+                return;
+            }
+
+            int middle = (this.start + this.end) >>> 1;
+            invokeAll(new CopyScoresTask(this.studentAssignments, this.start, middle),
+                    new CopyScoresTask(this.studentAssignments, middle, this.end));
+        }
+    }
+
+    private class ComputeStatisticsTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private int start;
+        private int end;
+
+        ComputeStatisticsTask(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        protected void compute() {
+            if (this.end - this.start <= 1) {
+                if (this.end > this.start) {
+                    computeStatistics(this.start);
+                }
+
+                return;
+            }
+
+            int middle = (this.start + this.end) >>> 1;
+            invokeAll(new ComputeStatisticsTask(this.start, middle), new ComputeStatisticsTask(middle, this.end));
+        }
+    }
+}
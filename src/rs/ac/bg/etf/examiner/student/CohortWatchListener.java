@@ -0,0 +1,26 @@
+package rs.ac.bg.etf.examiner.student;
+
+import rs.ac.bg.etf.examiner.errors.*;
+
+import java.util.*;
+
+/**
+ * Receives batches of changes applied by <tt>CohortWatcher</tt> to a student's
+ * source code files. Methods are invoked by the watcher's executor, right after
+ * the changes are applied, or from the watcher's own thread if it has no
+ * executor.
+ *
+ * @author Marko Milojevic
+ *
+ */
+public interface CohortWatchListener {
+
+    public void sourceCodeFilesChanged(StudentAssignment studentAssignment, List<SourceCodeFile> added,
+            List<SourceCodeFile> modified, List<SourceCodeFile> removed);
+
+    /**
+     * Invoked before <tt>sourceCodeFilesChanged</tt> with remarks that have been
+     * removed from the student, because files they were made on were deleted.
+     */
+    public void fileRemarksRemoved(StudentAssignment studentAssignment, List<FileRemark> remarks);
+}
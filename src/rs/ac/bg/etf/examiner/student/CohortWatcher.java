@@ -0,0 +1,383 @@
+package rs.ac.bg.etf.examiner.student;
+
+import rs.ac.bg.etf.examiner.errors.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.apache.logging.log4j.*;
+
+/**
+ * Watches student directories of a <tt>Cohort</tt> and applies created, modified
+ * and deleted source code files to already loaded <tt>StudentAssignment</tt>s,
+ * so remarks and scores are kept. Only remarks made on a deleted file are
+ * removed, and passed to the listener. Events are debounced and applied in one batch
+ * per student. Student assignments are not thread safe, so changes are applied,
+ * and the listener is notified, by the executor given to the watcher, which
+ * should run them on the thread that owns the cohort, such as the event
+ * dispatch thread. Without an executor they are applied on the watcher's own
+ * thread, and no other thread may change the cohort while it is watched.
+ *
+ * @author Marko Milojevic
+ *
+ */
+public class CohortWatcher implements Closeable {
+
+    private static final Logger log = LogManager.getLogger(CohortWatcher.class.getName());
+    public static final long DEFAULT_DEBOUNCE_MILLIS = 500;
+    private static final int MAX_DEBOUNCE_PERIODS = 10;
+    private Cohort cohort;
+    private SubmissionScanner scanner;
+    private long debounceMillis;
+    private CohortWatchListener listener;
+    private Executor executor;
+    private Map<Path, StudentAssignment> studentAssignmentsByDirectory;
+    private Map<WatchKey, Path> watchedDirectories;
+    private Map<StudentAssignment, Set<Path>> pendingChanges;
+    private long pendingSince;
+    private WatchService watchService;
+    private Thread thread;
+    private volatile boolean running;
+
+    {
+        debounceMillis = DEFAULT_DEBOUNCE_MILLIS;
+        studentAssignmentsByDirectory = new HashMap<Path, StudentAssignment>();
+        watchedDirectories = new HashMap<WatchKey, Path>();
+        pendingChanges = new LinkedHashMap<StudentAssignment, Set<Path>>();
+    }
+
+    public CohortWatcher(Cohort cohort) {
+        this(cohort, new SubmissionScanner());
+    }
+
+    public CohortWatcher(Cohort cohort, SubmissionScanner scanner) {
+        if (cohort == null || scanner == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        }
+
+        this.cohort = cohort;
+        this.scanner = scanner;
+    }
+
+    public long getDebounceMillis() {
+        return this.debounceMillis;
+    }
+
+    public void setDebounceMillis(long debounceMillis) {
+        if (debounceMillis <= 0) {
+            log.error(ErrorMessages.NON_POSITIVE_VALUE);
+            throw new IllegalArgumentException(ErrorMessages.NON_POSITIVE_VALUE);
+        }
+
+        this.debounceMillis = debounceMillis;
+    }
+
+    public CohortWatchListener getListener() {
+        return this.listener;
+    }
+
+    public void setListener(CohortWatchListener listener) {
+        this.listener = listener;
+    }
+
+    public Executor getExecutor() {
+        return this.executor;
+    }
+
+    /**
+     * Sets executor which applies changes to the cohort, or null to apply them
+     * on the watcher's thread. Must be set before the watcher is started.
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    public boolean isRunning() {
+        return this.running;
+    }
+
+    public synchronized void start() throws IOException {
+        if (this.running) {
+            return;
+        }
+
+        this.watchService = FileSystems.getDefault().newWatchService();
+        for (StudentAssignment studentAssignment : this.cohort.getStudentAssignments()) {
+            if (studentAssignment.isArchive()) {
+                continue;
+            }
+
+            Path directory = studentAssignment.getRoot();
+            this.studentAssignmentsByDirectory.put(directory, studentAssignment);
+            register(directory, directory);
+        }
+
+        this.running = true;
+        this.thread = new Thread(new Runnable() {
+            public void run() {
+                processEvents();
+            }
+        }, "CohortWatcher-" + this.cohort.getDirectory().getName());
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Stops watching and waits for the watcher's thread to finish, so changes
+     * are not applied after this method returns, except those already handed
+     * to the executor.
+     */
+    public synchronized void close() throws IOException {
+        if (!this.running) {
+            return;
+        }
+
+        this.running = false;
+        this.watchService.close();
+        this.thread.interrupt();
+        if (Thread.currentThread() != this.thread) {
+            try {
+                this.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        this.thread = null;
+        this.watchedDirectories.clear();
+        this.studentAssignmentsByDirectory.clear();
+        this.pendingChanges.clear();
+    }
+
+    private void register(final Path studentDirectory, Path directory) throws IOException {
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (!isWatched(studentDirectory, dir)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+
+                WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+                watchedDirectories.put(key, dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                log.warn("Entry could not be watched and is skipped: " + file, e);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private boolean isWatched(Path studentDirectory, Path directory) {
+        Path relativePath = studentDirectory.relativize(directory);
+        int depth = relativePath.toString().isEmpty() ? 0 : relativePath.getNameCount();
+        if (depth >= this.scanner.getRules().getMaxDepth()) {
+            return false;
+        }
+
+        for (int i = 0; i < depth; i++) {
+            if (this.scanner.getRules().isIgnoredDirectory(relativePath.getName(i).toString())) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void processEvents() {
+        try {
+            while (this.running) {
+                WatchKey key;
+                if (this.pendingChanges.isEmpty()) {
+                    key = this.watchService.take();
+                } else {
+                    key = this.watchService.poll(this.debounceMillis, TimeUnit.MILLISECONDS);
+                }
+
+                if (key != null) {
+                    queueEvents(key);
+                }
+
+                long pendingMillis = System.currentTimeMillis() - this.pendingSince;
+                if (!this.pendingChanges.isEmpty()
+                        && (key == null || pendingMillis >= this.debounceMillis * MAX_DEBOUNCE_PERIODS)) {
+                    applyPendingChanges();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            log.debug("Watching of " + this.cohort.getDirectory().getPath() + " stopped.");
+        }
+    }
+
+    private void queueEvents(WatchKey key) {
+        Path directory = this.watchedDirectories.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (directory == null) {
+                continue;
+            } else if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                queue(directory);
+                continue;
+            }
+
+            Path path = directory.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE
+                    && Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                StudentAssignment studentAssignment = getStudentAssignment(path);
+                try {
+                    if (studentAssignment != null) {
+                        register(studentAssignment.getRoot(), path);
+                    }
+                } catch (IOException e) {
+                    log.warn("Directory could not be watched: " + path, e);
+                }
+            }
+
+            queue(path);
+        }
+
+        if (!key.reset()) {
+            this.watchedDirectories.remove(key);
+        }
+    }
+
+    private void queue(Path path) {
+        StudentAssignment studentAssignment = getStudentAssignment(path);
+        if (studentAssignment == null) {
+            return;
+        }
+
+        if (this.pendingChanges.isEmpty()) {
+            this.pendingSince = System.currentTimeMillis();
+        }
+
+        Set<Path> paths = this.pendingChanges.get(studentAssignment);
+        if (paths == null) {
+            paths = new LinkedHashSet<Path>();
+            this.pendingChanges.put(studentAssignment, paths);
+        }
+
+        paths.add(path);
+    }
+
+    private StudentAssignment getStudentAssignment(Path path) {
+        for (Path p = path; p != null; p = p.getParent()) {
+            StudentAssignment studentAssignment = this.studentAssignmentsByDirectory.get(p);
+            if (studentAssignment != null) {
+                return studentAssignment;
+            }
+        }
+
+        return null;
+    }
+
+    private void applyPendingChanges() {
+        Executor executor = this.executor;
+        for (Map.Entry<StudentAssignment, Set<Path>> entry : this.pendingChanges.entrySet()) {
+            final StudentAssignment studentAssignment = entry.getKey();
+            final Set<Path> paths = entry.getValue();
+            Runnable change = new Runnable() {
+                public void run() {
+                    try {
+                        apply(studentAssignment, paths);
+                    } catch (RuntimeException e) {
+                        log.error("Changes of " + studentAssignment.getId() + " could not be applied.", e);
+                    }
+                }
+            };
+
+            if (executor != null) {
+                executor.execute(change);
+            } else {
+                change.run();
+            }
+        }
+
+        this.pendingChanges.clear();
+    }
+
+    private void apply(StudentAssignment studentAssignment, Set<Path> paths) {
+        Path studentDirectory = studentAssignment.getRoot();
+        List<SourceCodeFile> added = new ArrayList<SourceCodeFile>();
+        List<SourceCodeFile> modified = new ArrayList<SourceCodeFile>();
+        List<SourceCodeFile> removed = new ArrayList<SourceCodeFile>();
+        for (Path path : paths) {
+            if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                try {
+                    for (Path file : this.scanner.scan(path)) {
+                        applyFile(studentAssignment, studentDirectory, file, added, modified);
+                    }
+                } catch (IOException e) {
+                    log.warn("Directory could not be rescanned: " + path, e);
+                }
+            } else if (Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS)) {
+                applyFile(studentAssignment, studentDirectory, path, added, modified);
+            } else {
+                for (SourceCodeFile sourceCodeFile : studentAssignment.getSourceCodeFiles()) {
+                    if (sourceCodeFile.getPath().startsWith(path)
+                            && studentAssignment.removeSourceCodeFile(sourceCodeFile)) {
+                        removed.add(sourceCodeFile);
+                    }
+                }
+            }
+        }
+
+        List<FileRemark> removedRemarks = removeRemarks(studentAssignment, removed);
+
+        log.debug(studentAssignment.getId() + ": " + added.size() + " added, " + modified.size()
+                + " modified, " + removed.size() + " removed.");
+        CohortWatchListener listener = this.listener;
+        if (listener != null && !removedRemarks.isEmpty()) {
+            listener.fileRemarksRemoved(studentAssignment, removedRemarks);
+        }
+
+        if (listener != null && (!added.isEmpty() || !modified.isEmpty() || !removed.isEmpty())) {
+            listener.sourceCodeFilesChanged(studentAssignment, added, modified, removed);
+        }
+    }
+
+    /**
+     * Removes remarks made on given deleted files from the student and returns them.
+     */
+    private List<FileRemark> removeRemarks(StudentAssignment studentAssignment, List<SourceCodeFile> removed) {
+        List<FileRemark> removedRemarks = new ArrayList<FileRemark>();
+        if (removed.isEmpty()) {
+            return removedRemarks;
+        }
+
+        Set<SourceCodeFile> removedFiles =
+                Collections.newSetFromMap(new IdentityHashMap<SourceCodeFile, Boolean>());
+        removedFiles.addAll(removed);
+        for (Remark remark : new ArrayList<Remark>(studentAssignment.getRemarks())) {
+            if (remark instanceof FileRemark && removedFiles.contains(((FileRemark) remark).getSourceCodeFile())
+                    && studentAssignment.removeRemark(remark)) {
+                removedRemarks.add((FileRemark) remark);
+            }
+        }
+
+        return removedRemarks;
+    }
+
+    private void applyFile(StudentAssignment studentAssignment, Path studentDirectory, Path file,
+            List<SourceCodeFile> added, List<SourceCodeFile> modified) {
+        if (!this.scanner.accepts(studentDirectory, file)) {
+            return;
+        }
+
+        SourceCodeFile sourceCodeFile = studentAssignment.getSourceCodeFileByPath(file);
+        if (sourceCodeFile != null) {
+            sourceCodeFile.invalidateContent();
+            modified.add(sourceCodeFile);
+            return;
+        }
+
+        sourceCodeFile = new SourceCodeFile(file);
+        if (studentAssignment.addSourceCodeFile(sourceCodeFile)) {
+            added.add(sourceCodeFile);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package rs.ac.bg.etf.examiner.student;
+
+import rs.ac.bg.etf.examiner.errors.*;
+import rs.ac.bg.etf.examiner.labexercise.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.apache.logging.log4j.*;
+
+/**
+ * Applies a changed definition of the assignment to an already loaded
+ * <tt>Cohort</tt>. Tasks and items of every student are compared with the
+ * definition and added, removed or renamed in place, so scores, review
+ * statuses and remarks of everything that still exists are kept. Students
+ * are remapped in parallel. Grade matrix and error occurrences, whose layout
+ * depends on the definition, are released before and created again after.
+ *
+ * @author Marko Milojevic
+ *
+ */
+public class DefinitionReloader {
+
+    private static final Logger log = LogManager.getLogger(DefinitionReloader.class.getName());
+    public static final int DEFAULT_PARALLELISM = Runtime.getRuntime().availableProcessors();
+    private static final int STUDENTS_PER_TASK = 64;
+    private Cohort cohort;
+    private int parallelism;
+
+    public DefinitionReloader(Cohort cohort) {
+        this(cohort, DEFAULT_PARALLELISM);
+    }
+
+    public DefinitionReloader(Cohort cohort, int parallelism) {
+        if (cohort == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        } else if (parallelism <= 0) {
+            log.error(ErrorMessages.NON_POSITIVE_VALUE);
+            throw new IllegalArgumentException(ErrorMessages.NON_POSITIVE_VALUE);
+        }
+
+        this.cohort = cohort;
+        this.parallelism = parallelism;
+    }
+
+    public Cohort getCohort() {
+        return this.cohort;
+    }
+
+    /**
+     * Makes given exercise the current <tt>LabExercise</tt> and applies its
+     * definition of cohort's assignment. Returns number of students that changed.
+     */
+    public int reload(LabExercise labExercise) {
+        if (labExercise == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        }
+
+        Assignment assignment = labExercise.getAssignmentByName(this.cohort.getAssignment().getName());
+        if (assignment == null) {
+            log.error(ErrorMessages.UNDEFINED_ASSIGNMENT + " " + this.cohort.getAssignment().getName());
+            throw new IllegalArgumentException(ErrorMessages.UNDEFINED_ASSIGNMENT);
+        }
+
+        LabExercise.setInstance(labExercise);
+        return reload(assignment);
+    }
+
+    /**
+     * Applies given definition of cohort's assignment, which should belong to
+     * the current <tt>LabExercise</tt>. Returns number of students that changed.
+     */
+    public int reload(Assignment assignment) {
+        if (assignment == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        } else if (!assignment.getName().equals(this.cohort.getAssignment().getName())) {
+            log.error(ErrorMessages.UNDEFINED_ASSIGNMENT + " " + this.cohort.getAssignment().getName());
+            throw new IllegalArgumentException(ErrorMessages.UNDEFINED_ASSIGNMENT);
+        }
+
+        synchronized (this.cohort) {
+            boolean isGradeMatrixCreated = this.cohort.isGradeMatrixCreated();
+            this.cohort.releaseGradeMatrix();
+            boolean isErrorOccurrencesCreated = this.cohort.releaseErrorOccurrences();
+            List<StudentAssignment> studentAssignments = new ArrayList<StudentAssignment>(
+                    this.cohort.getStudentAssignments());
+            ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+            try {
+                int changed = pool.invoke(new RemapTask(assignment, studentAssignments, 0, studentAssignments.size()));
+                log.info(changed + " of " + studentAssignments.size() + " students remapped to new definition of "
+                        + assignment.getName() + ".");
+                return changed;
+            } finally {
+                pool.shutdown();
+                this.cohort.setAssignment(assignment);
+                if (isGradeMatrixCreated) {
+                    this.cohort.getGradeMatrix();
+                }
+
+                if (isErrorOccurrencesCreated) {
+                    this.cohort.getErrorOccurrences();
+                }
+            }
+        }
+    }
+
+    private static class RemapTask extends RecursiveTask<Integer> {
+
+        private static final long serialVersionUID = 1L;
+        private Assignment assignment;
+        private List<StudentAssignment> studentAssignments;
+        private int start;
+        private int end;
+
+        RemapTask(Assignment assignment, List<StudentAssignment> studentAssignments, int start, int end) {
+            this.assignment = assignment;
+            this.studentAssignments = studentAssignments;
+            this.start = start;
+            this.end = end;
+        }
+
+        protected Integer compute() {
+            if (this.end - this.start <= STUDENTS_PER_TASK) {
+                int changed = 0;
+                for (int s = this.start; s < this.end; s++) {
+                    if (this.studentAssignments.get(s).remap(this.assignment)) {
+                        changed++;
+                    }
+                }
+
+                return changed;
+            }
+
+            int middle = (this.start + this.end) >>> 1;
+            RemapTask left = new RemapTask(this.assignment, this.studentAssignments, this.start, middle);
+            left.fork();
+            int changed = new RemapTask(this.assignment, this.studentAssignments, middle, this.end).compute();
+            return changed + left.join();
+        }
+    }
+}
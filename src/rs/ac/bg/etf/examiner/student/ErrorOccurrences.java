@@ -0,0 +1,408 @@
+package rs.ac.bg.etf.examiner.student;
+
+import rs.ac.bg.etf.examiner.errors.*;
+import rs.ac.bg.etf.examiner.errors.Error;
+import rs.ac.bg.etf.examiner.labexercise.*;
+
+import java.util.*;
+
+import org.apache.logging.log4j.*;
+
+/**
+ * Occurrences of errors in remarks of all students of a <tt>Cohort</tt>.
+ * Every error, category and task gets a dense index the first time it is seen,
+ * and occurrences are kept in primitive counters per error, per category and per
+ * task, together with the number of students each error and category occurs
+ * with. Errors and categories are looked up by identity, or by their id, so a
+ * renamed error or an equal one of a reloaded database keeps its index. Tasks
+ * are looked up by identity. Counters are updated incrementally as remarks are
+ * added, removed or given another error, and can be read from any thread.
+ * Counts of an error are moved to its current category before categories are
+ * read, so an error moved to another category is counted with it.
+ *
+ * @author Marko Milojevic
+ *
+ */
+public class ErrorOccurrences {
+
+    private static final Logger log = LogManager.getLogger(ErrorOccurrences.class.getName());
+    private static final int INITIAL_CAPACITY = 64;
+    private final Map<Integer, Integer> errorIndicesById;
+    private final Map<Error, Integer> errorIndicesByIdentity;
+    private final List<Error> errors;
+    private final Map<Integer, Integer> categoryIndicesById;
+    private final Map<ErrorCategory, Integer> categoryIndicesByIdentity;
+    private final List<ErrorCategory> categories;
+    private final Map<Task, Integer> taskIndices;
+    private final Map<StudentAssignment, StudentCounts> studentCounts;
+    private final Map<Remark, Occurrence> occurrences;
+    private int[] errorOccurrences;
+    private int[] errorStudents;
+    private int[] errorCategories;
+    private int[] categoryOccurrences;
+    private int[] categoryStudents;
+    private int[][] taskErrorOccurrences;
+
+    ErrorOccurrences(Assignment assignment) {
+        this.errorIndicesById = new HashMap<Integer, Integer>();
+        this.errorIndicesByIdentity = new IdentityHashMap<Error, Integer>();
+        this.errors = new ArrayList<Error>();
+        this.categoryIndicesById = new HashMap<Integer, Integer>();
+        this.categoryIndicesByIdentity = new IdentityHashMap<ErrorCategory, Integer>();
+        this.categories = new ArrayList<ErrorCategory>();
+        this.taskIndices = new IdentityHashMap<Task, Integer>();
+        this.studentCounts = new IdentityHashMap<StudentAssignment, StudentCounts>();
+        this.occurrences = new IdentityHashMap<Remark, Occurrence>();
+        this.errorOccurrences = new int[INITIAL_CAPACITY];
+        this.errorStudents = new int[INITIAL_CAPACITY];
+        this.errorCategories = new int[INITIAL_CAPACITY];
+        this.categoryOccurrences = new int[INITIAL_CAPACITY];
+        this.categoryStudents = new int[INITIAL_CAPACITY];
+        this.taskErrorOccurrences = new int[0][];
+        if (assignment != null) {
+            for (Task task : assignment.getTasks()) {
+                getTaskIndex(task);
+            }
+        }
+    }
+
+    public synchronized int getOccurrenceCount(Error error) {
+        int e = findErrorIndex(error);
+        return e >= 0 ? this.errorOccurrences[e] : 0;
+    }
+
+    /**
+     * Returns number of students with at least one occurrence of given error.
+     */
+    public synchronized int getAffectedStudentCount(Error error) {
+        int e = findErrorIndex(error);
+        return e >= 0 ? this.errorStudents[e] : 0;
+    }
+
+    public synchronized int getOccurrenceCount(Task task, Error error) {
+        Integer t = task != null ? this.taskIndices.get(task) : null;
+        int e = findErrorIndex(error);
+        if (t == null || e < 0 || e >= this.taskErrorOccurrences[t].length) {
+            return 0;
+        }
+
+        return this.taskErrorOccurrences[t][e];
+    }
+
+    public synchronized int getOccurrenceCount(ErrorCategory category) {
+        updateCategories();
+        int c = findCategoryIndex(category);
+        return c >= 0 ? this.categoryOccurrences[c] : 0;
+    }
+
+    /**
+     * Returns number of students with at least one occurrence of an error of
+     * given category.
+     */
+    public synchronized int getAffectedStudentCount(ErrorCategory category) {
+        updateCategories();
+        int c = findCategoryIndex(category);
+        return c >= 0 ? this.categoryStudents[c] : 0;
+    }
+
+    /**
+     * Returns at most <tt>k</tt> errors with the most occurrences in the
+     * cohort, most frequent first.
+     */
+    public synchronized List<Error> getMostFrequentErrors(int k) {
+        return getMostFrequentErrors(this.errorOccurrences, null, k);
+    }
+
+    /**
+     * Returns at most <tt>k</tt> errors with the most occurrences in given task.
+     */
+    public synchronized List<Error> getMostFrequentErrors(Task task, int k) {
+        Integer t = task != null ? this.taskIndices.get(task) : null;
+        if (t == null) {
+            checkCount(k);
+            return new ArrayList<Error>();
+        }
+
+        return getMostFrequentErrors(this.taskErrorOccurrences[t], null, k);
+    }
+
+    /**
+     * Returns at most <tt>k</tt> errors of given severity with the most
+     * occurrences in the cohort.
+     */
+    public synchronized List<Error> getMostFrequentErrors(ErrorSeverity severity, int k) {
+        if (severity == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        }
+
+        return getMostFrequentErrors(this.errorOccurrences, severity, k);
+    }
+
+    synchronized void add(StudentAssignment studentAssignment) {
+        for (Remark remark : studentAssignment.getRemarks()) {
+            add(studentAssignment, remark);
+        }
+    }
+
+    synchronized void remove(StudentAssignment studentAssignment) {
+        for (Remark remark : studentAssignment.getRemarks()) {
+            remove(remark);
+        }
+
+        this.studentCounts.remove(studentAssignment);
+    }
+
+    synchronized void add(StudentAssignment studentAssignment, Remark remark) {
+        Error error = remark.getError();
+        if (error == null || this.occurrences.containsKey(remark)) {
+            return;
+        }
+
+        StudentTask studentTask = remark.getStudentTask();
+        Task task = studentTask != null ? studentTask.getTask() : null;
+        int e = getErrorIndex(error);
+        updateCategory(e);
+        Occurrence occurrence = new Occurrence(studentAssignment, e, task != null ? getTaskIndex(task) : -1);
+        this.occurrences.put(remark, occurrence);
+        count(occurrence, 1);
+    }
+
+    synchronized void remove(Remark remark) {
+        Occurrence occurrence = this.occurrences.remove(remark);
+        if (occurrence != null) {
+            count(occurrence, -1);
+        }
+    }
+
+    /**
+     * Counts given remark again, after its error or its task has changed.
+     * A remark that was not counted before, because it had no error, is
+     * counted now.
+     */
+    synchronized void update(StudentAssignment studentAssignment, Remark remark) {
+        Occurrence occurrence = this.occurrences.get(remark);
+        if (occurrence != null) {
+            remove(remark);
+            studentAssignment = occurrence.studentAssignment;
+        }
+
+        add(studentAssignment, remark);
+    }
+
+    private void count(Occurrence occurrence, int delta) {
+        StudentCounts counts = this.studentCounts.get(occurrence.studentAssignment);
+        if (counts == null) {
+            counts = new StudentCounts();
+            this.studentCounts.put(occurrence.studentAssignment, counts);
+        }
+
+        int e = occurrence.errorIndex;
+        this.errorOccurrences[e] += delta;
+        counts.errors = ensureCapacity(counts.errors, e);
+        counts.errors[e] += delta;
+        if (counts.errors[e] == (delta > 0 ? 1 : 0)) {
+            this.errorStudents[e] += delta;
+        }
+
+        countCategory(counts, this.errorCategories[e], delta);
+        int t = occurrence.taskIndex;
+        if (t >= 0) {
+            this.taskErrorOccurrences[t] = ensureCapacity(this.taskErrorOccurrences[t], e);
+            this.taskErrorOccurrences[t][e] += delta;
+        }
+    }
+
+    private void countCategory(StudentCounts counts, int c, int delta) {
+        if (c < 0 || delta == 0) {
+            return;
+        }
+
+        this.categoryOccurrences[c] += delta;
+        counts.categories = ensureCapacity(counts.categories, c);
+        int previous = counts.categories[c];
+        counts.categories[c] += delta;
+        if (previous == 0) {
+            this.categoryStudents[c]++;
+        } else if (counts.categories[c] == 0) {
+            this.categoryStudents[c]--;
+        }
+    }
+
+    private void updateCategories() {
+        for (int e = 0; e < this.errors.size(); e++) {
+            updateCategory(e);
+        }
+    }
+
+    /**
+     * Moves counts of given error from the category they were counted with to
+     * the current category of the error.
+     */
+    private void updateCategory(int e) {
+        ErrorCategory category = this.errors.get(e).getParent();
+        int c = category != null ? getCategoryIndex(category) : -1;
+        int previous = this.errorCategories[e];
+        if (c == previous) {
+            return;
+        }
+
+        this.errorCategories[e] = c;
+        if (this.errorOccurrences[e] == 0) {
+            return;
+        }
+
+        for (StudentCounts counts : this.studentCounts.values()) {
+            int count = counts.errors != null && e < counts.errors.length ? counts.errors[e] : 0;
+            if (count > 0) {
+                countCategory(counts, previous, -count);
+                countCategory(counts, c, count);
+            }
+        }
+    }
+
+    private List<Error> getMostFrequentErrors(final int[] counts, ErrorSeverity severity, int k) {
+        checkCount(k);
+        PriorityQueue<Integer> mostFrequent = new PriorityQueue<Integer>(k + 1, new Comparator<Integer>() {
+            public int compare(Integer first, Integer second) {
+                if (counts[first] != counts[second]) {
+                    return counts[first] < counts[second] ? -1 : 1;
+                }
+
+                return ErrorOccurrences.this.errors.get(second).compareTo(ErrorOccurrences.this.errors.get(first));
+            }
+        });
+
+        int errorCount = Math.min(counts.length, this.errors.size());
+        for (int e = 0; e < errorCount; e++) {
+            if (counts[e] > 0 && (severity == null || this.errors.get(e).getSeverity() == severity)) {
+                mostFrequent.add(e);
+                if (mostFrequent.size() > k) {
+                    mostFrequent.poll();
+                }
+            }
+        }
+
+        List<Error> result = new ArrayList<Error>(mostFrequent.size());
+        while (!mostFrequent.isEmpty()) {
+            result.add(this.errors.get(mostFrequent.poll()));
+        }
+
+        Collections.reverse(result);
+        return result;
+    }
+
+    private void checkCount(int k) {
+        if (k <= 0) {
+            log.error(ErrorMessages.NON_POSITIVE_VALUE);
+            throw new IllegalArgumentException(ErrorMessages.NON_POSITIVE_VALUE);
+        }
+    }
+
+    /**
+     * Returns index of given error, looked up by identity first and then by
+     * id, since an error without an id is equal only to itself.
+     */
+    private int findErrorIndex(Error error) {
+        if (error == null) {
+            return -1;
+        }
+
+        Integer e = this.errorIndicesByIdentity.get(error);
+        if (e == null && error.getId() > 0) {
+            e = this.errorIndicesById.get(error.getId());
+        }
+
+        return e != null ? e : -1;
+    }
+
+    private int getErrorIndex(Error error) {
+        int e = findErrorIndex(error);
+        if (e < 0) {
+            e = this.errors.size();
+            this.errors.add(error);
+            this.errorOccurrences = ensureCapacity(this.errorOccurrences, e);
+            this.errorStudents = ensureCapacity(this.errorStudents, e);
+            this.errorCategories = ensureCapacity(this.errorCategories, e);
+            this.errorCategories[e] = -1;
+        }
+
+        this.errorIndicesByIdentity.put(error, e);
+        if (error.getId() > 0) {
+            this.errorIndicesById.put(error.getId(), e);
+        }
+
+        return e;
+    }
+
+    private int findCategoryIndex(ErrorCategory category) {
+        if (category == null) {
+            return -1;
+        }
+
+        Integer c = this.categoryIndicesByIdentity.get(category);
+        if (c == null && category.getId() > 0) {
+            c = this.categoryIndicesById.get(category.getId());
+        }
+
+        return c != null ? c : -1;
+    }
+
+    private int getCategoryIndex(ErrorCategory category) {
+        int c = findCategoryIndex(category);
+        if (c < 0) {
+            c = this.categories.size();
+            this.categories.add(category);
+            this.categoryOccurrences = ensureCapacity(this.categoryOccurrences, c);
+            this.categoryStudents = ensureCapacity(this.categoryStudents, c);
+        }
+
+        this.categoryIndicesByIdentity.put(category, c);
+        if (category.getId() > 0) {
+            this.categoryIndicesById.put(category.getId(), c);
+        }
+
+        return c;
+    }
+
+    private int getTaskIndex(Task task) {
+        Integer t = this.taskIndices.get(task);
+        if (t == null) {
+            t = this.taskIndices.size();
+            this.taskIndices.put(task, t);
+            this.taskErrorOccurrences = Arrays.copyOf(this.taskErrorOccurrences, t + 1);
+            this.taskErrorOccurrences[t] = new int[this.errorOccurrences.length];
+        }
+
+        return t;
+    }
+
+    private static int[] ensureCapacity(int[] counts, int index) {
+        if (counts == null) {
+            return new int[Math.max(INITIAL_CAPACITY, index + 1)];
+        } else if (index < counts.length) {
+            return counts;
+        }
+
+        return Arrays.copyOf(counts, Math.max(counts.length * 2, index + 1));
+    }
+
+    private static class StudentCounts {
+
+        int[] errors;
+        int[] categories;
+    }
+
+    private static class Occurrence {
+
+        final StudentAssignment studentAssignment;
+        final int errorIndex;
+        final int taskIndex;
+
+        Occurrence(StudentAssignment studentAssignment, int errorIndex, int taskIndex) {
+            this.studentAssignment = studentAssignment;
+            this.errorIndex = errorIndex;
+            this.taskIndex = taskIndex;
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package rs.ac.bg.etf.examiner.student;
+
+import rs.ac.bg.etf.examiner.errors.*;
+import rs.ac.bg.etf.examiner.labexercise.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.apache.logging.log4j.*;
+
+/**
+ * Columnar store of item scores and review statuses of all students of a
+ * <tt>Cohort</tt>. Each student is a row and each item of the assignment is a
+ * column, numbered task by task in order of definition. Every column keeps
+ * scores in its own <tt>int</tt> array, one per row, and review statuses in its
+ * own array packed two bits per row. While a <tt>StudentItem</tt> is attached
+ * to the matrix, it reads and writes its cell instead of its own fields, so
+ * sums and filters of a column over the whole cohort are linear scans of the
+ * column's arrays.
+ *
+ * @author Marko Milojevic
+ *
+ */
+public class GradeMatrix {
+
+    private static final Logger log = LogManager.getLogger(GradeMatrix.class.getName());
+    private static final int STATUS_BITS = 2;
+    private static final int STATUSES_PER_BYTE = 8 / STATUS_BITS;
+    private static final int STATUS_MASK = (1 << STATUS_BITS) - 1;
+    private Assignment assignment;
+    private String[] taskNames;
+    private String[] itemNames;
+    private int[] values;
+    private int columnCount;
+    private int rowCount;
+    private StudentAssignment[] studentAssignments;
+    private int[][] scores;
+    private byte[][] statuses;
+
+    GradeMatrix(Assignment assignment, int capacity) {
+        if (assignment == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        }
+
+        this.assignment = assignment;
+        List<String> taskNames = new ArrayList<String>();
+        List<String> itemNames = new ArrayList<String>();
+        List<Integer> values = new ArrayList<Integer>();
+        for (Task task : assignment.getTasks()) {
+            for (Item item : task.getItems()) {
+                taskNames.add(task.getName());
+                itemNames.add(item.getName());
+                values.add(item.getValue());
+            }
+        }
+
+        this.columnCount = itemNames.size();
+        this.taskNames = taskNames.toArray(new String[this.columnCount]);
+        this.itemNames = itemNames.toArray(new String[this.columnCount]);
+        this.values = new int[this.columnCount];
+        for (int column = 0; column < this.columnCount; column++) {
+            this.values[column] = values.get(column);
+        }
+
+        capacity = Math.max(1, capacity);
+        this.studentAssignments = new StudentAssignment[capacity];
+        this.scores = new int[this.columnCount][capacity];
+        this.statuses = new byte[this.columnCount][getStatusLength(capacity)];
+    }
+
+    public Assignment getAssignment() {
+        return this.assignment;
+    }
+
+    public int getRowCount() {
+        return this.rowCount;
+    }
+
+    public int getColumnCount() {
+        return this.columnCount;
+    }
+
+    public StudentAssignment getStudentAssignment(int row) {
+        checkRow(row);
+        return this.studentAssignments[row];
+    }
+
+    public int getRow(StudentAssignment studentAssignment) {
+        for (int row = 0; row < this.rowCount; row++) {
+            if (this.studentAssignments[row] == studentAssignment) {
+                return row;
+            }
+        }
+
+        return -1;
+    }
+
+    public int getColumn(String taskName, String itemName) {
+        for (int column = 0; column < this.columnCount; column++) {
+            if (this.taskNames[column].equals(taskName) && this.itemNames[column].equals(itemName)) {
+                return column;
+            }
+        }
+
+        return -1;
+    }
+
+    public String getTaskName(int column) {
+        checkColumn(column);
+        return this.taskNames[column];
+    }
+
+    public String getItemName(int column) {
+        checkColumn(column);
+        return this.itemNames[column];
+    }
+
+    public int getValue(int column) {
+        checkColumn(column);
+        return this.values[column];
+    }
+
+    public int getScore(int row, int column) {
+        checkRow(row);
+        checkColumn(column);
+        return this.scores[column][row];
+    }
+
+    public ReviewStatus getReviewStatus(int row, int column) {
+        checkRow(row);
+        checkColumn(column);
+        return ReviewStatus.values()[getStatus(this.statuses[column], row)];
+    }
+
+    public long getColumnSum(int column) {
+        checkColumn(column);
+        int[] columnScores = this.scores[column];
+        long sum = 0;
+        for (int row = 0; row < this.rowCount; row++) {
+            sum += columnScores[row];
+        }
+
+        return sum;
+    }
+
+    public int getRowSum(int row) {
+        checkRow(row);
+        int sum = 0;
+        for (int column = 0; column < this.columnCount; column++) {
+            sum += this.scores[column][row];
+        }
+
+        return sum;
+    }
+
+    /**
+     * Returns scores of given column, one per row.
+     */
+    public int[] getScoreColumn(int column) {
+        checkColumn(column);
+        return Arrays.copyOf(this.scores[column], this.rowCount);
+    }
+
+    /**
+     * Returns ordinals of review statuses of given column, one per row.
+     */
+    byte[] getStatusColumn(int column) {
+        checkColumn(column);
+        byte[] columnStatuses = this.statuses[column];
+        byte[] ordinals = new byte[this.rowCount];
+        for (int row = 0; row < this.rowCount; row++) {
+            ordinals[row] = (byte) getStatus(columnStatuses, row);
+        }
+
+        return ordinals;
+    }
+
+    /**
+     * Returns rows whose cell in given column has given review status.
+     */
+    public int[] findRows(int column, ReviewStatus status) {
+        checkColumn(column);
+        if (status == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        }
+
+        byte[] columnStatuses = this.statuses[column];
+        int[] rows = new int[this.rowCount];
+        int count = 0;
+        for (int row = 0; row < this.rowCount; row++) {
+            if (getStatus(columnStatuses, row) == status.ordinal()) {
+                rows[count++] = row;
+            }
+        }
+
+        return Arrays.copyOf(rows, count);
+    }
+
+    /**
+     * Returns rows whose score in given column is between given bounds, inclusive.
+     */
+    public int[] findRows(int column, int minScore, int maxScore) {
+        checkColumn(column);
+        int[] columnScores = this.scores[column];
+        int[] rows = new int[this.rowCount];
+        int count = 0;
+        for (int row = 0; row < this.rowCount; row++) {
+            int score = columnScores[row];
+            if (score >= minScore && score <= maxScore) {
+                rows[count++] = row;
+            }
+        }
+
+        return Arrays.copyOf(rows, count);
+    }
+
+    /**
+     * Writes the matrix as comma separated values, one student per line,
+     * preceded by a header with task and item names.
+     */
+    public void export(Writer writer) throws IOException {
+        if (writer == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        }
+
+        StringBuilder line = new StringBuilder("student");
+        for (int column = 0; column < this.columnCount; column++) {
+            line.append(',').append(this.taskNames[column]).append('.').append(this.itemNames[column]);
+        }
+
+        writer.write(line.append(System.lineSeparator()).toString());
+        for (int row = 0; row < this.rowCount; row++) {
+            line.setLength(0);
+            line.append(this.studentAssignments[row].getId());
+            for (int column = 0; column < this.columnCount; column++) {
+                line.append(',').append(this.scores[column][row]);
+            }
+
+            writer.write(line.append(System.lineSeparator()).toString());
+        }
+
+        writer.flush();
+    }
+
+    void setScore(int row, int column, int score) {
+        this.scores[column][row] = score;
+    }
+
+    void setReviewStatus(int row, int column, ReviewStatus status) {
+        byte[] columnStatuses = this.statuses[column];
+        int shift = (row % STATUSES_PER_BYTE) * STATUS_BITS;
+        int packed = columnStatuses[row / STATUSES_PER_BYTE] & ~(STATUS_MASK << shift);
+        columnStatuses[row / STATUSES_PER_BYTE] = (byte) (packed | (status.ordinal() << shift));
+    }
+
+    /**
+     * Adds a row for given student and attaches student's items to it.
+     */
+    void addRow(StudentAssignment studentAssignment) {
+        if (this.rowCount == this.studentAssignments.length) {
+            int capacity = this.studentAssignments.length * 2;
+            this.studentAssignments = Arrays.copyOf(this.studentAssignments, capacity);
+            for (int column = 0; column < this.columnCount; column++) {
+                this.scores[column] = Arrays.copyOf(this.scores[column], capacity);
+                this.statuses[column] = Arrays.copyOf(this.statuses[column], getStatusLength(capacity));
+            }
+        }
+
+        int row = this.rowCount++;
+        this.studentAssignments[row] = studentAssignment;
+        attach(studentAssignment, row);
+    }
+
+    /**
+     * Detaches items of given student and moves the last row in place of its row.
+     */
+    void removeRow(StudentAssignment studentAssignment) {
+        int row = getRow(studentAssignment);
+        if (row < 0) {
+            return;
+        }
+
+        detach(studentAssignment);
+        int last = this.rowCount - 1;
+        StudentAssignment moved = this.studentAssignments[last];
+        if (row != last) {
+            detach(moved);
+        }
+
+        this.rowCount = last;
+        this.studentAssignments[last] = null;
+        if (row != last) {
+            this.studentAssignments[row] = moved;
+            attach(moved, row);
+        }
+    }
+
+    /**
+     * Detaches items of all students, which take their values back.
+     */
+    void clear() {
+        for (int row = 0; row < this.rowCount; row++) {
+            detach(this.studentAssignments[row]);
+            this.studentAssignments[row] = null;
+        }
+
+        this.rowCount = 0;
+    }
+
+    private void attach(StudentAssignment studentAssignment, int row) {
+        for (int column = 0; column < this.columnCount; column++) {
+            StudentTask studentTask = studentAssignment.getStudentTaskByName(this.taskNames[column]);
+            StudentItem studentItem = studentTask != null ? studentTask.getStudentItemByName(this.itemNames[column]) : null;
+            if (studentItem != null) {
+                studentItem.attach(this, row, column);
+            }
+        }
+    }
+
+    private void detach(StudentAssignment studentAssignment) {
+        for (StudentTask studentTask : studentAssignment.getStudentTasks()) {
+            for (StudentItem studentItem : studentTask.getStudentItems()) {
+                if (studentItem.getGradeMatrix() == this) {
+                    studentItem.detach();
+                }
+            }
+        }
+    }
+
+    private static int getStatus(byte[] columnStatuses, int row) {
+        int shift = (row % STATUSES_PER_BYTE) * STATUS_BITS;
+        return (columnStatuses[row / STATUSES_PER_BYTE] >> shift) & STATUS_MASK;
+    }
+
+    private static int getStatusLength(int capacity) {
+        return (capacity + STATUSES_PER_BYTE - 1) / STATUSES_PER_BYTE;
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= this.rowCount) {
+            log.error(ErrorMessages.INVALID_INDEX);
+            throw new IndexOutOfBoundsException(ErrorMessages.INVALID_INDEX);
+        }
+    }
+
+    private void checkColumn(int column) {
+        if (column < 0 || column >= this.columnCount) {
+            log.error(ErrorMessages.INVALID_INDEX);
+            throw new IndexOutOfBoundsException(ErrorMessages.INVALID_INDEX);
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package rs.ac.bg.etf.examiner.student;
+
+import rs.ac.bg.etf.examiner.errors.*;
+import rs.ac.bg.etf.examiner.errors.Error;
+import rs.ac.bg.etf.examiner.labexercise.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.apache.logging.log4j.*;
+
+/**
+ * Recomputes grades of a <tt>Cohort</tt> as they would be with different item
+ * values, penalty percentages or evaluation modes, without changing the
+ * cohort. An item keeps the same percentage of its value when the value
+ * changes. A task's deduction is scaled with task's value, unless a remark
+ * of the task has an overridden penalty, in which case the deduction is
+ * computed again from penalties of all its remarks. As in <tt>PenaltyEvaluator</tt>,
+ * a task that is evaluated absolutely has no deduction. Penalties are given
+ * to errors themselves, not to errors of the same name. Students are simulated
+ * in parallel, into <tt>SimulatedGrades</tt>.
+ *
+ * @author Marko Milojevic
+ *
+ */
+public class GradeSimulator {
+
+    private static final Logger log = LogManager.getLogger(GradeSimulator.class.getName());
+    public static final int DEFAULT_PARALLELISM = Runtime.getRuntime().availableProcessors();
+    private static final int STUDENTS_PER_TASK = 128;
+    private Cohort cohort;
+    private int parallelism;
+    private Map<String, Map<String, Integer>> itemValues;
+    private Map<Error, Integer> errorPenalties;
+    private Map<ErrorSeverity, Integer> severityPenalties;
+    private Map<String, Boolean> absoluteEvaluations;
+
+    {
+        itemValues = new HashMap<String, Map<String, Integer>>();
+        errorPenalties = new IdentityHashMap<Error, Integer>();
+        severityPenalties = new EnumMap<ErrorSeverity, Integer>(ErrorSeverity.class);
+        absoluteEvaluations = new HashMap<String, Boolean>();
+    }
+
+    public GradeSimulator(Cohort cohort) {
+        this(cohort, DEFAULT_PARALLELISM);
+    }
+
+    public GradeSimulator(Cohort cohort, int parallelism) {
+        if (cohort == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        } else if (parallelism <= 0) {
+            log.error(ErrorMessages.NON_POSITIVE_VALUE);
+            throw new IllegalArgumentException(ErrorMessages.NON_POSITIVE_VALUE);
+        }
+
+        this.cohort = cohort;
+        this.parallelism = parallelism;
+    }
+
+    public Cohort getCohort() {
+        return this.cohort;
+    }
+
+    public void setItemValue(String taskName, String itemName, int value) {
+        Task task = this.cohort.getAssignment().getTaskByName(taskName);
+        if (task == null || task.getItemByName(itemName) == null) {
+            log.error(ErrorMessages.INVALID_ITEM_PATH + " " + taskName + "/" + itemName);
+            throw new IllegalArgumentException(ErrorMessages.INVALID_ITEM_PATH);
+        } else if (value <= 0) {
+            log.error(ErrorMessages.NON_POSITIVE_VALUE);
+            throw new IllegalArgumentException(ErrorMessages.NON_POSITIVE_VALUE);
+        }
+
+        Map<String, Integer> values = this.itemValues.get(taskName);
+        if (values == null) {
+            values = new HashMap<String, Integer>();
+            this.itemValues.put(taskName, values);
+        }
+
+        values.put(itemName, value);
+    }
+
+    /**
+     * Gives every remark with given error given penalty percentage. Takes
+     * precedence over a penalty of error's severity.
+     */
+    public void setPenaltyPercentage(Error error, int percentage) {
+        if (error == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        }
+
+        checkPercentage(percentage);
+        this.errorPenalties.put(error, percentage);
+    }
+
+    public void setPenaltyPercentage(ErrorSeverity severity, int percentage) {
+        if (severity == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        }
+
+        checkPercentage(percentage);
+        this.severityPenalties.put(severity, percentage);
+    }
+
+    /**
+     * Evaluates given task of every student absolutely, by student's absolute
+     * value percentage, or by items.
+     */
+    public void setAbsoluteEvaluation(String taskName, boolean isAbsoluteEvaluation) {
+        if (this.cohort.getAssignment().getTaskByName(taskName) == null) {
+            log.error(ErrorMessages.INVALID_ITEM_PATH + " " + taskName);
+            throw new IllegalArgumentException(ErrorMessages.INVALID_ITEM_PATH);
+        }
+
+        this.absoluteEvaluations.put(taskName, isAbsoluteEvaluation);
+    }
+
+    /**
+     * Removes all overrides.
+     */
+    public void clear() {
+        this.itemValues.clear();
+        this.errorPenalties.clear();
+        this.severityPenalties.clear();
+        this.absoluteEvaluations.clear();
+    }
+
+    /**
+     * Simulates grades of all students of the cohort with current overrides.
+     */
+    public SimulatedGrades simulate() {
+        List<StudentAssignment> studentAssignments = new ArrayList<StudentAssignment>(
+                this.cohort.getStudentAssignments());
+        SimulatedGrades grades = new SimulatedGrades(this.cohort.getAssignment(), studentAssignments);
+        Overrides overrides = new Overrides(grades.getTaskNames());
+        ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+        try {
+            pool.invoke(new SimulateTask(overrides, grades, 0, studentAssignments.size()));
+        } finally {
+            pool.shutdown();
+        }
+
+        return grades;
+    }
+
+    private static void checkPercentage(int percentage) {
+        if (percentage < 0 || percentage > 100) {
+            log.error(ErrorMessages.INVALID_PERCENTAGE_VALUE);
+            throw new IllegalArgumentException();
+        }
+    }
+
+    private static void simulate(Overrides overrides, SimulatedGrades grades, int s) {
+        StudentAssignment studentAssignment = grades.getStudentAssignment(s);
+        String[] taskNames = grades.getTaskNames();
+        int[] penalties = new int[taskNames.length];
+        boolean[] isPenaltyOverridden = new boolean[taskNames.length];
+        boolean[] isAbsoluteEvaluation = new boolean[taskNames.length];
+        StudentTask[] studentTasks = new StudentTask[taskNames.length];
+        for (int t = 0; t < taskNames.length; t++) {
+            studentTasks[t] = studentAssignment.getStudentTaskByName(taskNames[t]);
+            if (studentTasks[t] != null) {
+                Boolean override = overrides.absoluteEvaluations[t];
+                isAbsoluteEvaluation[t] = override != null ? override : studentTasks[t].isAbsoluteEvaluation();
+            }
+        }
+
+        if (overrides.hasPenalties) {
+            for (Remark remark : studentAssignment.getRemarks()) {
+                Error error = remark.getError();
+                StudentTask studentTask = remark.getStudentTask();
+                int t = studentTask != null ? indexOf(studentTasks, studentTask) : -1;
+                if (error == null || t < 0 || isAbsoluteEvaluation[t]) {
+                    continue;
+                }
+
+                Integer penalty = overrides.getPenalty(error);
+                isPenaltyOverridden[t] |= penalty != null;
+                penalties[t] += penalty != null ? penalty : remark.getErrorPenaltyPercentage();
+            }
+        }
+
+        int total = 0;
+        for (int t = 0; t < taskNames.length; t++) {
+            StudentTask studentTask = studentTasks[t];
+            if (studentTask == null) {
+                continue;
+            }
+
+            int[] itemValues = overrides.itemValues[t];
+            int value = 0;
+            int score = 0;
+            for (StudentItem studentItem : studentTask.getStudentItems()) {
+                int itemValue = studentItem.getValue();
+                int itemScore = studentItem.getScoreAsAbsolute();
+                int i = itemValues != null ? overrides.getItemIndex(t, studentItem.getName()) : -1;
+                if (i >= 0 && itemValues[i] != itemValue) {
+                    itemScore = Math.round((float) (itemScore * itemValues[i]) / itemValue);
+                    itemValue = itemValues[i];
+                }
+
+                value += itemValue;
+                score += itemScore;
+            }
+
+            if (isAbsoluteEvaluation[t]) {
+                score = Math.round((float) (value * studentTask.getAbsoluteValuePercentage()) / 100);
+            }
+
+            int deduction;
+            if (isAbsoluteEvaluation[t]) {
+                deduction = 0;
+            } else if (isPenaltyOverridden[t]) {
+                deduction = Math.round((float) (value * Math.min(100, penalties[t])) / 100);
+            } else if (studentTask.getValue() > 0) {
+                deduction = Math.round((float) (studentTask.getDeduction() * value) / studentTask.getValue());
+            } else {
+                deduction = 0;
+            }
+
+            score = Math.max(0, score - deduction);
+            grades.setTaskScores(s, t, studentTask.getScoreAsAbsolute(), score);
+            total += score;
+        }
+
+        grades.setScores(s, studentAssignment.getScoreAsAbsolute(), total);
+    }
+
+    private static int indexOf(StudentTask[] studentTasks, StudentTask studentTask) {
+        for (int t = 0; t < studentTasks.length; t++) {
+            if (studentTasks[t] == studentTask) {
+                return t;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Overrides copied for one simulation, indexed by task.
+     */
+    private class Overrides {
+
+        final int[][] itemValues;
+        final String[][] itemNames;
+        final Boolean[] absoluteEvaluations;
+        final Map<Error, Integer> errorPenalties;
+        final Integer[] severityPenalties;
+        final boolean hasPenalties;
+
+        Overrides(String[] taskNames) {
+            this.itemValues = new int[taskNames.length][];
+            this.itemNames = new String[taskNames.length][];
+            this.absoluteEvaluations = new Boolean[taskNames.length];
+            for (int t = 0; t < taskNames.length; t++) {
+                Map<String, Integer> values = GradeSimulator.this.itemValues.get(taskNames[t]);
+                if (values != null) {
+                    this.itemNames[t] = values.keySet().toArray(new String[values.size()]);
+                    this.itemValues[t] = new int[values.size()];
+                    for (int i = 0; i < this.itemNames[t].length; i++) {
+                        this.itemValues[t][i] = values.get(this.itemNames[t][i]);
+                    }
+                }
+
+                this.absoluteEvaluations[t] = GradeSimulator.this.absoluteEvaluations.get(taskNames[t]);
+            }
+
+            this.errorPenalties = new IdentityHashMap<Error, Integer>(GradeSimulator.this.errorPenalties);
+            this.severityPenalties = new Integer[ErrorSeverity.values().length];
+            for (Map.Entry<ErrorSeverity, Integer> entry : GradeSimulator.this.severityPenalties.entrySet()) {
+                this.severityPenalties[entry.getKey().ordinal()] = entry.getValue();
+            }
+
+            this.hasPenalties = !GradeSimulator.this.errorPenalties.isEmpty()
+                    || !GradeSimulator.this.severityPenalties.isEmpty();
+        }
+
+        Integer getPenalty(Error error) {
+            Integer penalty = this.errorPenalties.isEmpty() ? null : this.errorPenalties.get(error);
+            return penalty != null ? penalty : this.severityPenalties[error.getSeverity().ordinal()];
+        }
+
+        int getItemIndex(int t, String itemName) {
+            for (int i = 0; i < this.itemNames[t].length; i++) {
+                if (this.itemNames[t][i].equals(itemName)) {
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+    }
+
+    private class SimulateTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private Overrides overrides;
+        private SimulatedGrades grades;
+        private int start;
+        private int end;
+
+        SimulateTask(Overrides overrides, SimulatedGrades grades, int start, int end) {
+            this.overrides = overrides;
+            this.grades = grades;
+            this.start = start;
+            this.end = end;
+        }
+
+        protected void compute() {
+            if (this.end - this.start <= STUDENTS_PER_TASK) {
+                for (int s = this.start; s < this.end; s++) {
+                    simulate(this.overrides, this.grades, s);
+                }
+
+                return;
+            }
+
+            int middle = (this.start + this.end) >>> 1;
+            invokeAll(new SimulateTask(this.overrides, this.grades, this.start, middle),
+                    new SimulateTask(this.overrides, this.grades, middle, this.end));
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package rs.ac.bg.etf.examiner.student;
+
+import java.util.*;
+
+/**
+ * Receives changes made by <tt>BatchGrader</tt>, one notification per batch.
+ *
+ * @author Marko Milojevic
+ *
+ */
+public interface GradingListener {
+
+    void studentItemsChanged(String taskName, String itemName, List<StudentItem> studentItems);
+}
@@ -0,0 +1,61 @@
+package rs.ac.bg.etf.examiner.student;
+
+import rs.ac.bg.etf.examiner.labexercise.*;
+
+import java.lang.ref.*;
+import java.util.*;
+
+/**
+ * Positions of items of a task by name, shared by tasks of all students
+ * with the same items. Indices are interned by their list of
+ * <tt>ItemDescriptor</tt>s.
+ *
+ * @author Marko Milojevic
+ *
+ */
+final class ItemIndex {
+
+    private static final Map<List<ItemDescriptor>, WeakReference<ItemIndex>> pool =
+            new WeakHashMap<List<ItemDescriptor>, WeakReference<ItemIndex>>();
+    private final List<ItemDescriptor> descriptors;
+    private final Map<String, Integer> positions;
+
+    private ItemIndex(List<ItemDescriptor> descriptors) {
+        this.descriptors = descriptors;
+        this.positions = new HashMap<String, Integer>(descriptors.size() * 2);
+        for (int i = 0; i < descriptors.size(); i++) {
+            this.positions.put(descriptors.get(i).getName(), i);
+        }
+    }
+
+    static ItemIndex of(List<StudentItem> studentItems) {
+        List<ItemDescriptor> descriptors = new ArrayList<ItemDescriptor>(studentItems.size());
+        for (StudentItem studentItem : studentItems) {
+            descriptors.add(studentItem.getDescriptor());
+        }
+
+        descriptors = Collections.unmodifiableList(descriptors);
+        synchronized (pool) {
+            WeakReference<ItemIndex> reference = pool.get(descriptors);
+            ItemIndex index = reference != null ? reference.get() : null;
+            if (index == null) {
+                index = new ItemIndex(descriptors);
+                pool.put(index.descriptors, new WeakReference<ItemIndex>(index));
+            }
+
+            return index;
+        }
+    }
+
+    /**
+     * Returns position of the item of given name, or -1 if there is none.
+     */
+    int getPosition(String name) {
+        Integer position = this.positions.get(name);
+        return position != null ? position : -1;
+    }
+
+    ItemDescriptor getDescriptor(int position) {
+        return this.descriptors.get(position);
+    }
+}
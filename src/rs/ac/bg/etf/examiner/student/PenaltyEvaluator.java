@@ -0,0 +1,292 @@
+package rs.ac.bg.etf.examiner.student;
+
+import rs.ac.bg.etf.examiner.errors.*;
+import rs.ac.bg.etf.examiner.errors.Error;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.apache.logging.log4j.*;
+
+/**
+ * Evaluates remarks of students of a <tt>Cohort</tt> by a set of
+ * <tt>PenaltyPolicy</tt> objects. Occurrences of every error and severity are
+ * counted per student and per task in one pass over student's remarks. Each
+ * remark covered by a policy is then penalized by the percentage the policy
+ * gives for the counted occurrences, and the penalties of each task are
+ * deducted from its score. A policy for an error takes precedence over a
+ * policy for its severity. Remarks covered by no policy are penalized by
+ * their own penalty percentage, which is set by the examiner and never
+ * changed by the evaluator, so removing a policy and evaluating again
+ * restores it. As with the remarks' own penalties, remarks of an absolutely
+ * evaluated task are not penalized. Students are evaluated in parallel, so
+ * the whole cohort can be evaluated again whenever policies change.
+ *
+ * @author Marko Milojevic
+ *
+ */
+public class PenaltyEvaluator {
+
+    private static final Logger log = LogManager.getLogger(PenaltyEvaluator.class.getName());
+    public static final int DEFAULT_PARALLELISM = Runtime.getRuntime().availableProcessors();
+    private static final int STUDENTS_PER_TASK = 64;
+    private Cohort cohort;
+    private int parallelism;
+    private List<PenaltyPolicy> policies;
+
+    {
+        policies = new ArrayList<PenaltyPolicy>();
+    }
+
+    public PenaltyEvaluator(Cohort cohort) {
+        this(cohort, DEFAULT_PARALLELISM);
+    }
+
+    public PenaltyEvaluator(Cohort cohort, int parallelism) {
+        if (cohort == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        } else if (parallelism <= 0) {
+            log.error(ErrorMessages.NON_POSITIVE_VALUE);
+            throw new IllegalArgumentException(ErrorMessages.NON_POSITIVE_VALUE);
+        }
+
+        this.cohort = cohort;
+        this.parallelism = parallelism;
+    }
+
+    public Cohort getCohort() {
+        return this.cohort;
+    }
+
+    public synchronized List<PenaltyPolicy> getPolicies() {
+        return Collections.unmodifiableList(new ArrayList<PenaltyPolicy>(this.policies));
+    }
+
+    /**
+     * Adds given policy, replacing the policy for the same error or severity.
+     */
+    public synchronized boolean addPolicy(PenaltyPolicy policy) {
+        if (policy == null) {
+            return false;
+        }
+
+        removePolicyFor(policy);
+        return this.policies.add(policy);
+    }
+
+    public synchronized boolean removePolicy(PenaltyPolicy policy) {
+        if (policy == null) {
+            return false;
+        }
+
+        return this.policies.remove(policy);
+    }
+
+    public synchronized void clearPolicies() {
+        this.policies.clear();
+    }
+
+    /**
+     * Evaluates all students of the cohort and returns number of tasks whose
+     * deduction changed.
+     */
+    public int evaluate() {
+        List<StudentAssignment> studentAssignments = new ArrayList<StudentAssignment>(
+                this.cohort.getStudentAssignments());
+        PolicyTable table = new PolicyTable(getPolicies());
+        ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+        try {
+            return pool.invoke(new EvaluateTask(table, studentAssignments, 0, studentAssignments.size()));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Evaluates one student and returns number of tasks whose deduction changed.
+     */
+    public int evaluate(StudentAssignment studentAssignment) {
+        if (studentAssignment == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        }
+
+        return evaluate(new PolicyTable(getPolicies()), studentAssignment);
+    }
+
+    private void removePolicyFor(PenaltyPolicy policy) {
+        Iterator<PenaltyPolicy> iterator = this.policies.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().hasSameTarget(policy)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static int evaluate(PolicyTable table, StudentAssignment studentAssignment) {
+        List<StudentTask> studentTasks = studentAssignment.getStudentTasks();
+        Map<StudentTask, Integer> taskIndices = new IdentityHashMap<StudentTask, Integer>();
+        for (int t = 0; t < studentTasks.size(); t++) {
+            taskIndices.put(studentTasks.get(t), t);
+        }
+
+        List<Remark> remarks = studentAssignment.getRemarks();
+        int slotCount = table.getSlotCount();
+        int[] studentCounts = new int[slotCount];
+        int[][] taskCounts = new int[studentTasks.size()][slotCount];
+        int[] remarkSlots = new int[remarks.size()];
+        int[] remarkTasks = new int[remarks.size()];
+        Map<Error, Integer> errorSlots = new IdentityHashMap<Error, Integer>();
+        for (int r = 0; r < remarks.size(); r++) {
+            Remark remark = remarks.get(r);
+            Error error = remark.getError();
+            remarkSlots[r] = -1;
+            if (error == null) {
+                continue;
+            }
+
+            Integer errorSlot = errorSlots.get(error);
+            if (errorSlot == null) {
+                errorSlot = table.getErrorSlot(error);
+                errorSlots.put(error, errorSlot);
+            }
+
+            Integer t = taskIndices.get(remark.getStudentTask());
+            remarkTasks[r] = t != null ? t : -1;
+            int severitySlot = table.getSeveritySlot(error.getSeverity());
+            studentCounts[severitySlot]++;
+            if (t != null) {
+                taskCounts[t][severitySlot]++;
+            }
+
+            if (errorSlot >= 0) {
+                studentCounts[errorSlot]++;
+                if (t != null) {
+                    taskCounts[t][errorSlot]++;
+                }
+            }
+
+            remarkSlots[r] = errorSlot >= 0 && table.getPolicy(errorSlot) != null ? errorSlot : severitySlot;
+        }
+
+        int[] taskPenalties = new int[studentTasks.size()];
+        for (int r = 0; r < remarks.size(); r++) {
+            if (remarkSlots[r] < 0) {
+                continue;
+            }
+
+            int t = remarkTasks[r];
+            if (t < 0 || studentTasks.get(t).isAbsoluteEvaluation()) {
+                continue;
+            }
+
+            PenaltyPolicy policy = table.getPolicy(remarkSlots[r]);
+            if (policy != null) {
+                int count = policy.isCountedPerTask() ? taskCounts[t][remarkSlots[r]] : studentCounts[remarkSlots[r]];
+                taskPenalties[t] += policy.getPenaltyPercentage(count);
+            } else {
+                taskPenalties[t] += remarks.get(r).getErrorPenaltyPercentage();
+            }
+        }
+
+        int changed = 0;
+        for (int t = 0; t < studentTasks.size(); t++) {
+            StudentTask studentTask = studentTasks.get(t);
+            int penaltyPercentage = Math.min(100, taskPenalties[t]);
+            int deduction = Math.round((float) (studentTask.getValue() * penaltyPercentage) / 100);
+            if (studentTask.getDeduction() != deduction) {
+                studentTask.setDeduction(deduction);
+                changed++;
+            }
+        }
+
+        return changed;
+    }
+
+    /**
+     * Policies numbered for counting. Error policies take the first slots,
+     * followed by one slot per severity, whether it has a policy or not.
+     */
+    private static class PolicyTable {
+
+        private final Error[] errors;
+        private final PenaltyPolicy[] policies;
+
+        PolicyTable(List<PenaltyPolicy> policies) {
+            List<PenaltyPolicy> errorPolicies = new ArrayList<PenaltyPolicy>();
+            PenaltyPolicy[] severityPolicies = new PenaltyPolicy[ErrorSeverity.values().length];
+            for (PenaltyPolicy policy : policies) {
+                if (policy.getError() != null) {
+                    errorPolicies.add(policy);
+                } else {
+                    severityPolicies[policy.getSeverity().ordinal()] = policy;
+                }
+            }
+
+            this.errors = new Error[errorPolicies.size()];
+            this.policies = new PenaltyPolicy[errorPolicies.size() + severityPolicies.length];
+            for (int i = 0; i < this.errors.length; i++) {
+                this.errors[i] = errorPolicies.get(i).getError();
+                this.policies[i] = errorPolicies.get(i);
+            }
+
+            System.arraycopy(severityPolicies, 0, this.policies, this.errors.length, severityPolicies.length);
+        }
+
+        int getSlotCount() {
+            return this.policies.length;
+        }
+
+        int getErrorSlot(Error error) {
+            for (int i = 0; i < this.errors.length; i++) {
+                if (this.errors[i] == error || this.errors[i].equals(error)) {
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+
+        int getSeveritySlot(ErrorSeverity severity) {
+            return this.errors.length + severity.ordinal();
+        }
+
+        PenaltyPolicy getPolicy(int slot) {
+            return this.policies[slot];
+        }
+    }
+
+    private static class EvaluateTask extends RecursiveTask<Integer> {
+
+        private static final long serialVersionUID = 1L;
+        private PolicyTable table;
+        private List<StudentAssignment> studentAssignments;
+        private int start;
+        private int end;
+
+        EvaluateTask(PolicyTable table, List<StudentAssignment> studentAssignments, int start, int end) {
+            this.table = table;
+            this.studentAssignments = studentAssignments;
+            this.start = start;
+            this.end = end;
+        }
+
+        protected Integer compute() {
+            if (this.end - this.start <= STUDENTS_PER_TASK) {
+                int changed = 0;
+                for (int s = this.start; s < this.end; s++) {
+                    changed += evaluate(this.table, this.studentAssignments.get(s));
+                }
+
+                return changed;
+            }
+
+            int middle = (this.start + this.end) >>> 1;
+            EvaluateTask left = new EvaluateTask(this.table, this.studentAssignments, this.start, middle);
+            left.fork();
+            int changed = new EvaluateTask(this.table, this.studentAssignments, middle, this.end).compute();
+            return changed + left.join();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package rs.ac.bg.etf.examiner.student;
+
+import rs.ac.bg.etf.examiner.errors.*;
+import rs.ac.bg.etf.examiner.errors.Error;
+
+import org.apache.logging.log4j.*;
+
+/**
+ * Penalty for an <tt>Error</tt>, or for all errors of an <tt>ErrorSeverity</tt>,
+ * which depends on how many times it occurs. Each occurrence is penalized by
+ * the low percentage while the number of occurrences does not exceed the
+ * threshold, and by the high percentage after that. Occurrences are counted
+ * per student, or per task if the policy says so.
+ *
+ * @author Marko Milojevic
+ *
+ */
+public class PenaltyPolicy {
+
+    private static final Logger log = LogManager.getLogger(PenaltyPolicy.class.getName());
+    private final Error error;
+    private final ErrorSeverity severity;
+    private final int occurrenceThreshold;
+    private final int lowPenaltyPercentage;
+    private final int highPenaltyPercentage;
+    private final boolean isCountedPerTask;
+
+    public PenaltyPolicy(Error error, int occurrenceThreshold, int lowPenaltyPercentage,
+            int highPenaltyPercentage) {
+        this(error, occurrenceThreshold, lowPenaltyPercentage, highPenaltyPercentage, false);
+    }
+
+    public PenaltyPolicy(Error error, int occurrenceThreshold, int lowPenaltyPercentage,
+            int highPenaltyPercentage, boolean isCountedPerTask) {
+        this(error, null, occurrenceThreshold, lowPenaltyPercentage, highPenaltyPercentage, isCountedPerTask);
+    }
+
+    public PenaltyPolicy(ErrorSeverity severity, int occurrenceThreshold, int lowPenaltyPercentage,
+            int highPenaltyPercentage) {
+        this(severity, occurrenceThreshold, lowPenaltyPercentage, highPenaltyPercentage, false);
+    }
+
+    public PenaltyPolicy(ErrorSeverity severity, int occurrenceThreshold, int lowPenaltyPercentage,
+            int highPenaltyPercentage, boolean isCountedPerTask) {
+        this(null, severity, occurrenceThreshold, lowPenaltyPercentage, highPenaltyPercentage, isCountedPerTask);
+    }
+
+    private PenaltyPolicy(Error error, ErrorSeverity severity, int occurrenceThreshold, int lowPenaltyPercentage,
+            int highPenaltyPercentage, boolean isCountedPerTask) {
+        if (error == null && severity == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        } else if (occurrenceThreshold < 0) {
+            log.error(ErrorMessages.NEGATIVE_VALUE);
+            throw new IllegalArgumentException(ErrorMessages.NEGATIVE_VALUE);
+        } else if (lowPenaltyPercentage < 0 || lowPenaltyPercentage > 100
+                || highPenaltyPercentage < 0 || highPenaltyPercentage > 100) {
+            log.error(ErrorMessages.INVALID_PERCENTAGE_VALUE);
+            throw new IllegalArgumentException();
+        }
+
+        this.error = error;
+        this.severity = severity;
+        this.occurrenceThreshold = occurrenceThreshold;
+        this.lowPenaltyPercentage = lowPenaltyPercentage;
+        this.highPenaltyPercentage = highPenaltyPercentage;
+        this.isCountedPerTask = isCountedPerTask;
+    }
+
+    /**
+     * Returns the error this policy applies to, or null if it applies to a severity.
+     */
+    public Error getError() {
+        return this.error;
+    }
+
+    /**
+     * Returns the severity this policy applies to, or null if it applies to an error.
+     */
+    public ErrorSeverity getSeverity() {
+        return this.severity;
+    }
+
+    public int getOccurrenceThreshold() {
+        return this.occurrenceThreshold;
+    }
+
+    public int getLowPenaltyPercentage() {
+        return this.lowPenaltyPercentage;
+    }
+
+    public int getHighPenaltyPercentage() {
+        return this.highPenaltyPercentage;
+    }
+
+    public boolean isCountedPerTask() {
+        return this.isCountedPerTask;
+    }
+
+    /**
+     * Returns penalty of one occurrence, given the number of occurrences.
+     */
+    public int getPenaltyPercentage(int occurrenceCount) {
+        return occurrenceCount <= this.occurrenceThreshold ? this.lowPenaltyPercentage : this.highPenaltyPercentage;
+    }
+
+    /**
+     * Returns true if both policies apply to the same error or severity.
+     */
+    boolean hasSameTarget(PenaltyPolicy policy) {
+        return this.error != null ? this.error.equals(policy.error) : this.severity == policy.severity;
+    }
+
+    public String toString() {
+        return (this.error != null ? this.error.getName() : this.severity.toString()) + ": "
+                + this.lowPenaltyPercentage + "% up to " + this.occurrenceThreshold + " occurrences, "
+                + this.highPenaltyPercentage + "% after" + (this.isCountedPerTask ? " (per task)" : "");
+    }
+}
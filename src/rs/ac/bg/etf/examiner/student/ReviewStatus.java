@@ -5,5 +5,21 @@ package rs.ac.bg.etf.examiner.student;
  *
  */
 public enum ReviewStatus {
-    NOT_STARTED, IN_PROGRESS, FINISHED
+    NOT_STARTED, IN_PROGRESS, FINISHED;
+
+    /**
+     * Returns status of a whole made of <tt>total</tt> parts, given number of
+     * parts per status, indexed by ordinal. Review of a whole has not started
+     * until it has started for some part, and is finished when it is finished
+     * for all parts.
+     */
+    static ReviewStatus of(int[] counts, int total) {
+        if (counts[NOT_STARTED.ordinal()] == total) {
+            return NOT_STARTED;
+        } else if (counts[FINISHED.ordinal()] == total) {
+            return FINISHED;
+        } else {
+            return IN_PROGRESS;
+        }
+    }
 }
@@ -0,0 +1,112 @@
+package rs.ac.bg.etf.examiner.student;
+
+import rs.ac.bg.etf.examiner.errors.*;
+
+import java.util.*;
+
+import org.apache.logging.log4j.*;
+
+/**
+ * Descriptive statistics of scores students achieved on an assignment, a task
+ * or an item. Scores are absolute, and <tt>value</tt> is the maximal score.
+ *
+ * @author Marko Milojevic
+ *
+ */
+public class ScoreStatistics {
+
+    private static final Logger log = LogManager.getLogger(ScoreStatistics.class.getName());
+    private final int value;
+    private final int[] sortedScores;
+    private final double mean;
+    private final double standardDeviation;
+
+    ScoreStatistics(int[] scores, int value) {
+        this.value = value;
+        this.sortedScores = scores.clone();
+        Arrays.sort(this.sortedScores);
+        long sum = 0;
+        for (int score : this.sortedScores) {
+            sum += score;
+        }
+
+        int count = this.sortedScores.length;
+        this.mean = count > 0 ? (double) sum / count : 0;
+        double squares = 0;
+        for (int score : this.sortedScores) {
+            squares += (score - this.mean) * (score - this.mean);
+        }
+
+        this.standardDeviation = count > 0 ? Math.sqrt(squares / count) : 0;
+    }
+
+    public int getValue() {
+        return this.value;
+    }
+
+    public int getCount() {
+        return this.sortedScores.length;
+    }
+
+    public double getMean() {
+        return this.mean;
+    }
+
+    public double getStandardDeviation() {
+        return this.standardDeviation;
+    }
+
+    public int getMin() {
+        return this.sortedScores.length > 0 ? this.sortedScores[0] : 0;
+    }
+
+    public int getMax() {
+        return this.sortedScores.length > 0 ? this.sortedScores[this.sortedScores.length - 1] : 0;
+    }
+
+    public double getMedian() {
+        return getPercentile(50);
+    }
+
+    /**
+     * Returns score below which given percentage of scores falls, interpolating
+     * linearly between two closest ranks.
+     */
+    public double getPercentile(double percentage) {
+        if (percentage < 0 || percentage > 100) {
+            log.error(ErrorMessages.INVALID_PERCENTAGE_VALUE);
+            throw new IllegalArgumentException();
+        } else if (this.sortedScores.length == 0) {
+            return 0;
+        }
+
+        double rank = percentage / 100 * (this.sortedScores.length - 1);
+        int lower = (int) Math.floor(rank);
+        int upper = (int) Math.ceil(rank);
+        return this.sortedScores[lower] + (rank - lower) * (this.sortedScores[upper] - this.sortedScores[lower]);
+    }
+
+    /**
+     * Returns number of scores in each of <tt>binCount</tt> equally wide bins
+     * covering scores from 0 to value. The last bin includes the value itself.
+     */
+    public int[] getHistogram(int binCount) {
+        if (binCount <= 0) {
+            log.error(ErrorMessages.NON_POSITIVE_VALUE);
+            throw new IllegalArgumentException(ErrorMessages.NON_POSITIVE_VALUE);
+        }
+
+        int[] histogram = new int[binCount];
+        for (int score : this.sortedScores) {
+            int bin = this.value > 0 ? (int) ((long) score * binCount / this.value) : 0;
+            histogram[Math.max(0, Math.min(binCount - 1, bin))]++;
+        }
+
+        return histogram;
+    }
+
+    public String toString() {
+        return String.format(Locale.ROOT, "n=%d mean=%.2f median=%.2f sd=%.2f min=%d max=%d of %d",
+                getCount(), this.mean, getMedian(), this.standardDeviation, getMin(), getMax(), this.value);
+    }
+}
@@ -0,0 +1,156 @@
+package rs.ac.bg.etf.examiner.student;
+
+import rs.ac.bg.etf.examiner.errors.*;
+import rs.ac.bg.etf.examiner.labexercise.*;
+
+import java.util.*;
+
+import org.apache.logging.log4j.*;
+
+/**
+ * Grades computed by <tt>GradeSimulator</tt>, next to current grades of the
+ * same students. Scores are kept in primitive arrays, one per task and one
+ * for the whole assignment, in order of students of the cohort.
+ *
+ * @author Marko Milojevic
+ *
+ */
+public class SimulatedGrades {
+
+    private static final Logger log = LogManager.getLogger(SimulatedGrades.class.getName());
+    private List<StudentAssignment> studentAssignments;
+    private String[] taskNames;
+    private int[] currentScores;
+    private int[] simulatedScores;
+    private int[][] currentTaskScores;
+    private int[][] simulatedTaskScores;
+
+    SimulatedGrades(Assignment assignment, List<StudentAssignment> studentAssignments) {
+        List<Task> tasks = assignment.getTasks();
+        this.studentAssignments = studentAssignments;
+        this.taskNames = new String[tasks.size()];
+        for (int t = 0; t < tasks.size(); t++) {
+            this.taskNames[t] = tasks.get(t).getName();
+        }
+
+        int studentCount = studentAssignments.size();
+        this.currentScores = new int[studentCount];
+        this.simulatedScores = new int[studentCount];
+        this.currentTaskScores = new int[this.taskNames.length][studentCount];
+        this.simulatedTaskScores = new int[this.taskNames.length][studentCount];
+    }
+
+    public int getStudentCount() {
+        return this.studentAssignments.size();
+    }
+
+    public StudentAssignment getStudentAssignment(int index) {
+        return this.studentAssignments.get(index);
+    }
+
+    public int getCurrentScore(int index) {
+        return this.currentScores[index];
+    }
+
+    public int getSimulatedScore(int index) {
+        return this.simulatedScores[index];
+    }
+
+    public int getCurrentTaskScore(int index, String taskName) {
+        return this.currentTaskScores[getTaskIndex(taskName)][index];
+    }
+
+    public int getSimulatedTaskScore(int index, String taskName) {
+        return this.simulatedTaskScores[getTaskIndex(taskName)][index];
+    }
+
+    /**
+     * Returns indices of students whose simulated score of the assignment or
+     * of any task differs from the current one.
+     */
+    public int[] getChangedStudents() {
+        int[] changed = new int[this.currentScores.length];
+        int count = 0;
+        for (int s = 0; s < this.currentScores.length; s++) {
+            if (isChanged(s)) {
+                changed[count++] = s;
+            }
+        }
+
+        return Arrays.copyOf(changed, count);
+    }
+
+    public boolean isChanged(int index) {
+        if (this.currentScores[index] != this.simulatedScores[index]) {
+            return true;
+        }
+
+        for (int t = 0; t < this.taskNames.length; t++) {
+            if (this.currentTaskScores[t][index] != this.simulatedTaskScores[t][index]) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns mean of differences between simulated and current scores.
+     */
+    public double getMeanDifference() {
+        if (this.currentScores.length == 0) {
+            return 0;
+        }
+
+        long difference = 0;
+        for (int s = 0; s < this.currentScores.length; s++) {
+            difference += this.simulatedScores[s] - this.currentScores[s];
+        }
+
+        return (double) difference / this.currentScores.length;
+    }
+
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        String newline = System.lineSeparator();
+        for (int s : getChangedStudents()) {
+            result.append(this.studentAssignments.get(s).getId()).append(": ").append(this.currentScores[s])
+                    .append(" -> ").append(this.simulatedScores[s]);
+            for (int t = 0; t < this.taskNames.length; t++) {
+                if (this.currentTaskScores[t][s] != this.simulatedTaskScores[t][s]) {
+                    result.append(", ").append(this.taskNames[t]).append(' ').append(this.currentTaskScores[t][s])
+                            .append(" -> ").append(this.simulatedTaskScores[t][s]);
+                }
+            }
+
+            result.append(newline);
+        }
+
+        return result.toString();
+    }
+
+    String[] getTaskNames() {
+        return this.taskNames;
+    }
+
+    void setScores(int index, int currentScore, int simulatedScore) {
+        this.currentScores[index] = currentScore;
+        this.simulatedScores[index] = simulatedScore;
+    }
+
+    void setTaskScores(int index, int t, int currentScore, int simulatedScore) {
+        this.currentTaskScores[t][index] = currentScore;
+        this.simulatedTaskScores[t][index] = simulatedScore;
+    }
+
+    private int getTaskIndex(String taskName) {
+        for (int t = 0; t < this.taskNames.length; t++) {
+            if (this.taskNames[t].equals(taskName)) {
+                return t;
+            }
+        }
+
+        log.error(ErrorMessages.INVALID_ITEM_PATH + " " + taskName);
+        throw new IllegalArgumentException(ErrorMessages.INVALID_ITEM_PATH);
+    }
+}
@@ -3,10 +3,29 @@ package rs.ac.bg.etf.examiner.student;
 import rs.ac.bg.etf.examiner.errors.*;
 
 import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
 
 import org.apache.logging.log4j.*;
 
 /**
+ * Represents a source code file of a <tt>StudentTask</tt>. The file is
+ * identified by a URI, so a file inside a submission archive can be found
+ * again after the archive is closed or in another session. Content is loaded
+ * on first access together with an index of line start offsets, and both are
+ * kept as one snapshot until {@link #invalidateContent()} is called, so a row
+ * is always read from the same content its offsets were found in. Files
+ * smaller than <tt>MAPPING_THRESHOLD</tt> are read into memory; larger files
+ * on the default file system are memory-mapped, and stay locked on Windows
+ * until their content is garbage collected. Every loaded snapshot gets a new
+ * content version, which anything derived from the content can be checked
+ * against.
+ *
  * @author Marko Milojevic
  *
  */
@@ -14,15 +33,28 @@ public class SourceCodeFile implements Serializable {
 	
     private static final long serialVersionUID = 1L;
     private static final Logger log = LogManager.getLogger(SourceCodeFile.class.getName());
-    private File file;
+    public static final Charset DEFAULT_CHARSET = StandardCharsets.UTF_8;
+    public static final long MAPPING_THRESHOLD = 1 << 20;
+    private static final AtomicLong contentVersions = new AtomicLong();
+    private URI uri;
+    private transient Path path;
+    private transient Content content;
     private StudentTask parent;
 
     SourceCodeFile(File file) {
     	setFile(file);
     }
 
+    SourceCodeFile(Path path) {
+    	setPath(path);
+    }
+
+    /**
+     * Returns this file as a <tt>File</tt>, or null if it is stored inside an archive.
+     */
     public File getFile() {
-	    return this.file;
+    	Path path = getPath();
+    	return path.getFileSystem() == FileSystems.getDefault() ? path.toFile() : null;
 	}
 
 	public void setFile(File file) {
@@ -31,19 +63,145 @@ public class SourceCodeFile implements Serializable {
 	        throw new IllegalArgumentException();
 	    }
 	    
-	    this.file = file;
+	    setPath(file.toPath());
+	}
+
+	public Path getPath() {
+		if (this.path == null) {
+			try {
+				this.path = SubmissionArchives.toPath(this.uri);
+			} catch (IOException e) {
+				log.error(ErrorMessages.FILE_DOES_NOT_EXIST + " " + this.uri, e);
+				throw new IllegalStateException(ErrorMessages.FILE_DOES_NOT_EXIST, e);
+			}
+		}
+		
+		return this.path;
+	}
+
+	/**
+	 * Forgets the path of the file, so it is resolved from its URI again. Used
+	 * when the archive containing the file is closed. Loaded content is kept.
+	 */
+	void releasePath() {
+		this.path = null;
+	}
+
+	public void setPath(Path path) {
+		if (path == null) {
+			log.error(ErrorMessages.NULL_ARGUMENT);
+			throw new IllegalArgumentException();
+		}
+		
+		this.path = path;
+		this.uri = SubmissionArchives.toUri(path);
+		invalidateContent();
+	}
+
+	public URI getUri() {
+		return this.uri;
 	}
 
 	public String getName() {
-        return this.file.getName();
+        return getPath().getFileName().toString();
     }
     
     public String getNameWithoutExtension() {
-    	String fileName = this.file.getName();
+    	String fileName = getName();
         int lastPeriodPos = fileName.lastIndexOf('.');
         return lastPeriodPos > 0 ? fileName.substring(0, lastPeriodPos) : fileName;
     }
 
+    /**
+     * Returns read-only content of this file, loading it on first access.
+     */
+    public ByteBuffer getContent() {
+    	return loadContent().buffer.duplicate();
+    }
+
+    /**
+     * Discards loaded content and line index, so they are reloaded on next
+     * access. Must be called when the file changes on disk.
+     */
+    public synchronized void invalidateContent() {
+    	this.content = null;
+    }
+
+    /**
+     * Returns version of loaded content. Version changes every time content is
+     * reloaded, so it can be used to validate anything derived from the content.
+     */
+    public long getContentVersion() {
+    	return loadContent().version;
+    }
+
+    public int getLineCount() {
+    	return loadContent().lineCount;
+    }
+
+    public int getRowStartOffset(int row) {
+    	return loadContent().getRowStartOffset(row);
+    }
+
+    /**
+     * Returns the offset just after the last character of given row, not
+     * counting the line terminator.
+     */
+    public int getRowEndOffset(int row) {
+    	return loadContent().getRowEndOffset(row);
+    }
+
+    /**
+     * Returns rows from <tt>startRow</tt> to <tt>endRow</tt>, inclusive, as a
+     * read-only view of this file's content, without copying.
+     */
+    public ByteBuffer getRows(int startRow, int endRow) {
+    	if (startRow > endRow) {
+    		log.error(ErrorMessages.INVALID_ROW);
+    		throw new IllegalArgumentException(ErrorMessages.INVALID_ROW);
+    	}
+    	
+    	Content content = loadContent();
+    	int start = content.getRowStartOffset(startRow);
+    	int end = content.getRowEndOffset(endRow);
+    	ByteBuffer rows = content.buffer.duplicate();
+    	rows.limit(end);
+    	rows.position(start);
+    	return rows.slice();
+    }
+
+    public String getRowsAsString(int startRow, int endRow) {
+    	return getRowsAsString(startRow, endRow, DEFAULT_CHARSET);
+    }
+
+    public String getRowsAsString(int startRow, int endRow, Charset charset) {
+    	return charset.decode(getRows(startRow, endRow)).toString();
+    }
+
+    private synchronized Content loadContent() {
+    	if (this.content != null) {
+    		return this.content;
+    	}
+    	
+    	Path path = getPath();
+    	ByteBuffer buffer;
+    	try {
+    		if (path.getFileSystem() == FileSystems.getDefault() && Files.size(path) >= MAPPING_THRESHOLD) {
+    			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+    				buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    			}
+    		} else {
+    			buffer = ByteBuffer.wrap(Files.readAllBytes(path)).asReadOnlyBuffer();
+    		}
+    	} catch (IOException e) {
+    		log.error(ErrorMessages.FILE_DOES_NOT_EXIST + " " + path, e);
+    		throw new IllegalStateException(ErrorMessages.FILE_DOES_NOT_EXIST, e);
+    	}
+    	
+    	this.content = new Content(buffer, contentVersions.incrementAndGet());
+    	return this.content;
+    }
+
     public StudentTask getParent() {
         return this.parent;
     }
@@ -68,6 +226,89 @@ public class SourceCodeFile implements Serializable {
 		return this.parent.removeSourceCodeFile(this);
 	}
 
+    /**
+     * Reads the file, creating its URI from the <tt>File</tt> it was written
+     * with before files inside archives were supported.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    	ObjectInputStream.GetField fields = in.readFields();
+    	this.uri = (URI) fields.get("uri", null);
+    	if (this.uri == null) {
+    		File file = (File) fields.get("file", null);
+    		if (file == null) {
+    			log.error(ErrorMessages.NULL_ARGUMENT);
+    			throw new InvalidObjectException(ErrorMessages.NULL_ARGUMENT);
+    		}
+    		
+    		this.uri = SubmissionArchives.toUri(file.toPath());
+    	}
+    	
+    	this.parent = (StudentTask) fields.get("parent", null);
+    }
+
+    /**
+     * Loaded content of the file together with its line index. Never changed
+     * after it is created.
+     */
+    private static class Content {
+
+    	private final ByteBuffer buffer;
+    	private final int[] lineStartOffsets;
+    	private final int lineCount;
+    	private final long version;
+
+    	Content(ByteBuffer buffer, long version) {
+    		int[] offsets = new int[Math.max(16, buffer.limit() / 32)];
+    		int count = 0;
+    		offsets[count++] = 0;
+    		int limit = buffer.limit();
+    		for (int i = 0; i < limit; i++) {
+    			byte b = buffer.get(i);
+    			if (b == '\n' || (b == '\r' && (i + 1 == limit || buffer.get(i + 1) != '\n'))) {
+    				if (i + 1 == limit) {
+    					break;
+    				} else if (count == offsets.length) {
+    					offsets = Arrays.copyOf(offsets, count * 2);
+    				}
+    				
+    				offsets[count++] = i + 1;
+    			}
+    		}
+    		
+    		this.buffer = buffer;
+    		this.lineStartOffsets = offsets;
+    		this.lineCount = count;
+    		this.version = version;
+    	}
+
+    	int getRowStartOffset(int row) {
+    		checkRow(row);
+    		return this.lineStartOffsets[row];
+    	}
+
+    	int getRowEndOffset(int row) {
+    		checkRow(row);
+    		int start = this.lineStartOffsets[row];
+    		int end = row + 1 < this.lineCount ? this.lineStartOffsets[row + 1] : this.buffer.limit();
+    		if (end > start && this.buffer.get(end - 1) == '\n') {
+    			end--;
+    		}
+    		
+    		if (end > start && this.buffer.get(end - 1) == '\r') {
+    			end--;
+    		}
+    		
+    		return end;
+    	}
+
+    	private void checkRow(int row) {
+    		if (row < 0 || row >= this.lineCount) {
+    			log.error(ErrorMessages.INVALID_ROW);
+    			throw new IndexOutOfBoundsException(ErrorMessages.INVALID_ROW);
+    		}
+    	}
+    }
+
     public boolean equals(Object obj) {
         if (obj == null) {
             return false;
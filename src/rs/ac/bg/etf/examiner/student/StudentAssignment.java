@@ -2,18 +2,23 @@ package rs.ac.bg.etf.examiner.student;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Iterator;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.Stack;
+import java.util.Map;
+import java.util.Set;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import rs.ac.bg.etf.examiner.errors.*;
 import rs.ac.bg.etf.examiner.labexercise.*;
+import rs.ac.bg.etf.examiner.student.matching.*;
 
 /**
  * @author Marko Milojevic
@@ -24,9 +29,17 @@ public class StudentAssignment implements Serializable {
     private static final long serialVersionUID = 1L;
     private static final Logger log = LogManager.getLogger(StudentAssignment.class.getName());
     private File directory;
+    private transient Path root;
+    private SubmissionScanRules scanRules;
     private List<StudentTask> studentTasks;
     private List<Remark> remarks;
     private List<SourceCodeFile> unmatchedSourceCodeFiles;
+    private transient SourceCodeFileMatcher matcher;
+    private transient boolean isScoreValid;
+    private transient int absoluteScore;
+    private transient int[] studentTaskCounts;
+    private transient CohortProgress progress;
+    private transient ErrorOccurrences errorOccurrences;
 
     {
     	studentTasks = new ArrayList<StudentTask>();
@@ -34,22 +47,57 @@ public class StudentAssignment implements Serializable {
     	unmatchedSourceCodeFiles = new ArrayList<SourceCodeFile>();
     }
     
-    StudentAssignment(String directoryPath) throws FileNotFoundException {
-    	if (directoryPath == null) {
+    StudentAssignment(String directoryPath) throws IOException {
+    	this(directoryPath, new SubmissionScanner());
+    }
+
+    StudentAssignment(String directoryPath, SubmissionScanner scanner) throws IOException {
+    	if (directoryPath == null || scanner == null) {
     		log.error(ErrorMessages.NULL_ARGUMENT);
     		throw new IllegalArgumentException();
     	}
     	
     	File directory = new File(directoryPath);
-    	initializeStudentAssignment(directory);
+    	initializeStudentAssignment(directory, scanner.scan(directory.toPath()), new SourceCodeFileMatcher());
+    }
+
+    StudentAssignment(File directory) throws IOException {
+        this(directory, new SubmissionScanner());
+    }
+
+    StudentAssignment(File directory, SubmissionScanner scanner) throws IOException {
+        this(directory, scanner, new SourceCodeFileMatcher());
+    }
+
+    StudentAssignment(File directory, SubmissionScanner scanner, SourceCodeFileMatcher matcher) throws IOException {
+        if (directory == null || scanner == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        }
+        
+        initializeStudentAssignment(directory, scanner.scan(directory.toPath()), matcher);
+    }
+
+    StudentAssignment(File directory, List<Path> sourceCodeFilePaths, SourceCodeFileMatcher matcher)
+    		throws FileNotFoundException {
+        initializeStudentAssignment(directory, sourceCodeFilePaths, matcher);
     }
 
-    StudentAssignment(File directory) throws FileNotFoundException {
-        initializeStudentAssignment(directory);
+    /**
+     * Creates student's assignment from an archive, or from a directory whose
+     * contents are available under a different root. Given rules are the ones
+     * the archive was opened with, and are used whenever it is opened again.
+     */
+    StudentAssignment(File directory, Path root, SubmissionScanRules scanRules, List<Path> sourceCodeFilePaths,
+    		SourceCodeFileMatcher matcher) throws FileNotFoundException {
+    	this.root = root;
+    	this.scanRules = scanRules;
+        initializeStudentAssignment(directory, sourceCodeFilePaths, matcher);
     }
 
-    private void initializeStudentAssignment(File directory) throws FileNotFoundException {
-	    if (directory == null) {
+    private void initializeStudentAssignment(File directory, List<Path> sourceCodeFilePaths,
+    		SourceCodeFileMatcher matcher) throws FileNotFoundException {
+	    if (directory == null || sourceCodeFilePaths == null || matcher == null) {
 	        log.error(ErrorMessages.NULL_ARGUMENT);
 	        throw new IllegalArgumentException();
 	    } else if (!directory.exists()) {
@@ -58,12 +106,17 @@ public class StudentAssignment implements Serializable {
 	    }
 	
 	    this.directory = directory;
+	    this.matcher = matcher;
 	    Assignment assignment = getAssignment(directory);
 	    if (assignment == null) {
 	    	log.error(ErrorMessages.INVALID_ASSIGNMENT_DIRECTORY);
 	    	throw new IllegalArgumentException();
 	    }
 	    
+	    for (Path path : sourceCodeFilePaths) {
+	        this.unmatchedSourceCodeFiles.add(new SourceCodeFile(path));
+	    }
+	    
 	    initializeStudentTasks(assignment);
 	}
 
@@ -80,55 +133,99 @@ public class StudentAssignment implements Serializable {
 	}
 
 	private void initializeStudentTasks(Assignment assignment) {
-		this.unmatchedSourceCodeFiles = loadSourceCodeFiles(this.directory);	    
 	    for (Task task : assignment.getTasks()) {
-	        StudentTask studentTask = new StudentTask(task, this);	
-	        Iterator<SourceCodeFile> it = this.unmatchedSourceCodeFiles.iterator();
-		    while (it.hasNext()) {
-		    	SourceCodeFile sourceCodeFile = it.next();
-		    	if (sourceCodeFile.getNameWithoutExtension().equals(task.getName())) {
-	                studentTask.addSourceCodeFile(sourceCodeFile);
-	            }
-		    	
-		    	it.remove();
-	    	}
-	
-	        this.studentTasks.add(studentTask);
+	        this.studentTasks.add(new StudentTask(task, this));
 	    }
-	}
-
-	private List<SourceCodeFile> loadSourceCodeFiles(File directory) {	
-		List<SourceCodeFile> sourceCodeFiles = new ArrayList<SourceCodeFile>();
-	    Stack<File> stack = new Stack<>();
-	    stack.push(directory);	
-	    while (stack.size() > 0) {
-	        File file = stack.pop();
-	        for (File f : file.listFiles()) {
-	            String fileName = f.getName();	
-	            if (f.isDirectory()) {
-	                stack.push(f);
-	            } else if (isSourceCodeFile(fileName) && !fileName.contains("(Pregledano)")) {
-	                sourceCodeFiles.add(new SourceCodeFile(f));
-	            }
+	
+	    List<SourceCodeFile> sourceCodeFiles = new ArrayList<SourceCodeFile>(this.unmatchedSourceCodeFiles);
+	    Map<SourceCodeFile, StudentTask> matches = this.matcher.match(this, sourceCodeFiles);
+	    for (SourceCodeFile sourceCodeFile : sourceCodeFiles) {
+	        StudentTask studentTask = matches.get(sourceCodeFile);
+	        if (studentTask != null) {
+	            studentTask.addSourceCodeFile(sourceCodeFile);
 	        }
 	    }
-	    
-	    return sourceCodeFiles;
-	}
-
-	private boolean isSourceCodeFile(String fileName) {
-		return fileName.endsWith(".java")|| fileName.endsWith(".cpp") ||
-				fileName.endsWith(".h") || fileName.endsWith(".c");
 	}
 
 	public String getId() {
-        return this.directory.getName();
+        return SubmissionArchives.getBaseName(this.directory);
+    }
+
+    /**
+     * Returns the <tt>Assignment</tt> of current <tt>LabExercise</tt> this is
+     * an implementation of.
+     */
+    public Assignment getAssignment() {
+    	return getAssignment(this.directory);
     }
 
+    /**
+     * Returns student's directory, or student's archive if assignment was
+     * loaded from an archive.
+     */
     public File getDirectory() {
         return this.directory;
     }
 
+    /**
+     * Returns the directory whose contents are student's submission. For an
+     * archive, it is the root directory of the archive's contents.
+     */
+    public Path getRoot() {
+    	if (this.root == null) {
+    		try {
+    			this.root = SubmissionArchives.isArchive(this.directory) ?
+    					SubmissionArchives.open(this.directory, getScanRules()) : this.directory.toPath();
+    		} catch (IOException e) {
+    			log.error(ErrorMessages.FILE_DOES_NOT_EXIST + " " + this.directory.getPath(), e);
+    			throw new IllegalStateException(ErrorMessages.FILE_DOES_NOT_EXIST, e);
+    		}
+    	}
+    	
+    	return this.root;
+    }
+
+    /**
+     * Returns rules student's submission was scanned with, or default rules if
+     * they are not known.
+     */
+    public SubmissionScanRules getScanRules() {
+    	return this.scanRules != null ? this.scanRules : new SubmissionScanRules();
+    }
+
+    public boolean isArchive() {
+    	return SubmissionArchives.isArchive(this.directory);
+    }
+
+    /**
+     * Closes student's archive, if assignment was loaded from one. Source code
+     * files of the assignment are not lost, the archive is opened again when
+     * their paths or contents are needed.
+     */
+    void releaseRoot() throws IOException {
+    	if (!isArchive()) {
+    		return;
+    	}
+    	
+    	this.root = null;
+    	for (SourceCodeFile sourceCodeFile : getSourceCodeFiles()) {
+    		sourceCodeFile.releasePath();
+    	}
+    	
+    	for (SourceCodeFile sourceCodeFile : this.unmatchedSourceCodeFiles) {
+    		sourceCodeFile.releasePath();
+    	}
+    	
+    	SubmissionArchives.close(this.directory);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    	in.defaultReadObject();
+    	if (this.scanRules != null && isArchive()) {
+    		SubmissionArchives.setRules(this.directory, this.scanRules);
+    	}
+    }
+
     public List<StudentTask> getStudentTasks() {
 	    return Collections.unmodifiableList(this.studentTasks);
 	}
@@ -178,7 +275,17 @@ public class StudentAssignment implements Serializable {
         	return false;
         }
 
-        return this.remarks.add(remark);
+        boolean opResult = this.remarks.add(remark);
+        if (opResult && remark.getStudentTask() != null) {
+        	remark.getStudentTask().invalidatePenaltyPercentage();
+        }
+
+        ErrorOccurrences errorOccurrences = this.errorOccurrences;
+        if (opResult && errorOccurrences != null) {
+        	errorOccurrences.add(this, remark);
+        }
+
+        return opResult;
     }
 
     public boolean removeRemark(Remark remark) {
@@ -186,7 +293,17 @@ public class StudentAssignment implements Serializable {
             return false;
         }
 
-        return this.remarks.remove(remark);
+        boolean opResult = this.remarks.remove(remark);
+        if (opResult && remark.getStudentTask() != null) {
+        	remark.getStudentTask().invalidatePenaltyPercentage();
+        }
+
+        ErrorOccurrences errorOccurrences = this.errorOccurrences;
+        if (opResult && errorOccurrences != null) {
+        	errorOccurrences.remove(remark);
+        }
+
+        return opResult;
     }
 
     public boolean containsRemark(Remark note) {
@@ -231,282 +348,276 @@ public class StudentAssignment implements Serializable {
 		return this.unmatchedSourceCodeFiles.remove(sourceCodeFile);
 	}
 
-	public int getScoreAsAbsolute() {
-        int score = 0;
-        for (StudentTask studentTask : studentTasks) {
-            score += studentTask.getScoreAsAbsolute();
-        }
-
-        return score;
-    }
-
-    public ReviewStatus getReviewStatus() {
-	    if (notStarted()) {
-	        return ReviewStatus.NOT_STARTED;
-	    } else if (isReviewFinished()) {
-	        return ReviewStatus.FINISHED;
-	    } else {
-	        return ReviewStatus.IN_PROGRESS;
-	    }
+	public List<SourceCodeFile> getSourceCodeFiles() {
+		List<SourceCodeFile> sourceCodeFiles = new ArrayList<SourceCodeFile>();
+		for (StudentTask studentTask : this.studentTasks) {
+			sourceCodeFiles.addAll(studentTask.getSourceCodeFiles());
+		}
+		
+		sourceCodeFiles.addAll(this.unmatchedSourceCodeFiles);
+		return sourceCodeFiles;
 	}
-
-    private boolean notStarted() {
-        for (StudentTask studentTask : this.studentTasks) {
-            if (studentTask.getReviewStatus() != ReviewStatus.NOT_STARTED) {
-                return false;
-            }
-        }
-        
-        return true;
-    }
-    
-    private boolean isReviewFinished() {
-        for (StudentTask studentTask : this.studentTasks) {
-            if (studentTask.getReviewStatus() != ReviewStatus.FINISHED) {
-                return false;
-            }
-        }
-        
-        return true;
-    }
-    
-	public boolean equals(Object obj) {
-        if (obj == null) {
-            return false;
-        } else if (obj == this) {
-            return true;
-        } else if (!(obj instanceof StudentAssignment)) {
-            return false;
-        }
-
-        StudentAssignment studentAssignment = (StudentAssignment) obj;
-        return getId().equals(studentAssignment.getId());
-    }
-}
-    /*public void generateReview() throws FileNotFoundException, IOException {
-	    String reviewDirName = "Izvestaj";
-	    File reviewDir = new File(directory.getPath() + "/" + reviewDirName);
 	
-	    if (!reviewDir.exists()) {
-	        reviewDir.mkdirs();
-	    }
+	public SourceCodeFile getSourceCodeFileByPath(Path path) {
+		if (path == null) {
+			return null;
+		}
+		
+		for (StudentTask studentTask : this.studentTasks) {
+			for (SourceCodeFile sourceCodeFile : studentTask.getSourceCodeFiles()) {
+				if (sourceCodeFile.getPath().equals(path)) {
+					return sourceCodeFile;
+				}
+			}
+		}
+		
+		for (SourceCodeFile sourceCodeFile : this.unmatchedSourceCodeFiles) {
+			if (sourceCodeFile.getPath().equals(path)) {
+				return sourceCodeFile;
+			}
+		}
+		
+		return null;
+	}
 	
-	    for (StudentTask studentTask : studentTasks) {
-	        for (SourceCodeFile taskFile : studentTask.getSourceCodeFiles()) {
-	            generateReviewTaskFile(reviewDir, studentTask,
-	                    taskFile.getFile());
-	        }
-	    }
+	boolean addSourceCodeFile(SourceCodeFile sourceCodeFile) {
+		if (sourceCodeFile == null) {
+			return false;
+		}
+		
+		if (this.matcher == null) {
+			this.matcher = new SourceCodeFileMatcher();
+		}
+		
+		StudentTask studentTask = this.matcher.match(this, Collections.singletonList(sourceCodeFile)).get(sourceCodeFile);
+		if (studentTask != null) {
+			return studentTask.addSourceCodeFile(sourceCodeFile);
+		}
+		
+		return addUnmatachedSourceCodeFile(sourceCodeFile);
+	}
 	
-	    String reviewFilePath = reviewDir.getPath() + "/Izvestaj.txt";
-	    try (Writer reviewFile = new BufferedWriter(new OutputStreamWriter(
-	            new FileOutputStream(reviewFilePath)))) {
-	        String report = getReport();
-	        reviewFile.write(report);
-	    }
+	boolean removeSourceCodeFile(SourceCodeFile sourceCodeFile) {
+		if (sourceCodeFile == null) {
+			return false;
+		}
+		
+		StudentTask studentTask = sourceCodeFile.getParent();
+		if (studentTask != null) {
+			studentTask.removeSourceCodeFile(sourceCodeFile);
+		}
+		
+		return removeUnmatachedSourceCodeFile(sourceCodeFile);
 	}
 
-	Map<Error, Integer> getAllErrorsWithCount() {
-        Map<Error, Integer> errors = new HashMap<Error, Integer>();
-        for (Remark note : remarks) {
-            Error error = note.getError();
-            if (error != null) {
-                if (!errors.containsKey(error)) {
-                    errors.put(error, 1);
-                } else {
-                    errors.put(error, errors.get(error) + 1);
-                }
-            }
-        }
+	public int getScoreAsAbsolute() {
+		if (!this.isScoreValid) {
+			int score = 0;
+			for (StudentTask studentTask : studentTasks) {
+				score += studentTask.getScoreAsAbsolute();
+			}
+			
+			this.absoluteScore = score;
+			this.isScoreValid = true;
+		}
 
-        return errors;
+        return this.absoluteScore;
     }
 
-    Set<Error> getNewErrors() {
-        ErrorDatabase database = ErrorDatabase.getInstance();
-        Set<Error> newErrors = new HashSet<Error>();
+	void invalidateScore() {
+		this.isScoreValid = false;
+	}
 
-        for (Remark note : remarks) {
-            Error error = note.getError();
-            if (error != null && !database.containsError(error)) {
-                newErrors.add(error);
-            }
-        }
+    public ReviewStatus getReviewStatus() {
+	    return ReviewStatus.of(getStudentTaskCounts(), this.studentTasks.size());
+	}
 
-        return newErrors;
-    }
-
-    void evaluate(Error error, int occurrenceThreshold, int lowValue,
-            int highValue) {
-        Map<Error, Integer> map = getAllErrorsWithCount();
-        for (Remark note : remarks) {
-            Error e = note.getError();
-            if (e != null && e.equals(error)) {
-                int occurrenceCount = map.get(error);
-                if (occurrenceCount <= occurrenceThreshold) {
-                    // note.setErrorValue(lowValue);
-                } else {
-                    // note.setErrorValue(highValue);
-                }
-            }
-        }
+    /**
+     * Returns number of tasks of this assignment with given review status.
+     */
+    public int getStudentTaskCount(ReviewStatus status) {
+    	if (status == null) {
+    		return 0;
+    	}
+    	
+    	return getStudentTaskCounts()[status.ordinal()];
     }
 
-    void evaluate(ErrorSeverity severity, int occurrenceThreshold, int lowValue,
-            int highValue) {
-        Map<Error, Integer> map = getAllErrorsWithCount();
-        for (Remark note : remarks) {
-            Error error = note.getError();
-            if (error != null && error.getSeverity() == severity) {
-                int occurrenceCount = map.get(error);
-                if (occurrenceCount <= occurrenceThreshold) {
-                    // note.setErrorValue(lowValue);
-                } else {
-                    // note.setErrorValue(highValue);
-                }
-            }
-        }
+    private int[] getStudentTaskCounts() {
+    	if (this.studentTaskCounts == null) {
+    		int[] counts = new int[ReviewStatus.values().length];
+    		for (StudentTask studentTask : this.studentTasks) {
+    			counts[studentTask.getReviewStatus().ordinal()]++;
+    		}
+    		
+    		this.studentTaskCounts = counts;
+    	}
+    	
+    	return this.studentTaskCounts;
     }
 
-    void refactor(StudentAssignment student) {
-        if (student == null) {
-            log.error("student must not be null");
-        } else if (!getId().equals(student.getId())) {
-            log.error("student's ids do not match");
-            throw new IllegalArgumentException();
-        }
-
-        this.directory = student.directory;
-        this.studentTasks = student.studentTasks;
-        this.remarks = student.remarks;
-        this.unmatchedSourceCodeFiles = student.unmatchedSourceCodeFiles;
+    /**
+     * Updates counts after review status of a task changed, and passes the
+     * change of this assignment's status on to the <tt>CohortProgress</tt>.
+     */
+    void studentTaskReviewStatusChanged(ReviewStatus oldStatus, ReviewStatus newStatus) {
+    	int[] counts = this.studentTaskCounts;
+    	if (counts != null) {
+    		counts[oldStatus.ordinal()]--;
+    		counts[newStatus.ordinal()]++;
+    	} else {
+    		counts = getStudentTaskCounts();
+    	}
+    	
+    	int total = this.studentTasks.size();
+    	ReviewStatus newAssignmentStatus = ReviewStatus.of(counts, total);
+    	counts[newStatus.ordinal()]--;
+    	counts[oldStatus.ordinal()]++;
+    	ReviewStatus oldAssignmentStatus = ReviewStatus.of(counts, total);
+    	counts[oldStatus.ordinal()]--;
+    	counts[newStatus.ordinal()]++;
+    	CohortProgress progress = this.progress;
+    	if (oldAssignmentStatus != newAssignmentStatus && progress != null) {
+    		progress.update(oldAssignmentStatus, newAssignmentStatus);
+    	}
     }
 
-    void refactorErrorCategory(Error error, ErrorCategory category) {
-        if (error == null || category == null) {
-            log.error("error and category must not be null");
-            throw new NullPointerException();
-        }
-
-        for (Remark note : remarks) {
-            Error e = note.getError();
-            if (e != null && e.equals(error)) {
-            	category.addError(e);
-            }
-        }
+    /**
+     * Brings tasks of this assignment up to date with given definition, the
+     * same way <tt>StudentTask.remap</tt> does with items, except that a task
+     * is taken as renamed if it has an item in common with the task at its
+     * position in the definition. Remarks of removed
+     * tasks are removed, and their files become unmatched. Unmatched files are
+     * then matched again, but only files matched to new tasks are moved, so
+     * files of existing tasks stay as the examiner left them. Tasks must not
+     * be attached to a matrix. Returns true if anything changed.
+     */
+    boolean remap(Assignment assignment) {
+    	ReviewStatus oldStatus = getReviewStatus();
+    	List<Task> tasks = assignment.getTasks();
+    	StudentTask[] matched = new StudentTask[tasks.size()];
+    	Set<StudentTask> used = Collections.newSetFromMap(new IdentityHashMap<StudentTask, Boolean>());
+    	for (int t = 0; t < tasks.size(); t++) {
+    		matched[t] = getStudentTaskByName(tasks.get(t).getName());
+    		if (matched[t] != null) {
+    			used.add(matched[t]);
+    		}
+    	}
+    	
+    	for (int t = 0; t < tasks.size() && t < this.studentTasks.size(); t++) {
+    		StudentTask studentTask = this.studentTasks.get(t);
+    		if (matched[t] == null && !used.contains(studentTask)
+    				&& assignment.getTaskByName(studentTask.getName()) == null && studentTask.hasCommonItem(tasks.get(t))) {
+    			matched[t] = studentTask;
+    			used.add(studentTask);
+    		}
+    	}
+    	
+    	boolean isChanged = false;
+    	for (StudentTask studentTask : new ArrayList<StudentTask>(this.studentTasks)) {
+    		if (!used.contains(studentTask)) {
+    			for (Remark remark : new ArrayList<Remark>(this.remarks)) {
+    				if (remark.getStudentTask() == studentTask) {
+    					removeRemark(remark);
+    				}
+    			}
+    			
+    			for (SourceCodeFile sourceCodeFile : new ArrayList<SourceCodeFile>(studentTask.getSourceCodeFiles())) {
+    				studentTask.removeSourceCodeFile(sourceCodeFile);
+    			}
+    			
+    			isChanged = true;
+    		}
+    	}
+    	
+    	List<StudentTask> studentTasks = new ArrayList<StudentTask>(tasks.size());
+    	Set<StudentTask> newStudentTasks = Collections.newSetFromMap(new IdentityHashMap<StudentTask, Boolean>());
+    	for (int t = 0; t < tasks.size(); t++) {
+    		if (matched[t] != null) {
+    			isChanged |= matched[t].remap(tasks.get(t));
+    			isChanged |= t >= this.studentTasks.size() || this.studentTasks.get(t) != matched[t];
+    			studentTasks.add(matched[t]);
+    		} else {
+    			StudentTask studentTask = new StudentTask(tasks.get(t), this);
+    			studentTasks.add(studentTask);
+    			newStudentTasks.add(studentTask);
+    			isChanged = true;
+    		}
+    	}
+    	
+    	this.studentTasks = studentTasks;
+    	this.studentTaskCounts = null;
+    	if (!newStudentTasks.isEmpty() && !this.unmatchedSourceCodeFiles.isEmpty()) {
+    		if (this.matcher == null) {
+    			this.matcher = new SourceCodeFileMatcher();
+    		}
+    		
+    		List<SourceCodeFile> sourceCodeFiles = new ArrayList<SourceCodeFile>(this.unmatchedSourceCodeFiles);
+    		Map<SourceCodeFile, StudentTask> matches = this.matcher.match(this, sourceCodeFiles);
+    		for (SourceCodeFile sourceCodeFile : sourceCodeFiles) {
+    			StudentTask studentTask = matches.get(sourceCodeFile);
+    			if (studentTask != null && newStudentTasks.contains(studentTask)) {
+    				studentTask.addSourceCodeFile(sourceCodeFile);
+    			}
+    		}
+    	}
+    	
+    	invalidateScore();
+    	ReviewStatus newStatus = getReviewStatus();
+    	CohortProgress progress = this.progress;
+    	if (oldStatus != newStatus && progress != null) {
+    		progress.update(oldStatus, newStatus);
+    	}
+    	
+    	return isChanged;
     }
 
-    void refactorError(Error oldError, Error newError) {
-        if (oldError == null || newError == null) {
-            log.error("oldError and newError must not be null");
-            throw new NullPointerException();
-        }
-
-        
-        for (Remark note : remarks) {
-            Error e = note.getError();
-            if (e != null && e.equals(oldError)) {
-                e.refactor(newError);
-            }
-        }
-        
+    void setProgress(CohortProgress progress) {
+    	this.progress = progress;
     }
 
-    private File createReviewFile(File reviewDir, File taskFile)
-            throws FileNotFoundException, IOException {
-        if (taskFile == null) {
-            return null;
-        }
-
-        String taskFileName = taskFile.getName();
-        String taskFileNameNoExtension = Utils.removeExtension(taskFileName);
-        String taskFileExtension = Utils.getExtension(taskFileName);
-        String reviewed = " (Pregledano)";
-        String reviewFilePath = reviewDir.getPath() + "/"
-                + taskFileNameNoExtension + reviewed + taskFileExtension;
-
-        Utils.copyFile(taskFile, reviewFilePath);
-
-        File reviewFile = new File(reviewFilePath);
-        return reviewFile;
+    /**
+     * Recounts given remark of this assignment. Called by <tt>Remark</tt> when
+     * its error changes, also when it gets its first error.
+     */
+    public void remarkErrorChanged(Remark remark) {
+    	ErrorOccurrences errorOccurrences = this.errorOccurrences;
+    	if (remark != null && errorOccurrences != null && this.remarks.contains(remark)) {
+    		errorOccurrences.update(this, remark);
+    	}
     }
 
-    private void insertComments(StudentTask studentTask, File reviewFile)
-            throws IOException {
-        if (studentTask == null || reviewFile == null) {
-            return;
-        }
-
-        try (FileInputStream fis = new FileInputStream(reviewFile);
-                BufferedReader br = new BufferedReader(new InputStreamReader(
-                        fis))) {
-            int lineNumber = 0;
-            String line;
-
-            StringBuilder editedFileText = new StringBuilder();
-
-            List<Remark> studentNotes;
-
-            // Read reviewFile Line By Line
-            while ((line = br.readLine()) != null) {
-                studentNotes = getNotes(studentTask, lineNumber);
-
-                for (Remark note : studentNotes) {
-                    editedFileText.append("/*\r\n");
-                    editedFileText.append(note);
-                    editedFileText.append("\r\n/\r\n");
-                }
-
-                editedFileText.append(line);
-                editedFileText.append("\r\n");
-                lineNumber++;
-            }
-            br.close();
-
-            // Now editedFileText will have updated content , which we override
-            // into file
-            FileWriter fw = new FileWriter(reviewFile);
-            BufferedWriter bw = new BufferedWriter(fw);
-            bw.write(editedFileText.toString());
-            bw.close();
-        }
+    /**
+     * Recounts remarks of given file, which has been moved to another task or
+     * out of all tasks.
+     */
+    void sourceCodeFileMoved(SourceCodeFile sourceCodeFile) {
+    	ErrorOccurrences errorOccurrences = this.errorOccurrences;
+    	if (errorOccurrences == null) {
+    		return;
+    	}
+    	
+    	for (Remark remark : this.remarks) {
+    		if (remark instanceof FileRemark && ((FileRemark) remark).getSourceCodeFile() == sourceCodeFile) {
+    			errorOccurrences.update(this, remark);
+    		}
+    	}
     }
 
-    private void generateReviewTaskFile(File reviewDir,
-            StudentTask studentTask, File taskFile)
-            throws FileNotFoundException, IOException {
-        if (taskFile == null) {
-            return;
-        }
-
-        File reviewFile = createReviewFile(reviewDir, taskFile);
-        insertComments(studentTask, reviewFile);
+    void setErrorOccurrences(ErrorOccurrences errorOccurrences) {
+    	this.errorOccurrences = errorOccurrences;
     }
-
-    @SuppressWarnings("unused")
-	private List<Remark> getNotes(StudentTask studentTask, int lineNumber) {
-        List<Remark> resultNotes = new ArrayList<Remark>();
-
-        for (Remark note : remarks) {
-            if (note.getStudentTask().equals(studentTask)
-                    && note.getStartRow() == lineNumber) {
-                resultNotes.add(note);
-            }
+    
+	public boolean equals(Object obj) {
+        if (obj == null) {
+            return false;
+        } else if (obj == this) {
+            return true;
+        } else if (!(obj instanceof StudentAssignment)) {
+            return false;
         }
 
-        return resultNotes;
-    }
-
-    private String getReport() {
-        String report = "";
-        for (StudentTask studentTask : studentTasks) {
-            report += "*** " + studentTask.getName() + "\r\n";
-            report += studentTask.getScoreAsAbsolute() + "/" + studentTask.getValue() + "\r\n\r\n";
-        }
-        
-        report += "===============\r\n";        
-        report += "##Poena: " + getScoreAsAbsolute() + "/" + 100;
-        
-        return report;
+        StudentAssignment studentAssignment = (StudentAssignment) obj;
+        return getId().equals(studentAssignment.getId());
     }
-}*/
+}
@@ -8,6 +8,15 @@ import java.io.*;
 import org.apache.logging.log4j.*;
 
 /**
+ * Student's implementation of an <tt>Item</tt>, with its score and review
+ * status. Name, description and value are kept in an <tt>ItemDescriptor</tt>
+ * shared with implementations of other students, which is where memory per
+ * student is saved. When the item is attached to a <tt>GradeMatrix</tt>, score
+ * and status are kept in its cell of the matrix, and own fields are brought up
+ * to date only when the item is detached or serialized. Attaching does not make
+ * the item smaller: own fields stay, together with the cell's coordinates, so
+ * the matrix only makes cohort-wide scans of a column cheaper.
+ *
  * @author Marko Milojevic
  * 
  */
@@ -15,12 +24,13 @@ public class StudentItem implements Serializable {
 
     private static final long serialVersionUID = 1L;
     private static final Logger log = LogManager.getLogger(StudentItem.class.getName());
-    private String name;
-    private String description;
-    private int value;
+    private ItemDescriptor descriptor;
     private int absoluteScore;
     private ReviewStatus reviewStatus;
     private StudentTask parent;
+    private transient GradeMatrix matrix;
+    private transient int row;
+    private transient int column;
 
     {
     	absoluteScore = 0;
@@ -33,66 +43,41 @@ public class StudentItem implements Serializable {
             throw new IllegalArgumentException();
         }
         
-        setName(item.getName());
-        setDescription(item.getDescription());
-        setValue(item.getValue());
+        this.descriptor = ItemDescriptor.of(item);
         setParent(parent);
     }
 
-    public String getName() {
-        return this.name;
+    public ItemDescriptor getDescriptor() {
+        return this.descriptor;
     }
 
-    private void setName(String name) {
-        if (name == null) {
-            log.error(ErrorMessages.NULL_ARGUMENT);
-            throw new IllegalArgumentException();
-        }
-        
-        this.name = name;
+    public String getName() {
+        return this.descriptor.getName();
     }
 
     public String getDescription() {
-        return this.description;
-    }
-
-    private void setDescription(String description) {
-        if (description == null) {
-            log.error(ErrorMessages.NULL_ARGUMENT);
-            throw new IllegalArgumentException();
-        }
-        
-        this.description = description;
+        return this.descriptor.getDescription();
     }
 
     public int getValue() {
-        return this.value;
-    }
-
-    private void setValue(int value) {
-        if (value <= 0) {
-            log.error(ErrorMessages.NON_POSITIVE_VALUE);
-            throw new IllegalArgumentException(ErrorMessages.NON_POSITIVE_VALUE);
-        }
-        
-        this.value = value;
+        return this.descriptor.getValue();
     }
     
     public int getScoreAsAbsolute() {
-        return this.absoluteScore;
+        return this.matrix != null ? this.matrix.getScore(this.row, this.column) : this.absoluteScore;
     }
 
     public void setScoreAsAbsolute(int score) {
-        if (score < 0 || score > value) {
+        if (score < 0 || score > getValue()) {
             log.error(ErrorMessages.INVALID_SCORE_VALUE);
             throw new IllegalArgumentException();
         }
 
-        this.absoluteScore = score;
+        storeScore(score);
     }
 
     public int getScoreAsPercentage() {
-        return (int) (this.absoluteScore / this.value * 100);
+        return (int) (getScoreAsAbsolute() / getValue() * 100);
     }
 
     public void setScoreAsPercentage(int percentage) {
@@ -101,19 +86,53 @@ public class StudentItem implements Serializable {
             throw new IllegalArgumentException();
         }
 
-        this.absoluteScore = Math.round(((float) (this.value * percentage)) / 100);
+        storeScore(Math.round(((float) (getValue() * percentage)) / 100));
+    }
+
+    /**
+     * Stores already validated score. Used by <tt>BatchGrader</tt>.
+     */
+    void storeScore(int score) {
+    	if (this.matrix != null) {
+    		this.matrix.setScore(this.row, this.column, score);
+    	} else {
+    		this.absoluteScore = score;
+    	}
+    	
+    	this.parent.invalidateScore();
     }
 
     public ReviewStatus getReviewStatus() {
-	    return this.reviewStatus;
+	    return this.matrix != null ? this.matrix.getReviewStatus(this.row, this.column) : this.reviewStatus;
 	}
 
 	public void setReviewStatus(ReviewStatus status) {
-        this.reviewStatus = status;
+		if (status == null) {
+			log.error(ErrorMessages.NULL_ARGUMENT);
+			throw new IllegalArgumentException();
+		}
+		
+		storeReviewStatus(status);
+    }
+
+    /**
+     * Stores already validated review status. Used by <tt>BatchGrader</tt>.
+     */
+    void storeReviewStatus(ReviewStatus status) {
+		ReviewStatus oldStatus = getReviewStatus();
+		if (this.matrix != null) {
+			this.matrix.setReviewStatus(this.row, this.column, status);
+		} else {
+			this.reviewStatus = status;
+		}
+		
+        if (oldStatus != status) {
+        	this.parent.studentItemReviewStatusChanged(oldStatus, status);
+        }
     }
 
     public boolean isReviewed() {
-        return this.reviewStatus == ReviewStatus.FINISHED ? true : false;
+        return getReviewStatus() == ReviewStatus.FINISHED ? true : false;
     }
     
     public StudentTask getParent() {
@@ -129,6 +148,87 @@ public class StudentItem implements Serializable {
 		this.parent = parent;
 	}
 
+	/**
+	 * Takes name, description and value of given item. Score keeps the same
+	 * percentage of the value. Item must not be attached to a matrix, whose
+	 * columns follow the old definition.
+	 */
+	boolean redefine(Item item) {
+		if (this.matrix != null) {
+			log.error(ErrorMessages.INVALID_STATE);
+			throw new IllegalStateException(ErrorMessages.INVALID_STATE);
+		}
+		
+		ItemDescriptor descriptor = ItemDescriptor.of(item);
+		if (descriptor == this.descriptor) {
+			return false;
+		}
+		
+		if (this.descriptor.getValue() != descriptor.getValue()) {
+			this.absoluteScore = Math.round((float) (this.absoluteScore * descriptor.getValue())
+					/ this.descriptor.getValue());
+		}
+		
+		this.descriptor = descriptor;
+		return true;
+	}
+
+	GradeMatrix getGradeMatrix() {
+		return this.matrix;
+	}
+
+	/**
+	 * Moves score and review status of this item into given cell of the matrix.
+	 */
+	void attach(GradeMatrix matrix, int row, int column) {
+		int score = getScoreAsAbsolute();
+		ReviewStatus status = getReviewStatus();
+		matrix.setScore(row, column, score);
+		matrix.setReviewStatus(row, column, status);
+		this.matrix = matrix;
+		this.row = row;
+		this.column = column;
+	}
+
+	/**
+	 * Takes score and review status back from the matrix.
+	 */
+	void detach() {
+		if (this.matrix == null) {
+			return;
+		}
+		
+		this.absoluteScore = getScoreAsAbsolute();
+		this.reviewStatus = getReviewStatus();
+		this.matrix = null;
+	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		if (this.matrix != null) {
+			this.absoluteScore = getScoreAsAbsolute();
+			this.reviewStatus = getReviewStatus();
+		}
+		
+		out.defaultWriteObject();
+	}
+
+	/**
+	 * Reads the item, creating its descriptor from fields of the item if it
+	 * was written before descriptors were introduced.
+	 */
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		ObjectInputStream.GetField fields = in.readFields();
+		this.descriptor = (ItemDescriptor) fields.get("descriptor", null);
+		if (this.descriptor == null) {
+			this.descriptor = ItemDescriptor.of((String) fields.get("name", null),
+					(String) fields.get("description", null), fields.get("value", 0));
+		}
+		
+		this.absoluteScore = fields.get("absoluteScore", 0);
+		this.reviewStatus = (ReviewStatus) fields.get("reviewStatus", null);
+		this.parent = (StudentTask) fields.get("parent", null);
+	}
+
 	public boolean equals(Object obj) {
 		if (obj == null) {
 	        return false;
@@ -140,6 +240,6 @@ public class StudentItem implements Serializable {
 	
 		StudentItem studentItem = (StudentItem) obj;
 	    boolean haveSameParent = this.parent.equals(studentItem.parent);
-	    return this.name.equals(studentItem.name) && haveSameParent;
+	    return getName().equals(studentItem.getName()) && haveSameParent;
 	}
 }
@@ -21,7 +21,16 @@ public class StudentTask implements Serializable {
     private List<SourceCodeFile> sourceCodeFiles;
     private boolean isAbsoluteEvaluation;
     private int absoluteValuePercentage;
+    private int deduction;
     private StudentAssignment parent;
+    private transient boolean isValueValid;
+    private transient int value;
+    private transient boolean isScoreValid;
+    private transient int absoluteScore;
+    private transient boolean isPenaltyValid;
+    private transient int penaltyPercentage;
+    private transient int[] studentItemCounts;
+    private transient ItemIndex itemIndex;
 
     {
     	studentItems = new ArrayList<StudentItem>();
@@ -46,6 +55,15 @@ public class StudentTask implements Serializable {
     public String getName() {
     	return this.name;
     }
+
+    /**
+     * Returns the <tt>Task</tt> of current <tt>LabExercise</tt> this is an
+     * implementation of, or null if it is no longer defined.
+     */
+    public Task getTask() {
+    	Assignment assignment = this.parent != null ? this.parent.getAssignment() : null;
+    	return assignment != null ? assignment.getTaskByName(this.name) : null;
+    }
     
     private void setName(String name) {
     	if (name == null) {
@@ -60,19 +78,44 @@ public class StudentTask implements Serializable {
 	    return Collections.unmodifiableList(this.studentItems);
 	}
     
+    /**
+     * Returns item of given name, found through an index of item names shared
+     * with tasks of other students.
+     */
     public StudentItem getStudentItemByName(String studentItemName) {
     	if (studentItemName == null) {
     		return null;
     	}
     	
-    	for (StudentItem item : this.studentItems) {
-    		if (item.getName().equals(studentItemName)) {
-    			return item;
+    	ItemIndex itemIndex = getItemIndex();
+    	int position = itemIndex.getPosition(studentItemName);
+    	if (position < 0) {
+    		return null;
+    	}
+    	
+    	StudentItem item = this.studentItems.get(position);
+    	if (item.getDescriptor() == itemIndex.getDescriptor(position)) {
+    		return item;
+    	}
+    	
+    	for (StudentItem studentItem : this.studentItems) {
+    		if (studentItem.getName().equals(studentItemName)) {
+    			return studentItem;
     		}
     	}
     	
     	return null;
     }
+
+    private ItemIndex getItemIndex() {
+    	ItemIndex itemIndex = this.itemIndex;
+    	if (itemIndex == null) {
+    		itemIndex = ItemIndex.of(this.studentItems);
+    		this.itemIndex = itemIndex;
+    	}
+    	
+    	return itemIndex;
+    }
     
     public boolean containsStudentItem(StudentItem item) {
         if (item == null) {
@@ -83,17 +126,7 @@ public class StudentTask implements Serializable {
     }
     
     public boolean containsStudentItemByName(String itemName) {
-        if (itemName == null) {
-            return false;
-        }
-
-        for (StudentItem item : this.studentItems) {
-        	if (item.getName().equals(itemName)) {
-        		return true;
-        	}
-        }
-        
-        return false;
+        return getStudentItemByName(itemName) != null;
     }
     
 	public List<SourceCodeFile> getSourceCodeFiles() {
@@ -123,6 +156,8 @@ public class StudentTask implements Serializable {
 	    if (opResult) {
 	        sourceCodeFile.setParent(this);
 	        parent.removeUnmatachedSourceCodeFile(sourceCodeFile);
+	        invalidatePenaltyPercentage();
+	        parent.sourceCodeFileMoved(sourceCodeFile);
 	    }
 	
 	    return opResult;
@@ -137,6 +172,8 @@ public class StudentTask implements Serializable {
 	    if (opResult) {
 	        sourceCodeFile.setParent(null);
 	        parent.addUnmatachedSourceCodeFile(sourceCodeFile);
+	        invalidatePenaltyPercentage();
+	        parent.sourceCodeFileMoved(sourceCodeFile);
 	    }
 	
 	    return opResult;
@@ -175,6 +212,8 @@ public class StudentTask implements Serializable {
 
 	public void setAbsoluteEvaluation(boolean isAbsoluteEvaluation) {
 	    this.isAbsoluteEvaluation = isAbsoluteEvaluation;
+	    invalidateScore();
+	    invalidatePenaltyPercentage();
 	}
 
 	public int getAbsoluteValuePercentage() {
@@ -188,6 +227,27 @@ public class StudentTask implements Serializable {
 	    }
 	
 	    this.absoluteValuePercentage = percentage;
+	    invalidateScore();
+	}
+
+	/**
+	 * Returns number of points deducted from the score of this task by the
+	 * last penalty evaluation.
+	 */
+	public int getDeduction() {
+	    return this.deduction;
+	}
+
+	void setDeduction(int deduction) {
+	    if (deduction < 0 || deduction > getValue()) {
+	        log.error(ErrorMessages.INVALID_SCORE_VALUE);
+	        throw new IllegalArgumentException();
+	    }
+
+	    if (this.deduction != deduction) {
+	        this.deduction = deduction;
+	        invalidateScore();
+	    }
 	}
 
 	public StudentAssignment getParent() {
@@ -195,7 +255,7 @@ public class StudentTask implements Serializable {
 	}
 
 	private void setParent(StudentAssignment parent) {
-		if (this.parent == null) {
+		if (parent == null) {
 			log.error(ErrorMessages.NULL_ARGUMENT);
 			throw new IllegalArgumentException();
 		}
@@ -204,26 +264,82 @@ public class StudentTask implements Serializable {
 	}
 
 	public int getValue() {
-        int value = 0;
-        
-        for (StudentItem item : this.studentItems) {
-        	value += item.getValue();
-        }
+		if (!this.isValueValid) {
+			int value = 0;
+			for (StudentItem item : this.studentItems) {
+				value += item.getValue();
+			}
+			
+			this.value = value;
+			this.isValueValid = true;
+		}
         
-        return value;
+        return this.value;
     }
 
+    /**
+     * Returns score of this task, less its penalty deduction. Score is cached
+     * and recalculated only after a score of an item, evaluation mode or
+     * deduction of this task changes.
+     */
     public int getScoreAsAbsolute() {
-        if (this.isAbsoluteEvaluation) {
-            return Math.round((float) (getValue() * this.absoluteValuePercentage) / 100);
-        }
+    	if (!this.isScoreValid) {
+    		this.absoluteScore = calculateScoreAsAbsolute();
+    		this.isScoreValid = true;
+    	}
+    	
+    	return this.absoluteScore;
+    }
 
+    private int calculateScoreAsAbsolute() {
         int score = 0;
-        for (StudentItem item : this.studentItems) {
-            score += item.getScoreAsAbsolute();
+        if (this.isAbsoluteEvaluation) {
+            score = Math.round((float) (getValue() * this.absoluteValuePercentage) / 100);
+        } else {
+            for (StudentItem item : this.studentItems) {
+                score += item.getScoreAsAbsolute();
+            }
         }
         
-        return score;
+        return Math.max(0, score - this.deduction);
+    }
+
+    /**
+     * Discards cached score of this task and of its <tt>StudentAssignment</tt>.
+     */
+    void invalidateScore() {
+    	this.isScoreValid = false;
+    	if (this.parent != null) {
+    		this.parent.invalidateScore();
+    	}
+    }
+
+    /**
+     * Returns sum of error penalty percentages of all remarks attached to this
+     * task or to its files. Sum is cached until a remark of this task is added,
+     * removed or changed.
+     */
+    public int getPenaltyPercentage() {
+    	if (!this.isPenaltyValid) {
+    		int penaltyPercentage = 0;
+    		for (Remark remark : this.parent.getRemarks()) {
+    			if (remark.getStudentTask() == this) {
+    				penaltyPercentage += remark.getErrorPenaltyPercentage();
+    			}
+    		}
+    		
+    		this.penaltyPercentage = penaltyPercentage;
+    		this.isPenaltyValid = true;
+    	}
+    	
+    	return this.penaltyPercentage;
+    }
+
+    /**
+     * Discards cached penalty of this task. Called when a remark of this task changes.
+     */
+    public void invalidatePenaltyPercentage() {
+    	this.isPenaltyValid = false;
     }
 
     public int getScoreAsPercentage() {
@@ -235,33 +351,129 @@ public class StudentTask implements Serializable {
     }
 
     public ReviewStatus getReviewStatus() {
-	    if (reviewNotStarted()) {
-	        return ReviewStatus.NOT_STARTED;
-	    } else if (isReviewFinished()) {
-	        return ReviewStatus.FINISHED;
-	    } else {
-	        return ReviewStatus.IN_PROGRESS;
-	    }
+	    return ReviewStatus.of(getStudentItemCounts(), this.studentItems.size());
 	}
 
-	private boolean reviewNotStarted() {
-        for (StudentItem item : this.studentItems) {
-            if (item.getReviewStatus() != ReviewStatus.NOT_STARTED) {
-                return false;
-            }
-        }
-    
-        return true;
+    /**
+     * Returns number of items of this task with given review status.
+     */
+    public int getStudentItemCount(ReviewStatus status) {
+    	if (status == null) {
+    		return 0;
+    	}
+    	
+    	return getStudentItemCounts()[status.ordinal()];
     }
 
-    private boolean isReviewFinished() {
-        for (StudentItem item : this.studentItems) {
-            if (!item.isReviewed()) {
-                return false;
-            }
-        }
-    
-        return true;
+    /**
+     * Returns numbers of items per review status, counted on first access and
+     * then kept up to date by <tt>StudentItem.setReviewStatus</tt>.
+     */
+    private int[] getStudentItemCounts() {
+    	if (this.studentItemCounts == null) {
+    		int[] counts = new int[ReviewStatus.values().length];
+    		for (StudentItem item : this.studentItems) {
+    			counts[item.getReviewStatus().ordinal()]++;
+    		}
+    		
+    		this.studentItemCounts = counts;
+    	}
+    	
+    	return this.studentItemCounts;
+    }
+
+    /**
+     * Updates counts after review status of an item changed, and passes the
+     * change of this task's status on to its <tt>StudentAssignment</tt>.
+     */
+    void studentItemReviewStatusChanged(ReviewStatus oldStatus, ReviewStatus newStatus) {
+    	int[] counts = this.studentItemCounts;
+    	if (counts != null) {
+    		counts[oldStatus.ordinal()]--;
+    		counts[newStatus.ordinal()]++;
+    	} else {
+    		counts = getStudentItemCounts();
+    	}
+    	
+    	int total = this.studentItems.size();
+    	ReviewStatus newTaskStatus = ReviewStatus.of(counts, total);
+    	counts[newStatus.ordinal()]--;
+    	counts[oldStatus.ordinal()]++;
+    	ReviewStatus oldTaskStatus = ReviewStatus.of(counts, total);
+    	counts[oldStatus.ordinal()]--;
+    	counts[newStatus.ordinal()]++;
+    	if (oldTaskStatus != newTaskStatus && this.parent != null) {
+    		this.parent.studentTaskReviewStatusChanged(oldTaskStatus, newTaskStatus);
+    	}
+    }
+
+    /**
+     * Brings this task up to date with given definition. Items are matched
+     * by name, and an unmatched item is taken as renamed if the item at its
+     * position in the definition is unmatched too and has the same description
+     * and value. Otherwise the item is removed and a new one added. Matched items keep their scores and review statuses, other
+     * items are added or removed. Items must not be attached to a matrix.
+     * Returns true if anything changed.
+     */
+    boolean remap(Task task) {
+    	boolean isChanged = !this.name.equals(task.getName());
+    	setName(task.getName());
+    	List<Item> items = task.getItems();
+    	StudentItem[] matched = new StudentItem[items.size()];
+    	Set<StudentItem> used = Collections.newSetFromMap(new IdentityHashMap<StudentItem, Boolean>());
+    	for (int i = 0; i < items.size(); i++) {
+    		matched[i] = getStudentItemByName(items.get(i).getName());
+    		if (matched[i] != null) {
+    			used.add(matched[i]);
+    		}
+    	}
+    	
+    	for (int i = 0; i < items.size() && i < this.studentItems.size(); i++) {
+    		StudentItem studentItem = this.studentItems.get(i);
+    		Item item = items.get(i);
+    		if (matched[i] == null && !used.contains(studentItem) && task.getItemByName(studentItem.getName()) == null
+    				&& studentItem.getValue() == item.getValue()
+    				&& studentItem.getDescription().equals(item.getDescription())) {
+    			matched[i] = studentItem;
+    			used.add(studentItem);
+    		}
+    	}
+    	
+    	List<StudentItem> studentItems = new ArrayList<StudentItem>(items.size());
+    	for (int i = 0; i < items.size(); i++) {
+    		if (matched[i] != null) {
+    			isChanged |= matched[i].redefine(items.get(i));
+    			isChanged |= i >= this.studentItems.size() || this.studentItems.get(i) != matched[i];
+    			studentItems.add(matched[i]);
+    		} else {
+    			studentItems.add(new StudentItem(items.get(i), this));
+    			isChanged = true;
+    		}
+    	}
+    	
+    	isChanged |= used.size() != this.studentItems.size();
+    	this.studentItems = studentItems;
+    	this.itemIndex = null;
+    	this.isValueValid = false;
+    	this.studentItemCounts = null;
+    	this.deduction = Math.min(this.deduction, getValue());
+    	invalidateScore();
+    	invalidatePenaltyPercentage();
+    	return isChanged;
+    }
+
+    /**
+     * Returns true if this task has an item of the same name as an item of
+     * given task.
+     */
+    boolean hasCommonItem(Task task) {
+    	for (Item item : task.getItems()) {
+    		if (containsStudentItemByName(item.getName())) {
+    			return true;
+    		}
+    	}
+    	
+    	return false;
     }
 
 	public boolean equals(Object obj) {
@@ -0,0 +1,454 @@
+package rs.ac.bg.etf.examiner.student;
+
+import rs.ac.bg.etf.examiner.errors.*;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.nio.file.attribute.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.*;
+
+import org.apache.logging.log4j.*;
+
+/**
+ * Opens student submissions stored as archives, so they can be scanned without
+ * being extracted. Zip archives are opened with zip <tt>FileSystemProvider</tt>.
+ * There is no file system provider for tar archives, so a tar archive is read
+ * once as a stream and its source code files are stored in a temporary zip
+ * archive, created in a new temporary directory of its own. GNU long names and
+ * pax <tt>path</tt> records are used for entries whose names do not fit into
+ * the header. Paths inside a tar archive are identified by <tt>tar:</tt> URIs
+ * that refer to the original archive, so they stay valid after the temporary
+ * zip archive is gone. Opened archives stay open until they are closed by
+ * {@link #close(File)}. Rules an archive was opened with are remembered, so
+ * it is opened with the same rules when it is reopened from a URI.
+ *
+ * @author Marko Milojevic
+ *
+ */
+public class SubmissionArchives {
+
+    private static final Logger log = LogManager.getLogger(SubmissionArchives.class.getName());
+    public static final String[] ZIP_EXTENSIONS = { ".zip", ".jar" };
+    public static final String[] TAR_EXTENSIONS = { ".tar", ".tar.gz", ".tgz" };
+    private static final String ZIP_SCHEME = "jar";
+    private static final String TAR_SCHEME = "tar";
+    private static final String ENTRY_SEPARATOR = "!";
+    private static final int TAR_BLOCK_SIZE = 512;
+    private static final String TAR_COPY_NAME = "archive.zip";
+    private static final String PAX_PATH_KEY = "path=";
+    private static ConcurrentMap<Path, FileSystem> tarFileSystems = new ConcurrentHashMap<Path, FileSystem>();
+    private static ConcurrentMap<FileSystem, Path> tarArchives = new ConcurrentHashMap<FileSystem, Path>();
+    private static ConcurrentMap<Path, Path> tarCopies = new ConcurrentHashMap<Path, Path>();
+    private static ConcurrentMap<Path, SubmissionScanRules> archiveRules =
+            new ConcurrentHashMap<Path, SubmissionScanRules>();
+
+    private SubmissionArchives() {}
+
+    public static boolean isArchive(File file) {
+        return file != null && (isZipArchive(file.getName()) || isTarArchive(file.getName()));
+    }
+
+    /**
+     * Returns the name of given file without archive extension, or the name
+     * itself if the file is not an archive.
+     */
+    public static String getBaseName(File file) {
+        String fileName = file.getName();
+        for (String extension : getArchiveExtensions()) {
+            if (fileName.toLowerCase(Locale.ROOT).endsWith(extension)) {
+                return fileName.substring(0, fileName.length() - extension.length());
+            }
+        }
+
+        return fileName;
+    }
+
+    /**
+     * Opens given archive and returns the root directory of its contents. Only
+     * source code files accepted by given rules are taken from tar archives.
+     */
+    public static Path open(File archive, SubmissionScanRules rules) throws IOException {
+        if (archive == null || rules == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        } else if (!archive.isFile()) {
+            log.error(ErrorMessages.FILE_DOES_NOT_EXIST);
+            throw new FileNotFoundException(ErrorMessages.FILE_DOES_NOT_EXIST);
+        }
+
+        Path archivePath = archive.toPath().toAbsolutePath().normalize();
+        archiveRules.put(archivePath, rules);
+        if (isZipArchive(archive.getName())) {
+            return openZipFileSystem(URI.create(ZIP_SCHEME + ":" + archivePath.toUri())).getPath("/");
+        } else if (isTarArchive(archive.getName())) {
+            return openTarFileSystem(archivePath, rules).getPath("/");
+        }
+
+        log.error(ErrorMessages.INVALID_FILE_EXTENSION);
+        throw new IllegalArgumentException(ErrorMessages.INVALID_FILE_EXTENSION);
+    }
+
+    /**
+     * Returns URI which identifies given path and can be turned back into a path
+     * by {@link #toPath(URI)}, even in another session.
+     */
+    public static URI toUri(Path path) {
+        Path archive = tarArchives.get(path.getFileSystem());
+        if (archive != null) {
+            return URI.create(TAR_SCHEME + ":" + archive.toUri() + ENTRY_SEPARATOR + path.toAbsolutePath());
+        }
+
+        return path.toUri();
+    }
+
+    /**
+     * Closes file system of given archive, if it is open, and deletes the
+     * temporary copy of a tar archive. Paths inside the archive can not be
+     * used afterwards, but the archive can be opened again.
+     */
+    public static void close(File archive) throws IOException {
+        if (archive == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        }
+
+        Path archivePath = archive.toPath().toAbsolutePath().normalize();
+        if (isZipArchive(archive.getName())) {
+            FileSystem fileSystem;
+            try {
+                fileSystem = FileSystems.getFileSystem(URI.create(ZIP_SCHEME + ":" + archivePath.toUri()));
+            } catch (FileSystemNotFoundException e) {
+                return;
+            }
+
+            fileSystem.close();
+        } else if (isTarArchive(archive.getName())) {
+            closeTarFileSystem(archivePath);
+        }
+    }
+
+    /**
+     * Remembers rules given archive was opened with in an earlier session, so
+     * paths inside it are opened with the same rules.
+     */
+    static void setRules(File archive, SubmissionScanRules rules) {
+        if (archive != null && rules != null) {
+            archiveRules.putIfAbsent(archive.toPath().toAbsolutePath().normalize(), rules);
+        }
+    }
+
+    public static Path toPath(URI uri) throws IOException {
+        if (uri == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        }
+
+        String scheme = uri.getScheme();
+        if (TAR_SCHEME.equals(scheme) || ZIP_SCHEME.equals(scheme)) {
+            String spec = uri.toString().substring(scheme.length() + 1);
+            int separatorPos = spec.indexOf(ENTRY_SEPARATOR);
+            Path archive = Paths.get(URI.create(spec.substring(0, separatorPos)));
+            String entry = spec.substring(separatorPos + 1);
+            SubmissionScanRules rules = archiveRules.get(archive.toAbsolutePath().normalize());
+            return open(archive.toFile(), rules != null ? rules : new SubmissionScanRules())
+                    .resolve(entry.isEmpty() ? "/" : entry);
+        }
+
+        return Paths.get(uri);
+    }
+
+    private static FileSystem openZipFileSystem(URI uri) throws IOException {
+        try {
+            return FileSystems.newFileSystem(uri, Collections.<String, Object>emptyMap());
+        } catch (FileSystemAlreadyExistsException e) {
+            return FileSystems.getFileSystem(uri);
+        }
+    }
+
+    private static synchronized FileSystem openTarFileSystem(Path archive, SubmissionScanRules rules)
+            throws IOException {
+        FileSystem fileSystem = tarFileSystems.get(archive);
+        if (fileSystem != null && fileSystem.isOpen()) {
+            return fileSystem;
+        }
+
+        Path directory = Files.createTempDirectory("examiner-");
+        directory.toFile().deleteOnExit();
+        Path zip = directory.resolve(TAR_COPY_NAME);
+        zip.toFile().deleteOnExit();
+        URI uri = URI.create(ZIP_SCHEME + ":" + zip.toUri());
+        try {
+            try (FileSystem zipFileSystem =
+                    FileSystems.newFileSystem(uri, Collections.singletonMap("create", "true"))) {
+                copyTarEntries(archive, rules, zipFileSystem);
+            }
+
+            fileSystem = openZipFileSystem(uri);
+        } catch (IOException | RuntimeException e) {
+            try {
+                deleteTarCopy(zip);
+            } catch (IOException deleteException) {
+                e.addSuppressed(deleteException);
+            }
+
+            throw e;
+        }
+
+        tarFileSystems.put(archive, fileSystem);
+        tarArchives.put(fileSystem, archive);
+        tarCopies.put(archive, zip);
+        log.debug("Tar archive " + archive + " read into " + zip);
+        return fileSystem;
+    }
+
+    private static synchronized void closeTarFileSystem(Path archive) throws IOException {
+        FileSystem fileSystem = tarFileSystems.remove(archive);
+        Path zip = tarCopies.remove(archive);
+        try {
+            if (fileSystem != null) {
+                tarArchives.remove(fileSystem);
+                fileSystem.close();
+            }
+        } finally {
+            if (zip != null) {
+                deleteTarCopy(zip);
+                log.debug("Tar archive " + archive + " released from " + zip);
+            }
+        }
+    }
+
+    /**
+     * Deletes given temporary copy of a tar archive and its directory.
+     */
+    private static void deleteTarCopy(Path zip) throws IOException {
+        Files.deleteIfExists(zip);
+        Files.deleteIfExists(zip.getParent());
+    }
+
+    private static void copyTarEntries(Path archive, SubmissionScanRules rules, FileSystem zipFileSystem)
+            throws IOException {
+        InputStream fileIn = new BufferedInputStream(Files.newInputStream(archive));
+        if (!archive.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".tar")) {
+            fileIn = new GZIPInputStream(fileIn);
+        }
+
+        try (DataInputStream in = new DataInputStream(fileIn)) {
+            byte[] header = new byte[TAR_BLOCK_SIZE];
+            String longName = null;
+            while (true) {
+                in.readFully(header);
+                if (isZeroBlock(header)) {
+                    break;
+                }
+
+                String name = longName != null ? longName : getEntryName(header);
+                longName = null;
+                long size = parseOctal(header, 124, 12);
+                long modified = parseOctal(header, 136, 12) * 1000;
+                char type = (char) header[156];
+                long padding = (TAR_BLOCK_SIZE - size % TAR_BLOCK_SIZE) % TAR_BLOCK_SIZE;
+                if (type == 'L') {
+                    byte[] nameBytes = new byte[(int) size];
+                    in.readFully(nameBytes);
+                    longName = trim(nameBytes, 0, nameBytes.length);
+                    skipFully(in, padding);
+                } else if (type == 'x') {
+                    byte[] records = new byte[(int) size];
+                    in.readFully(records);
+                    longName = getPaxPath(records);
+                    skipFully(in, padding);
+                } else if ((type == '0' || type == '\0') && accepts(name, rules)) {
+                    Path target = zipFileSystem.getPath("/", name).normalize();
+                    if (target.getParent() != null) {
+                        Files.createDirectories(target.getParent());
+                    }
+
+                    Files.copy(new BoundedInputStream(in, size), target, StandardCopyOption.REPLACE_EXISTING);
+                    Files.setLastModifiedTime(target, FileTime.fromMillis(modified));
+                    skipFully(in, padding);
+                } else {
+                    skipFully(in, size + padding);
+                }
+            }
+        } catch (EOFException e) {
+            log.warn("Tar archive " + archive + " ends unexpectedly.");
+        }
+    }
+
+    private static boolean accepts(String entryName, SubmissionScanRules rules) {
+        String[] names = entryName.split("/");
+        for (int i = 0; i < names.length - 1; i++) {
+            if (rules.isIgnoredDirectory(names[i])) {
+                return false;
+            }
+        }
+
+        return names.length <= rules.getMaxDepth() && rules.isSourceCodeFile(names[names.length - 1]);
+    }
+
+    private static String getEntryName(byte[] header) {
+        String name = trim(header, 0, 100);
+        String magic = trim(header, 257, 6);
+        String prefix = magic.startsWith("ustar") ? trim(header, 345, 155) : "";
+        return prefix.isEmpty() ? name : prefix + "/" + name;
+    }
+
+    /**
+     * Returns the path record of a pax extended header, or null if it has none.
+     * Each record is written as <tt>"length key=value\n"</tt>, where length
+     * counts all bytes of the record.
+     */
+    private static String getPaxPath(byte[] records) {
+        String path = null;
+        int position = 0;
+        while (position < records.length) {
+            int space = position;
+            while (space < records.length && records[space] != ' ') {
+                space++;
+            }
+
+            int length;
+            try {
+                length = Integer.parseInt(new String(records, position, space - position, StandardCharsets.US_ASCII));
+            } catch (NumberFormatException e) {
+                return path;
+            }
+
+            int end = position + length;
+            if (end > records.length || end < space + 2) {
+                return path;
+            }
+
+            String record = new String(records, space + 1, end - space - 2, StandardCharsets.UTF_8);
+            if (record.startsWith(PAX_PATH_KEY)) {
+                path = record.substring(PAX_PATH_KEY.length());
+            }
+
+            position = end;
+        }
+
+        return path;
+    }
+
+    private static String trim(byte[] bytes, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && bytes[end] != 0) {
+            end++;
+        }
+
+        return new String(bytes, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    private static long parseOctal(byte[] bytes, int offset, int length) {
+        long value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            byte b = bytes[i];
+            if (b >= '0' && b <= '7') {
+                value = value * 8 + (b - '0');
+            } else if (b == 0 || (b == ' ' && value > 0)) {
+                break;
+            }
+        }
+
+        return value;
+    }
+
+    private static boolean isZeroBlock(byte[] block) {
+        for (byte b : block) {
+            if (b != 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static void skipFully(InputStream in, long count) throws IOException {
+        while (count > 0) {
+            long skipped = in.skip(count);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new EOFException();
+                }
+
+                skipped = 1;
+            }
+
+            count -= skipped;
+        }
+    }
+
+    private static boolean isZipArchive(String fileName) {
+        return endsWithAny(fileName, ZIP_EXTENSIONS);
+    }
+
+    private static boolean isTarArchive(String fileName) {
+        return endsWithAny(fileName, TAR_EXTENSIONS);
+    }
+
+    private static boolean endsWithAny(String fileName, String[] extensions) {
+        String lowerCaseName = fileName.toLowerCase(Locale.ROOT);
+        for (String extension : extensions) {
+            if (lowerCaseName.endsWith(extension)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static List<String> getArchiveExtensions() {
+        List<String> extensions = new ArrayList<String>();
+        extensions.addAll(Arrays.asList(TAR_EXTENSIONS));
+        extensions.addAll(Arrays.asList(ZIP_EXTENSIONS));
+        Collections.sort(extensions, new Comparator<String>() {
+            public int compare(String e1, String e2) {
+                return e2.length() - e1.length();
+            }
+        });
+
+        return extensions;
+    }
+
+    private static class BoundedInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        BoundedInputStream(InputStream in, long size) {
+            super(in);
+            this.remaining = size;
+        }
+
+        public int read() throws IOException {
+            if (this.remaining <= 0) {
+                return -1;
+            }
+
+            int b = super.read();
+            if (b >= 0) {
+                this.remaining--;
+            }
+
+            return b;
+        }
+
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (this.remaining <= 0) {
+                return -1;
+            }
+
+            int count = super.read(b, off, (int) Math.min(len, this.remaining));
+            if (count > 0) {
+                this.remaining -= count;
+            }
+
+            return count;
+        }
+
+        public void close() {}
+    }
+}
@@ -0,0 +1,169 @@
+package rs.ac.bg.etf.examiner.student;
+
+import rs.ac.bg.etf.examiner.errors.*;
+import rs.ac.bg.etf.examiner.labexercise.serializers.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+import org.apache.logging.log4j.*;
+
+/**
+ * Persisted record of scanned student directories, stored next to the saved
+ * <tt>LabExercise</tt>. <tt>CohortLoader</tt> uses it to rebuild unchanged
+ * student directories without walking them. Manifest is valid only for the
+ * <tt>SubmissionScanRules</tt> it was recorded with. By default only the
+ * modification time of each student's own directory is checked, which costs
+ * one attribute read per student; see {@link SubmissionManifestEntry} for
+ * changes this misses. Manifest of another format version is read as empty,
+ * and so is a manifest whose classes can no longer be read, so all student
+ * directories are scanned again.
+ *
+ * @author Marko Milojevic
+ *
+ */
+public class SubmissionManifest implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private static final Logger log = LogManager.getLogger(SubmissionManifest.class.getName());
+    public static final String MANIFEST_FILE_EXTENSION = ".emf";
+    public static final int FORMAT_VERSION = 2;
+    private int formatVersion;
+    private SubmissionScanRules rules;
+    private Map<String, SubmissionManifestEntry> entries;
+    private boolean checkingSubdirectories;
+
+    {
+        formatVersion = FORMAT_VERSION;
+        entries = new HashMap<String, SubmissionManifestEntry>();
+        checkingSubdirectories = false;
+    }
+
+    public SubmissionManifest() {
+        this.rules = new SubmissionScanRules();
+    }
+
+    public static String getManifestPath(String labExercisePath) {
+        if (labExercisePath == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        }
+
+        String extension = LabExerciseByteSerializerImpl.LAB_EXERCISE_FILE_EXTENSION;
+        String basePath = labExercisePath.endsWith(extension) ?
+                labExercisePath.substring(0, labExercisePath.length() - extension.length()) : labExercisePath;
+        return basePath + MANIFEST_FILE_EXTENSION;
+    }
+
+    public static SubmissionManifest open(String path) throws ClassNotFoundException, IOException {
+        if (path == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        } else if (!path.endsWith(MANIFEST_FILE_EXTENSION)) {
+            log.error(ErrorMessages.INVALID_FILE_EXTENSION);
+            throw new IllegalArgumentException(ErrorMessages.INVALID_FILE_EXTENSION);
+        } else if (Files.notExists(Paths.get(path))) {
+            log.error(ErrorMessages.FILE_DOES_NOT_EXIST);
+            throw new FileNotFoundException(ErrorMessages.FILE_DOES_NOT_EXIST);
+        }
+
+        try (InputStream fileIn = new BufferedInputStream(new FileInputStream(path));
+                ObjectInputStream in = new ObjectInputStream(fileIn)) {
+            return (SubmissionManifest) in.readObject();
+        } catch (ObjectStreamException | ClassCastException e) {
+            log.warn("Manifest " + path + " is of an unknown format and is ignored.", e);
+            return new SubmissionManifest();
+        }
+    }
+
+    public synchronized void save(String path) throws IOException {
+        if (path == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        } else if (!path.endsWith(MANIFEST_FILE_EXTENSION)) {
+            log.error(ErrorMessages.INVALID_FILE_EXTENSION);
+            throw new IllegalArgumentException(ErrorMessages.INVALID_FILE_EXTENSION);
+        }
+
+        try (OutputStream fileOut = new BufferedOutputStream(new FileOutputStream(path));
+                ObjectOutputStream out = new ObjectOutputStream(fileOut)) {
+            out.writeObject(this);
+        }
+    }
+
+    public synchronized boolean isCheckingSubdirectories() {
+        return this.checkingSubdirectories;
+    }
+
+    /**
+     * Sets whether subdirectories of students are checked too, which notices
+     * any added or removed file, at the cost of one attribute read per
+     * subdirectory.
+     */
+    public synchronized void setCheckingSubdirectories(boolean checkingSubdirectories) {
+        this.checkingSubdirectories = checkingSubdirectories;
+    }
+
+    public synchronized SubmissionScanRules getRules() {
+        return new SubmissionScanRules(this.rules);
+    }
+
+    /**
+     * Sets rules used to record this manifest. If rules differ from current
+     * ones, all entries are discarded.
+     */
+    public synchronized void setRules(SubmissionScanRules rules) {
+        if (rules == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        } else if (this.rules.equals(rules)) {
+            return;
+        }
+
+        this.rules = new SubmissionScanRules(rules);
+        this.entries.clear();
+    }
+
+    public synchronized SubmissionManifestEntry getEntry(Path directory) {
+        if (directory == null) {
+            return null;
+        }
+
+        return this.entries.get(directory.toString());
+    }
+
+    synchronized void putEntry(SubmissionManifestEntry entry) {
+        this.entries.put(entry.getDirectory(), entry);
+    }
+
+    synchronized void retainEntries(Collection<Path> directories) {
+        Set<String> retained = new HashSet<String>();
+        for (Path directory : directories) {
+            retained.add(directory.toString());
+        }
+
+        this.entries.keySet().retainAll(retained);
+    }
+
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Reads the manifest, discarding its entries if it was written in another
+     * format version.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (this.formatVersion != FORMAT_VERSION) {
+            log.info("Manifest of format version " + this.formatVersion + " is discarded.");
+            this.formatVersion = FORMAT_VERSION;
+            this.entries = new HashMap<String, SubmissionManifestEntry>();
+        }
+
+        if (this.rules == null) {
+            this.rules = new SubmissionScanRules();
+        }
+    }
+}
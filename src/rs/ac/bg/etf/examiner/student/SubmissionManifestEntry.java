@@ -0,0 +1,114 @@
+package rs.ac.bg.etf.examiner.student;
+
+import rs.ac.bg.etf.examiner.errors.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.*;
+import java.util.*;
+
+import org.apache.logging.log4j.*;
+
+/**
+ * Records the result of scanning one student's directory: the modification time
+ * of every visited directory and relative paths of source code files. Adding,
+ * removing or renaming an entry changes the modification time of its directory,
+ * so the listing is still valid if no visited directory changed. Sizes and
+ * modification times of files are not kept: only the listing is taken from the
+ * manifest, and contents are read from disk when they are first needed, so they
+ * are never stale. If only the student's own directory is checked, a file
+ * added to or removed from one of its subdirectories stays unnoticed until the
+ * entry is checked with subdirectories, or the student's directory changes.
+ *
+ * @author Marko Milojevic
+ *
+ */
+public class SubmissionManifestEntry implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private static final Logger log = LogManager.getLogger(SubmissionManifestEntry.class.getName());
+    public static final long RACY_INTERVAL_MILLIS = 2000;
+    private String directory;
+    private long scanTime;
+    private Map<String, Long> directoryModificationTimes;
+    private List<String> sourceCodeFiles;
+
+    {
+        directoryModificationTimes = new LinkedHashMap<String, Long>();
+        sourceCodeFiles = new ArrayList<String>();
+    }
+
+    SubmissionManifestEntry(Path directory, List<Path> sourceCodeFilePaths,
+            Map<Path, BasicFileAttributes> attributes, long scanTime) {
+        if (directory == null || sourceCodeFilePaths == null || attributes == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        }
+
+        this.directory = directory.toString();
+        this.scanTime = scanTime;
+        for (Map.Entry<Path, BasicFileAttributes> entry : attributes.entrySet()) {
+            if (entry.getValue().isDirectory()) {
+                this.directoryModificationTimes.put(directory.relativize(entry.getKey()).toString(),
+                        entry.getValue().lastModifiedTime().toMillis());
+            }
+        }
+
+        for (Path path : sourceCodeFilePaths) {
+            this.sourceCodeFiles.add(directory.relativize(path).toString());
+        }
+    }
+
+    public String getDirectory() {
+        return this.directory;
+    }
+
+    public List<Path> getSourceCodeFilePaths(Path directory) {
+        List<Path> paths = new ArrayList<Path>(this.sourceCodeFiles.size());
+        for (String sourceCodeFile : this.sourceCodeFiles) {
+            paths.add(directory.resolve(sourceCodeFile));
+        }
+
+        return paths;
+    }
+
+    public boolean isUpToDate(Path directory) {
+        return isUpToDate(directory, true);
+    }
+
+    /**
+     * Checks if listing recorded in this entry is still valid, using one
+     * attribute read for the student's directory and, if
+     * <tt>checkingSubdirectories</tt> is set, one more per visited subdirectory.
+     * Directories modified too close to the time of scanning are treated as
+     * changed, since file system's timestamp granularity may hide a later change.
+     */
+    public boolean isUpToDate(Path directory, boolean checkingSubdirectories) {
+        String root = directory.relativize(directory).toString();
+        if (!this.directoryModificationTimes.containsKey(root)) {
+            return false;
+        }
+
+        for (Map.Entry<String, Long> entry : this.directoryModificationTimes.entrySet()) {
+            if (!checkingSubdirectories && !entry.getKey().equals(root)) {
+                continue;
+            }
+
+            long recorded = entry.getValue();
+            if (recorded >= this.scanTime - RACY_INTERVAL_MILLIS) {
+                return false;
+            }
+
+            try {
+                long current = Files.getLastModifiedTime(directory.resolve(entry.getKey())).toMillis();
+                if (current != recorded) {
+                    return false;
+                }
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,186 @@
+package rs.ac.bg.etf.examiner.student;
+
+import rs.ac.bg.etf.examiner.errors.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.apache.logging.log4j.*;
+
+/**
+ * Rules used by <tt>SubmissionScanner</tt> to decide which files of a student's
+ * directory are source code files. A file is accepted if its extension is one
+ * of source code extensions and its name contains none of exclusion markers.
+ * Directories whose name is one of ignored directory names are not entered.
+ *
+ * @author Marko Milojevic
+ *
+ */
+public class SubmissionScanRules implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private static final Logger log = LogManager.getLogger(SubmissionScanRules.class.getName());
+    public static final String[] DEFAULT_EXTENSIONS = { ".java", ".cpp", ".h", ".c" };
+    public static final String[] DEFAULT_EXCLUSION_MARKERS = { "(Pregledano)" };
+    public static final String[] DEFAULT_IGNORED_DIRECTORIES = { "bin", "obj", "Debug", "Release", ".git", ".svn", "node_modules" };
+    public static final int UNLIMITED_DEPTH = Integer.MAX_VALUE;
+    private Set<String> extensions;
+    private Set<String> exclusionMarkers;
+    private Set<String> ignoredDirectories;
+    private int maxDepth;
+    private boolean followLinks;
+
+    {
+        extensions = new LinkedHashSet<String>();
+        exclusionMarkers = new LinkedHashSet<String>();
+        ignoredDirectories = new LinkedHashSet<String>();
+        maxDepth = UNLIMITED_DEPTH;
+        followLinks = false;
+    }
+
+    public SubmissionScanRules() {
+        this.extensions.addAll(Arrays.asList(DEFAULT_EXTENSIONS));
+        this.exclusionMarkers.addAll(Arrays.asList(DEFAULT_EXCLUSION_MARKERS));
+        this.ignoredDirectories.addAll(Arrays.asList(DEFAULT_IGNORED_DIRECTORIES));
+    }
+
+    public SubmissionScanRules(SubmissionScanRules rules) {
+        if (rules == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        }
+
+        this.extensions.addAll(rules.extensions);
+        this.exclusionMarkers.addAll(rules.exclusionMarkers);
+        this.ignoredDirectories.addAll(rules.ignoredDirectories);
+        this.maxDepth = rules.maxDepth;
+        this.followLinks = rules.followLinks;
+    }
+
+    public Set<String> getExtensions() {
+        return Collections.unmodifiableSet(this.extensions);
+    }
+
+    public boolean addExtension(String extension) {
+        if (extension == null || "".equals(extension)) {
+            return false;
+        }
+
+        return this.extensions.add(extension.startsWith(".") ? extension : "." + extension);
+    }
+
+    public boolean removeExtension(String extension) {
+        if (extension == null) {
+            return false;
+        }
+
+        return this.extensions.remove(extension.startsWith(".") ? extension : "." + extension);
+    }
+
+    public Set<String> getExclusionMarkers() {
+        return Collections.unmodifiableSet(this.exclusionMarkers);
+    }
+
+    public boolean addExclusionMarker(String marker) {
+        if (marker == null || "".equals(marker)) {
+            return false;
+        }
+
+        return this.exclusionMarkers.add(marker);
+    }
+
+    public boolean removeExclusionMarker(String marker) {
+        if (marker == null) {
+            return false;
+        }
+
+        return this.exclusionMarkers.remove(marker);
+    }
+
+    public Set<String> getIgnoredDirectories() {
+        return Collections.unmodifiableSet(this.ignoredDirectories);
+    }
+
+    public boolean addIgnoredDirectory(String directoryName) {
+        if (directoryName == null || "".equals(directoryName)) {
+            return false;
+        }
+
+        return this.ignoredDirectories.add(directoryName);
+    }
+
+    public boolean removeIgnoredDirectory(String directoryName) {
+        if (directoryName == null) {
+            return false;
+        }
+
+        return this.ignoredDirectories.remove(directoryName);
+    }
+
+    public int getMaxDepth() {
+        return this.maxDepth;
+    }
+
+    public void setMaxDepth(int maxDepth) {
+        if (maxDepth <= 0) {
+            log.error(ErrorMessages.NON_POSITIVE_VALUE);
+            throw new IllegalArgumentException(ErrorMessages.NON_POSITIVE_VALUE);
+        }
+
+        this.maxDepth = maxDepth;
+    }
+
+    public boolean isFollowLinks() {
+        return this.followLinks;
+    }
+
+    public void setFollowLinks(boolean followLinks) {
+        this.followLinks = followLinks;
+    }
+
+    public boolean isIgnoredDirectory(String directoryName) {
+        return directoryName != null && this.ignoredDirectories.contains(directoryName);
+    }
+
+    public boolean isSourceCodeFile(String fileName) {
+        if (fileName == null) {
+            return false;
+        }
+
+        int lastPeriodPos = fileName.lastIndexOf('.');
+        if (lastPeriodPos < 0 || !this.extensions.contains(fileName.substring(lastPeriodPos))) {
+            return false;
+        }
+
+        for (String marker : this.exclusionMarkers) {
+            if (fileName.contains(marker)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    public boolean equals(Object obj) {
+        if (obj == null) {
+            return false;
+        } else if (obj == this) {
+            return true;
+        } else if (!(obj instanceof SubmissionScanRules)) {
+            return false;
+        }
+
+        SubmissionScanRules rules = (SubmissionScanRules) obj;
+        return this.extensions.equals(rules.extensions) && this.exclusionMarkers.equals(rules.exclusionMarkers)
+                && this.ignoredDirectories.equals(rules.ignoredDirectories) && this.maxDepth == rules.maxDepth
+                && this.followLinks == rules.followLinks;
+    }
+
+    public int hashCode() {
+        int result = this.extensions.hashCode();
+        result = 31 * result + this.exclusionMarkers.hashCode();
+        result = 31 * result + this.ignoredDirectories.hashCode();
+        result = 31 * result + this.maxDepth;
+        return 31 * result + (this.followLinks ? 1 : 0);
+    }
+}
@@ -0,0 +1,150 @@
+package rs.ac.bg.etf.examiner.student;
+
+import rs.ac.bg.etf.examiner.errors.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.*;
+import java.util.*;
+
+import org.apache.logging.log4j.*;
+
+/**
+ * Walks a student's directory and collects source code files according to
+ * <tt>SubmissionScanRules</tt>. Uses attributes returned by the walk itself,
+ * so no additional file system calls are made per entry. Ignored directories
+ * are skipped as a whole, unreadable entries are logged and skipped, and
+ * symbolic link loops are detected when links are followed.
+ *
+ * @author Marko Milojevic
+ *
+ */
+public class SubmissionScanner {
+
+    private static final Logger log = LogManager.getLogger(SubmissionScanner.class.getName());
+    private SubmissionScanRules rules;
+
+    public SubmissionScanner() {
+        this(new SubmissionScanRules());
+    }
+
+    public SubmissionScanner(SubmissionScanRules rules) {
+        setRules(rules);
+    }
+
+    public SubmissionScanRules getRules() {
+        return this.rules;
+    }
+
+    public void setRules(SubmissionScanRules rules) {
+        if (rules == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        }
+
+        this.rules = rules;
+    }
+
+    public List<Path> scan(Path directory) throws IOException {
+        return scan(directory, null);
+    }
+
+    /**
+     * Scans given directory, and if <tt>attributes</tt> is not null, stores in it
+     * attributes of every visited directory and of every source code file found.
+     */
+    public List<Path> scan(Path directory, Map<Path, BasicFileAttributes> attributes) throws IOException {
+        if (directory == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        } else if (!Files.isDirectory(directory)) {
+            log.error(ErrorMessages.FILE_DOES_NOT_EXIST);
+            throw new FileNotFoundException(ErrorMessages.FILE_DOES_NOT_EXIST);
+        }
+
+        Set<FileVisitOption> options = this.rules.isFollowLinks() ?
+                EnumSet.of(FileVisitOption.FOLLOW_LINKS) : EnumSet.noneOf(FileVisitOption.class);
+        SourceCodeFileVisitor visitor = new SourceCodeFileVisitor(directory, attributes);
+        Files.walkFileTree(directory, options, this.rules.getMaxDepth(), visitor);
+        return visitor.sourceCodeFiles;
+    }
+
+    public boolean accepts(Path directory, Path file) {
+        if (directory == null || file == null || !file.startsWith(directory)) {
+            return false;
+        }
+
+        Path relativePath = directory.relativize(file);
+        int nameCount = relativePath.getNameCount();
+        if (nameCount == 0 || nameCount > this.rules.getMaxDepth()) {
+            return false;
+        }
+
+        for (int i = 0; i < nameCount - 1; i++) {
+            if (this.rules.isIgnoredDirectory(relativePath.getName(i).toString())) {
+                return false;
+            }
+        }
+
+        return this.rules.isSourceCodeFile(relativePath.getFileName().toString());
+    }
+
+    private class SourceCodeFileVisitor extends SimpleFileVisitor<Path> {
+
+        private Path root;
+        private List<Path> sourceCodeFiles;
+        private Map<Path, BasicFileAttributes> attributes;
+
+        SourceCodeFileVisitor(Path root, Map<Path, BasicFileAttributes> attributes) {
+            this.root = root;
+            this.sourceCodeFiles = new ArrayList<Path>();
+            this.attributes = attributes;
+        }
+
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+            if (!dir.equals(this.root) && rules.isIgnoredDirectory(fileName(dir))) {
+                return FileVisitResult.SKIP_SUBTREE;
+            }
+
+            if (this.attributes != null) {
+                this.attributes.put(dir, attrs);
+            }
+
+            return FileVisitResult.CONTINUE;
+        }
+
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+            if (attrs.isRegularFile() && rules.isSourceCodeFile(fileName(file))) {
+                this.sourceCodeFiles.add(file);
+                if (this.attributes != null) {
+                    this.attributes.put(file, attrs);
+                }
+            }
+
+            return FileVisitResult.CONTINUE;
+        }
+
+        public FileVisitResult visitFileFailed(Path file, IOException e) {
+            if (e instanceof FileSystemLoopException) {
+                log.warn("Symbolic link loop skipped: " + file);
+            } else {
+                log.warn("Entry could not be read and is skipped: " + file, e);
+            }
+
+            return FileVisitResult.CONTINUE;
+        }
+
+        public FileVisitResult postVisitDirectory(Path dir, IOException e) {
+            if (e != null) {
+                log.warn("Directory listing failed and is skipped: " + dir, e);
+            }
+
+            return FileVisitResult.CONTINUE;
+        }
+
+        private String fileName(Path path) {
+            Path fileName = path.getFileName();
+            return fileName != null ? fileName.toString() : "";
+        }
+    }
+}
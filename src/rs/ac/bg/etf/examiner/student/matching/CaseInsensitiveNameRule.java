@@ -0,0 +1,23 @@
+package rs.ac.bg.etf.examiner.student.matching;
+
+import rs.ac.bg.etf.examiner.student.*;
+
+import java.util.*;
+
+/**
+ * Matches a file with a task whose name equals the file's name without
+ * extension, ignoring case.
+ *
+ * @author Marko Milojevic
+ *
+ */
+public class CaseInsensitiveNameRule implements TaskMatchingRule {
+
+    public String getTaskKey(String taskName) {
+        return taskName.toLowerCase(Locale.ROOT);
+    }
+
+    public List<String> getFileKeys(StudentAssignment studentAssignment, SourceCodeFile sourceCodeFile) {
+        return Collections.singletonList(sourceCodeFile.getNameWithoutExtension().toLowerCase(Locale.ROOT));
+    }
+}
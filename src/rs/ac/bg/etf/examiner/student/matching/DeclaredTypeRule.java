@@ -0,0 +1,32 @@
+package rs.ac.bg.etf.examiner.student.matching;
+
+import rs.ac.bg.etf.examiner.student.*;
+
+import java.util.*;
+import java.util.regex.*;
+
+/**
+ * Matches a Java file with the task named after the public class, interface
+ * or enum declared inside it, regardless of the file's name.
+ *
+ * @author Marko Milojevic
+ *
+ */
+public class DeclaredTypeRule implements TaskMatchingRule {
+
+    private static final Pattern PUBLIC_TYPE_PATTERN = Pattern.compile(
+            "\\bpublic\\s+(?:(?:abstract|final|strictfp)\\s+)*(?:class|interface|enum)\\s+([A-Za-z_$][\\w$]*)");
+
+    public String getTaskKey(String taskName) {
+        return taskName;
+    }
+
+    public List<String> getFileKeys(StudentAssignment studentAssignment, SourceCodeFile sourceCodeFile) {
+        if (!sourceCodeFile.getName().endsWith(".java")) {
+            return Collections.emptyList();
+        }
+
+        Matcher matcher = PUBLIC_TYPE_PATTERN.matcher(SourceCodeReader.read(sourceCodeFile));
+        return matcher.find() ? Collections.singletonList(matcher.group(1)) : Collections.<String>emptyList();
+    }
+}
@@ -0,0 +1,22 @@
+package rs.ac.bg.etf.examiner.student.matching;
+
+import rs.ac.bg.etf.examiner.student.*;
+
+import java.util.*;
+
+/**
+ * Matches a file with a task whose name equals the file's name without extension.
+ *
+ * @author Marko Milojevic
+ *
+ */
+public class ExactNameRule implements TaskMatchingRule {
+
+    public String getTaskKey(String taskName) {
+        return taskName;
+    }
+
+    public List<String> getFileKeys(StudentAssignment studentAssignment, SourceCodeFile sourceCodeFile) {
+        return Collections.singletonList(sourceCodeFile.getNameWithoutExtension());
+    }
+}
@@ -0,0 +1,60 @@
+package rs.ac.bg.etf.examiner.student.matching;
+
+import rs.ac.bg.etf.examiner.student.*;
+
+import java.util.*;
+import java.util.regex.*;
+
+/**
+ * Matches a C or C++ implementation file with the task of a local header it
+ * includes, so that <tt>server.cpp</tt> including <tt>"Server.h"</tt> belongs
+ * to the same task as the header. A header of the same name as the file is
+ * tried first, and then other headers in order of inclusion. Names are compared
+ * ignoring case.
+ *
+ * @author Marko Milojevic
+ *
+ */
+public class HeaderPairRule implements TaskMatchingRule {
+
+    private static final Pattern INCLUDE_PATTERN = Pattern.compile("#\\s*include\\s*\"([^\"]+)\"");
+    private static final String[] IMPLEMENTATION_EXTENSIONS = { ".c", ".cpp", ".cc", ".cxx" };
+
+    public String getTaskKey(String taskName) {
+        return taskName.toLowerCase(Locale.ROOT);
+    }
+
+    public List<String> getFileKeys(StudentAssignment studentAssignment, SourceCodeFile sourceCodeFile) {
+        if (!isImplementationFile(sourceCodeFile.getName())) {
+            return Collections.emptyList();
+        }
+
+        String baseName = sourceCodeFile.getNameWithoutExtension().toLowerCase(Locale.ROOT);
+        List<String> keys = new ArrayList<String>();
+        Matcher matcher = INCLUDE_PATTERN.matcher(SourceCodeReader.read(sourceCodeFile));
+        while (matcher.find()) {
+            String header = matcher.group(1);
+            int lastSeparatorPos = Math.max(header.lastIndexOf('/'), header.lastIndexOf('\\'));
+            int lastPeriodPos = header.lastIndexOf('.');
+            int endPos = lastPeriodPos > lastSeparatorPos ? lastPeriodPos : header.length();
+            String key = header.substring(lastSeparatorPos + 1, endPos).toLowerCase(Locale.ROOT);
+            if (key.equals(baseName)) {
+                keys.add(0, key);
+            } else {
+                keys.add(key);
+            }
+        }
+
+        return keys;
+    }
+
+    private boolean isImplementationFile(String fileName) {
+        for (String extension : IMPLEMENTATION_EXTENSIONS) {
+            if (fileName.endsWith(extension)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
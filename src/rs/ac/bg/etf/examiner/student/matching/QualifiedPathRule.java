@@ -0,0 +1,42 @@
+package rs.ac.bg.etf.examiner.student.matching;
+
+import rs.ac.bg.etf.examiner.student.*;
+
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Matches a file with a task whose name is qualified by a package, such as
+ * <tt>server.Server</tt>. File's path relative to student's directory is turned
+ * into a dot-separated name, and every suffix of that name is used as a key,
+ * longest first.
+ *
+ * @author Marko Milojevic
+ *
+ */
+public class QualifiedPathRule implements TaskMatchingRule {
+
+    public String getTaskKey(String taskName) {
+        return taskName.replace('/', '.').replace('\\', '.');
+    }
+
+    public List<String> getFileKeys(StudentAssignment studentAssignment, SourceCodeFile sourceCodeFile) {
+        Path directory = studentAssignment.getRoot();
+        Path file = sourceCodeFile.getPath();
+        if (!file.startsWith(directory)) {
+            return Collections.emptyList();
+        }
+
+        Path relativePath = directory.relativize(file);
+        int nameCount = relativePath.getNameCount();
+        List<String> keys = new ArrayList<String>(nameCount);
+        String key = sourceCodeFile.getNameWithoutExtension();
+        for (int i = nameCount - 2; i >= 0; i--) {
+            key = relativePath.getName(i) + "." + key;
+            keys.add(key);
+        }
+
+        Collections.reverse(keys);
+        return keys;
+    }
+}
@@ -0,0 +1,127 @@
+package rs.ac.bg.etf.examiner.student.matching;
+
+import rs.ac.bg.etf.examiner.errors.*;
+import rs.ac.bg.etf.examiner.student.*;
+
+import java.util.*;
+
+import org.apache.logging.log4j.*;
+
+/**
+ * Matches student's source code files with student's tasks using an ordered
+ * list of <tt>TaskMatchingRule</tt>s. Tasks are indexed by keys of all rules
+ * in one pass at the start of every match, and then every file not matched by
+ * a previous rule is looked up in the index of the next rule, so matching costs
+ * O(rules * (tasks + files)).
+ *
+ * @author Marko Milojevic
+ *
+ */
+public class SourceCodeFileMatcher {
+
+    private static final Logger log = LogManager.getLogger(SourceCodeFileMatcher.class.getName());
+    private List<TaskMatchingRule> rules;
+
+    {
+        rules = new ArrayList<TaskMatchingRule>();
+    }
+
+    public SourceCodeFileMatcher() {
+        addRule(new ExactNameRule());
+        addRule(new CaseInsensitiveNameRule());
+        addRule(new QualifiedPathRule());
+        addRule(new HeaderPairRule());
+        addRule(new DeclaredTypeRule());
+    }
+
+    public SourceCodeFileMatcher(List<TaskMatchingRule> rules) {
+        if (rules == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        }
+
+        for (TaskMatchingRule rule : rules) {
+            addRule(rule);
+        }
+    }
+
+    public List<TaskMatchingRule> getRules() {
+        return Collections.unmodifiableList(this.rules);
+    }
+
+    public boolean addRule(TaskMatchingRule rule) {
+        if (rule == null) {
+            return false;
+        }
+
+        return this.rules.add(rule);
+    }
+
+    public boolean removeRule(TaskMatchingRule rule) {
+        if (rule == null) {
+            return false;
+        }
+
+        return this.rules.remove(rule);
+    }
+
+    /**
+     * Returns matched files with their tasks. Files are compared by identity,
+     * so files of the same name from different directories are kept apart.
+     */
+    public Map<SourceCodeFile, StudentTask> match(StudentAssignment studentAssignment,
+            Collection<SourceCodeFile> sourceCodeFiles) {
+        if (studentAssignment == null || sourceCodeFiles == null) {
+            log.error(ErrorMessages.NULL_ARGUMENT);
+            throw new IllegalArgumentException();
+        }
+
+        Map<SourceCodeFile, StudentTask> matches = new IdentityHashMap<SourceCodeFile, StudentTask>();
+        if (sourceCodeFiles.isEmpty()) {
+            return matches;
+        }
+
+        List<Map<String, StudentTask>> indexes = createIndexes(studentAssignment);
+        List<SourceCodeFile> remaining = new LinkedList<SourceCodeFile>(sourceCodeFiles);
+        for (int r = 0; r < this.rules.size() && !remaining.isEmpty(); r++) {
+            TaskMatchingRule rule = this.rules.get(r);
+            Map<String, StudentTask> index = indexes.get(r);
+            Iterator<SourceCodeFile> it = remaining.iterator();
+            while (it.hasNext()) {
+                SourceCodeFile sourceCodeFile = it.next();
+                for (String key : rule.getFileKeys(studentAssignment, sourceCodeFile)) {
+                    StudentTask studentTask = index.get(key);
+                    if (studentTask != null) {
+                        matches.put(sourceCodeFile, studentTask);
+                        it.remove();
+                        break;
+                    }
+                }
+            }
+        }
+
+        return matches;
+    }
+
+    /**
+     * Indexes tasks of given student by keys of every rule, in one pass over
+     * the tasks. Index of a rule maps each key to the first task having it.
+     */
+    private List<Map<String, StudentTask>> createIndexes(StudentAssignment studentAssignment) {
+        List<Map<String, StudentTask>> indexes = new ArrayList<Map<String, StudentTask>>(this.rules.size());
+        for (int r = 0; r < this.rules.size(); r++) {
+            indexes.add(new HashMap<String, StudentTask>());
+        }
+
+        for (StudentTask studentTask : studentAssignment.getStudentTasks()) {
+            for (int r = 0; r < this.rules.size(); r++) {
+                String key = this.rules.get(r).getTaskKey(studentTask.getName());
+                if (key != null && !indexes.get(r).containsKey(key)) {
+                    indexes.get(r).put(key, studentTask);
+                }
+            }
+        }
+
+        return indexes;
+    }
+}
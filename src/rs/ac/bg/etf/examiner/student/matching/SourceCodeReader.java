@@ -0,0 +1,28 @@
+package rs.ac.bg.etf.examiner.student.matching;
+
+import rs.ac.bg.etf.examiner.student.*;
+
+import java.nio.charset.*;
+
+import org.apache.logging.log4j.*;
+
+/**
+ * Reads source code files for rules that match by file content. Content is
+ * decoded as ISO-8859-1, so reading never fails on malformed input.
+ *
+ * @author Marko Milojevic
+ *
+ */
+class SourceCodeReader {
+
+    private static final Logger log = LogManager.getLogger(SourceCodeReader.class.getName());
+
+    static String read(SourceCodeFile sourceCodeFile) {
+        try {
+            return StandardCharsets.ISO_8859_1.decode(sourceCodeFile.getContent()).toString();
+        } catch (IllegalStateException e) {
+            log.warn("File could not be read: " + sourceCodeFile.getPath(), e);
+            return "";
+        }
+    }
+}
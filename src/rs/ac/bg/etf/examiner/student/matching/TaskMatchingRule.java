@@ -0,0 +1,21 @@
+package rs.ac.bg.etf.examiner.student.matching;
+
+import rs.ac.bg.etf.examiner.student.*;
+
+import java.util.*;
+
+/**
+ * Rule used by <tt>SourceCodeFileMatcher</tt> to match student's source code
+ * files with tasks. Each task is indexed under the key returned by
+ * {@link #getTaskKey(String)}, and a file is matched with the task indexed
+ * under the first of its keys returned by {@link #getFileKeys(StudentAssignment, SourceCodeFile)}.
+ *
+ * @author Marko Milojevic
+ *
+ */
+public interface TaskMatchingRule {
+
+    public String getTaskKey(String taskName);
+
+    public List<String> getFileKeys(StudentAssignment studentAssignment, SourceCodeFile sourceCodeFile);
+}
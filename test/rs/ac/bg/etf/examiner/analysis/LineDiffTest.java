@@ -0,0 +1,118 @@
+package rs.ac.bg.etf.examiner.analysis;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.*;
+
+/**
+ * Tests that common lines found by <tt>LineDiff</tt> form a longest common
+ * subsequence, and the fallback taken when files differ too much.
+ *
+ * @author Marko Milojevic
+ *
+ */
+public class LineDiffTest {
+
+    @Test
+    public void identicalFilesHaveAllLinesInCommon() {
+        int[] lines = { 5, 3, 5, 8, 1 };
+        assertEquals(lines.length, LineDiff.commonLines(lines, lines.clone()).cardinality());
+    }
+
+    @Test
+    public void findsCommonLinesAroundChanges() {
+        int[] a = { 1, 2, 3, 4, 5, 6 };
+        int[] b = { 1, 9, 3, 4, 7, 6 };
+        assertEquals(toBitSet(0, 2, 3, 5), LineDiff.commonLines(a, b));
+    }
+
+    @Test
+    public void keepsOrderOfMovedLines() {
+        int[] a = { 1, 2, 3 };
+        int[] b = { 3, 1, 2 };
+        assertEquals(toBitSet(0, 1), LineDiff.commonLines(a, b));
+    }
+
+    @Test
+    public void emptyFilesHaveNoLinesInCommon() {
+        assertTrue(LineDiff.commonLines(new int[0], new int[] { 1, 2 }).isEmpty());
+        assertTrue(LineDiff.commonLines(new int[] { 1, 2 }, new int[0]).isEmpty());
+    }
+
+    @Test
+    public void matchesLongestCommonSubsequence() {
+        Random random = new Random(17);
+        for (int run = 0; run < 500; run++) {
+            int[] a = randomLines(random, random.nextInt(40), 6);
+            int[] b = randomLines(random, random.nextInt(40), 6);
+            BitSet common = LineDiff.commonLines(a, b);
+            assertEquals(longestCommonSubsequence(a, b), common.cardinality());
+            assertTrue(isSubsequence(a, common, b));
+        }
+    }
+
+    @Test
+    public void fallsBackToPresentLinesWhenEditDistanceIsTooLarge() {
+        int n = LineDiff.MAX_EDIT_DISTANCE;
+        int[] a = new int[n + 1];
+        int[] b = new int[n];
+        for (int i = 0; i < n; i++) {
+            a[i] = i;
+            b[n - 1 - i] = i;
+        }
+
+        a[n] = -1;
+        BitSet common = LineDiff.commonLines(a, b);
+        assertEquals(n, common.cardinality());
+        assertFalse(common.get(n));
+    }
+
+    private static BitSet toBitSet(int... indices) {
+        BitSet bits = new BitSet();
+        for (int index : indices) {
+            bits.set(index);
+        }
+
+        return bits;
+    }
+
+    private static int[] randomLines(Random random, int count, int distinct) {
+        int[] lines = new int[count];
+        for (int i = 0; i < count; i++) {
+            lines[i] = random.nextInt(distinct);
+        }
+
+        return lines;
+    }
+
+    private static int longestCommonSubsequence(int[] a, int[] b) {
+        int[][] lengths = new int[a.length + 1][b.length + 1];
+        for (int i = 1; i <= a.length; i++) {
+            for (int j = 1; j <= b.length; j++) {
+                lengths[i][j] = a[i - 1] == b[j - 1] ? lengths[i - 1][j - 1] + 1
+                        : Math.max(lengths[i - 1][j], lengths[i][j - 1]);
+            }
+        }
+
+        return lengths[a.length][b.length];
+    }
+
+    private static boolean isSubsequence(int[] a, BitSet selected, int[] b) {
+        int j = 0;
+        for (int i = selected.nextSetBit(0); i >= 0; i = selected.nextSetBit(i + 1)) {
+            while (j < b.length && b[j] != a[i]) {
+                j++;
+            }
+
+            if (j == b.length) {
+                return false;
+            }
+
+            j++;
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,175 @@
+package rs.ac.bg.etf.examiner.analysis;
+
+import static org.junit.Assert.*;
+
+import rs.ac.bg.etf.examiner.labexercise.*;
+import rs.ac.bg.etf.examiner.student.*;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.nio.file.attribute.*;
+import java.util.*;
+
+import org.junit.*;
+
+/**
+ * Tests winnowed fingerprints through <tt>PlagiarismDetector</tt>, on cohorts
+ * written to a temporary assignment group directory with a single task.
+ *
+ * @author Marko Milojevic
+ *
+ */
+public class PlagiarismDetectorTest {
+
+    private static final int K = 5;
+    private static final int WINDOW = 4;
+    private static final String TASK_NAME = "Server";
+    private static final String[] VOCABULARY = { "if", "else", "while", "for", "return", "new", "break",
+            "continue", "try", "catch", "throw", "static", "final", "+", "-", "*", "(", ")", "{", "}", ";",
+            ",", "=", "<", ">", "!", "&&", "||", "[", "]" };
+    private Path directory;
+    private Assignment assignment;
+
+    @Before
+    public void setUp() throws IOException {
+        this.directory = Files.createTempDirectory("examiner-");
+        this.assignment = new Assignment(this.directory.getFileName().toString());
+        this.assignment.addTask(new Task(TASK_NAME));
+        LabExercise.getInstance().addAssignment(this.assignment);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        LabExercise.getInstance().removeAssignment(this.assignment);
+        Files.walkFileTree(this.directory, new SimpleFileVisitor<Path>() {
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    @Test
+    public void identicalFilesAreFullySimilar() throws Exception {
+        String code = tokens(randomTokens(new Random(3), 200));
+        writeSource("a", code);
+        writeSource("b", code);
+        List<PlagiarismMatch> matches = build(4).getMatches(TASK_NAME);
+        assertEquals(1, matches.size());
+        assertEquals(1.0, matches.get(0).getSimilarity(), 0.0);
+    }
+
+    @Test
+    public void renamedIdentifiersAndLiteralsStillMatch() throws Exception {
+        writeSource("a", "class Server {\n    int port = 5000;\n    String host = \"localhost\";\n"
+                + "    void work() {\n        while (port > 0) {\n            port = port - 1;\n        }\n    }\n}\n");
+        writeSource("b", "class Server {\n    int socket = 80;\n    String name = \"example\";\n"
+                + "    void serve() {\n        while (socket > 0) {\n            socket = socket - 7;\n        }\n    }\n}\n");
+        List<PlagiarismMatch> matches = build(4).getMatches(TASK_NAME);
+        assertEquals(1, matches.size());
+        assertEquals(1.0, matches.get(0).getSimilarity(), 0.0);
+    }
+
+    @Test
+    public void filesShorterThanKGramDoNotMatch() throws Exception {
+        String code = tokens(new String[] { "if", "(", ")", ";" });
+        writeSource("a", code);
+        writeSource("b", code);
+        assertTrue(build(1).getMatches(TASK_NAME).isEmpty());
+    }
+
+    @Test
+    public void sharedRunOfGuaranteedLengthIsFound() throws Exception {
+        Random random = new Random(7);
+        int pairCount = 30;
+        for (int i = 0; i < pairCount; i++) {
+            String[] shared = randomTokens(random, WINDOW + K - 1);
+            writeSource(i + "a", tokens(randomTokens(random, random.nextInt(50))) + tokens(shared)
+                    + tokens(randomTokens(random, random.nextInt(50))));
+            writeSource(i + "b", tokens(randomTokens(random, random.nextInt(50))) + tokens(shared)
+                    + tokens(randomTokens(random, random.nextInt(50))));
+        }
+
+        Set<String> pairs = new HashSet<String>();
+        for (PlagiarismMatch match : build(1).getMatches(TASK_NAME)) {
+            pairs.add(match.getFirstStudentAssignment().getId() + " " + match.getSecondStudentAssignment().getId());
+        }
+
+        for (int i = 0; i < pairCount; i++) {
+            assertTrue(pairs.contains(i + "a " + i + "b"));
+        }
+    }
+
+    @Test
+    public void matchedRegionsCoverSharedRows() throws Exception {
+        Random random = new Random(11);
+        String[] shared = randomTokens(random, 40);
+        writeSource("a", tokens(randomTokens(random, 30)) + tokens(shared));
+        writeSource("b", tokens(shared) + tokens(randomTokens(random, 30)));
+        List<PlagiarismMatch> matches = build(4).getMatches(TASK_NAME);
+        assertEquals(1, matches.size());
+        for (MatchedRegion region : matches.get(0).getMatchedRegions()) {
+            assertTrue(region.getFirstStartRow() >= 30);
+            assertTrue(region.getSecondEndRow() < 40);
+            assertEquals(region.getFirstStartRow() - 30, region.getSecondStartRow());
+            assertEquals(region.getFirstEndRow() - 30, region.getSecondEndRow());
+        }
+    }
+
+    @Test
+    public void updateFollowsChangedFile() throws Exception {
+        Random random = new Random(13);
+        String code = tokens(randomTokens(random, 100));
+        writeSource("a", code);
+        writeSource("b", code);
+        PlagiarismDetector detector = build(4);
+        assertEquals(1, detector.getMatches(TASK_NAME).size());
+
+        writeSource("b", tokens(randomTokens(random, 100)));
+        StudentAssignment studentAssignment = detector.getCohort().getStudentAssignmentById("b");
+        studentAssignment.getStudentTaskByName(TASK_NAME).getSourceCodeFiles().get(0).invalidateContent();
+        detector.update(studentAssignment);
+        assertTrue(detector.getMatches(TASK_NAME).isEmpty());
+    }
+
+    private PlagiarismDetector build(int minSharedFingerprints) throws Exception {
+        Cohort cohort = new CohortLoader(2).load(this.directory.toFile());
+        PlagiarismDetector detector = new PlagiarismDetector(cohort, K, WINDOW);
+        detector.setMaxStudentPercentage(100);
+        detector.setMinSharedFingerprints(minSharedFingerprints);
+        detector.build();
+        return detector;
+    }
+
+    private void writeSource(String studentId, String code) throws IOException {
+        Path studentDirectory = Files.createDirectories(this.directory.resolve(studentId));
+        Files.write(studentDirectory.resolve(TASK_NAME + ".java"), code.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Returns given tokens one per row.
+     */
+    private static String tokens(String[] tokens) {
+        StringBuilder code = new StringBuilder();
+        for (String token : tokens) {
+            code.append(token).append('\n');
+        }
+
+        return code.toString();
+    }
+
+    private static String[] randomTokens(Random random, int count) {
+        String[] tokens = new String[count];
+        for (int i = 0; i < count; i++) {
+            tokens[i] = VOCABULARY[random.nextInt(VOCABULARY.length)];
+        }
+
+        return tokens;
+    }
+}
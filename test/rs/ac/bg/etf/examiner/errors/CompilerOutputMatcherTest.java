@@ -0,0 +1,144 @@
+package rs.ac.bg.etf.examiner.errors;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.*;
+
+/**
+ * Tests parsing of javac, gcc and clang diagnostics and matching of their
+ * messages against error names with ellipses.
+ *
+ * @author Marko Milojevic
+ *
+ */
+public class CompilerOutputMatcherTest {
+
+    private Error cannotFindSymbol;
+    private Error expected;
+    private Error semicolonExpected;
+    private Error operatorCannotBeApplied;
+    private Error undeclared;
+    private Error undeclaredIdentifier;
+    private Error noSuchFile;
+    private CompilerOutputMatcher matcher;
+
+    @Before
+    public void setUp() {
+        this.cannotFindSymbol = createError("cannot find symbol");
+        this.expected = createError("... expected");
+        this.semicolonExpected = createError("';' expected");
+        this.operatorCannotBeApplied = createError("operator ... cannot be applied to ...");
+        this.undeclared = createError("\u2026 undeclared (first use in this function)");
+        this.undeclaredIdentifier = createError("use of undeclared identifier ...");
+        this.noSuchFile = createError("No such file or directory");
+        this.matcher = new CompilerOutputMatcher(Arrays.asList(this.cannotFindSymbol, this.expected,
+                this.semicolonExpected, this.operatorCannotBeApplied, this.undeclared, this.undeclaredIdentifier,
+                this.noSuchFile));
+    }
+
+    @Test
+    public void parsesJavacHeader() {
+        CompilerDiagnostic diagnostic = matchSingle("Server.java:12: error: cannot find symbol");
+        assertEquals("Server.java", diagnostic.getFileName());
+        assertEquals(11, diagnostic.getRow());
+        assertEquals(-1, diagnostic.getColumn());
+        assertEquals("cannot find symbol", diagnostic.getMessage());
+        assertSame(this.cannotFindSymbol, diagnostic.getError());
+    }
+
+    @Test
+    public void parsesJavacHeaderWithWindowsPath() {
+        CompilerDiagnostic diagnostic = matchSingle("C:\\work\\s1\\src\\Server.java:7: error: ';' expected");
+        assertEquals("C:\\work\\s1\\src\\Server.java", diagnostic.getFileName());
+        assertEquals(6, diagnostic.getRow());
+        assertSame(this.semicolonExpected, diagnostic.getError());
+    }
+
+    @Test
+    public void parsesGccHeader() {
+        CompilerDiagnostic diagnostic = matchSingle("src/main.c:3:5: error: 'x' undeclared (first use in this function)");
+        assertEquals("src/main.c", diagnostic.getFileName());
+        assertEquals(2, diagnostic.getRow());
+        assertEquals(4, diagnostic.getColumn());
+        assertSame(this.undeclared, diagnostic.getError());
+    }
+
+    @Test
+    public void parsesGccFatalError() {
+        CompilerDiagnostic diagnostic = matchSingle("main.c:1:10: fatal error: stdio.hh: No such file or directory");
+        assertEquals(0, diagnostic.getRow());
+        assertEquals(9, diagnostic.getColumn());
+        assertSame(this.noSuchFile, diagnostic.getError());
+    }
+
+    @Test
+    public void parsesClangHeaderWithWindowsPath() {
+        CompilerDiagnostic diagnostic = matchSingle(
+                "C:\\Users\\student\\lab1\\main.cpp:10:3: error: use of undeclared identifier 'y'");
+        assertEquals("C:\\Users\\student\\lab1\\main.cpp", diagnostic.getFileName());
+        assertEquals(9, diagnostic.getRow());
+        assertEquals(2, diagnostic.getColumn());
+        assertSame(this.undeclaredIdentifier, diagnostic.getError());
+    }
+
+    @Test
+    public void skipsNotesAndOtherLines() {
+        String output = "Server.java:5: error: cannot find symbol\r\n"
+                + "        buffer.put(item);\r\n"
+                + "        ^\r\n"
+                + "  symbol:   variable buffer\r\n"
+                + "Server.java:3: note: Some messages have been simplified\r\n"
+                + "Server.java:9: error: something the database does not know\r\n"
+                + "main.c:4:1: warning: ';' expected\r\n"
+                + "1 error\r\n";
+        List<CompilerDiagnostic> diagnostics = this.matcher.matchOutput(output);
+        assertEquals(2, diagnostics.size());
+        assertSame(this.cannotFindSymbol, diagnostics.get(0).getError());
+        assertEquals(4, diagnostics.get(0).getRow());
+        assertSame(this.semicolonExpected, diagnostics.get(1).getError());
+        assertEquals("main.c", diagnostics.get(1).getFileName());
+    }
+
+    @Test
+    public void matchesFragmentsInOrder() {
+        assertSame(this.operatorCannotBeApplied, this.matcher.match("operator + cannot be applied to int,boolean"));
+        assertSame(this.operatorCannotBeApplied,
+                this.matcher.match("operator && cannot be applied to java.lang.String,int"));
+        assertNull(this.matcher.match("cannot be applied to operator +"));
+        assertNull(this.matcher.match("operator + cannot be applied"));
+    }
+
+    @Test
+    public void prefersLongestLiteralText() {
+        assertSame(this.semicolonExpected, this.matcher.match("';' expected"));
+        assertSame(this.expected, this.matcher.match("<identifier> expected"));
+        assertSame(this.undeclaredIdentifier, this.matcher.match("use of undeclared identifier 'y'"));
+    }
+
+    @Test
+    public void matchesWholeWordsIgnoringCase() {
+        assertSame(this.cannotFindSymbol, this.matcher.match("Cannot Find Symbol"));
+        assertNull(this.matcher.match("cannot find symbols"));
+        assertNull(this.matcher.match("unexpected"));
+    }
+
+    @Test
+    public void ignoresErrorsWithoutLiteralText() {
+        CompilerOutputMatcher matcher = new CompilerOutputMatcher(Arrays.asList(createError("..."),
+                this.cannotFindSymbol));
+        assertEquals(1, matcher.getErrors().size());
+        assertNull(matcher.match("anything at all"));
+    }
+
+    private CompilerDiagnostic matchSingle(String line) {
+        List<CompilerDiagnostic> diagnostics = this.matcher.matchOutput(line);
+        assertEquals(1, diagnostics.size());
+        return diagnostics.get(0);
+    }
+
+    private static Error createError(String name) {
+        return new Error(name, "", ErrorSeverity.HIGH, "");
+    }
+}